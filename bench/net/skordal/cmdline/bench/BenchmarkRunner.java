@@ -0,0 +1,187 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Simple benchmark runner.
+ * Each benchmark is run repeatedly for a warmup period and then for a measurement period. The runner
+ * reports the throughput of the benchmark, the number of bytes allocated per operation and the amount of
+ * garbage collection activity during the measurement period.
+ */
+public final class BenchmarkRunner
+{
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private final Pattern filter;
+	private final long warmupNanos, measurementNanos;
+
+	/**
+	 * Operation to benchmark.
+	 */
+	@FunctionalInterface public interface Operation
+	{
+		/**
+		 * Runs the operation once.
+		 * @throws Exception if the operation fails, which aborts the benchmark.
+		 */
+		public void run() throws Exception;
+	}
+
+	/**
+	 * Creates a new benchmark runner.
+	 * @param filter            regular expression selecting the benchmarks to run, or {@code null} to run all.
+	 * @param warmupMillis      warmup time for each benchmark, in milliseconds.
+	 * @param measurementMillis measurement time for each benchmark, in milliseconds.
+	 */
+	public BenchmarkRunner(String filter, long warmupMillis, long measurementMillis)
+	{
+		this.filter = filter == null ? null : Pattern.compile(filter);
+		this.warmupNanos = warmupMillis * 1000000L;
+		this.measurementNanos = measurementMillis * 1000000L;
+
+		THREADS.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * Creates a benchmark runner configured from the {@code bench.filter}, {@code bench.warmup} and
+	 * {@code bench.time} system properties.
+	 * @return a new benchmark runner.
+	 */
+	public static BenchmarkRunner fromSystemProperties()
+	{
+		String filter = System.getProperty("bench.filter");
+		if(filter != null && filter.isEmpty())
+			filter = null;
+
+		return new BenchmarkRunner(filter, Long.getLong("bench.warmup", 1000), Long.getLong("bench.time", 2000));
+	}
+
+	/**
+	 * Runs a benchmark if it is selected by the filter and prints its result.
+	 * @param name      name of the benchmark.
+	 * @param operation the operation to benchmark.
+	 * @return the benchmark result, or {@code null} if the benchmark was not selected.
+	 * @throws Exception if the operation fails.
+	 */
+	public Result run(String name, Operation operation) throws Exception
+	{
+		if(filter != null && !filter.matcher(name).find())
+			return null;
+
+		measure(operation, warmupNanos);
+		Result result = measure(operation, measurementNanos);
+		result.name = name;
+
+		System.out.println(result);
+		return result;
+	}
+
+	/**
+	 * Runs an operation repeatedly for at least the specified time.
+	 * @param operation the operation to run.
+	 * @param duration  the minimum time to run the operation for, in nanoseconds.
+	 * @return the measured result.
+	 */
+	private static Result measure(Operation operation, long duration) throws Exception
+	{
+		final long threadId = Thread.currentThread().getId();
+		Result result = new Result();
+
+		long gcCount = gcCount(), gcTime = gcTime();
+		long bytes = THREADS.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime(), elapsed;
+		do {
+			operation.run();
+			++result.operations;
+			elapsed = System.nanoTime() - start;
+		} while(elapsed < duration);
+
+		result.bytes = THREADS.getThreadAllocatedBytes(threadId) - bytes;
+		result.nanos = elapsed;
+		result.gcCount = gcCount() - gcCount;
+		result.gcMillis = gcTime() - gcTime;
+		return result;
+	}
+
+	private static long gcCount()
+	{
+		long retval = 0;
+		for(GarbageCollectorMXBean bean : gcBeans())
+			retval += Math.max(0, bean.getCollectionCount());
+		return retval;
+	}
+
+	private static long gcTime()
+	{
+		long retval = 0;
+		for(GarbageCollectorMXBean bean : gcBeans())
+			retval += Math.max(0, bean.getCollectionTime());
+		return retval;
+	}
+
+	private static List<GarbageCollectorMXBean> gcBeans()
+	{
+		return ManagementFactory.getGarbageCollectorMXBeans();
+	}
+
+	/**
+	 * Result of a benchmark run.
+	 */
+	public static final class Result
+	{
+		private String name;
+		private long operations, nanos, bytes, gcCount, gcMillis;
+
+		/**
+		 * Gets the throughput of the benchmark.
+		 * @return the number of operations per second.
+		 */
+		public double getOperationsPerSecond()
+		{
+			return operations * 1e9 / nanos;
+		}
+
+		/**
+		 * Gets the number of bytes allocated per operation.
+		 * @return the number of bytes allocated per operation.
+		 */
+		public double getBytesPerOperation()
+		{
+			return (double) bytes / operations;
+		}
+
+		/**
+		 * Gets the allocation rate of the benchmark.
+		 * @return the allocation rate in megabytes per second.
+		 */
+		public double getAllocationRate()
+		{
+			return bytes * 1e9 / nanos / (1024 * 1024);
+		}
+
+		/**
+		 * Checks that the benchmark allocated at most the specified number of bytes per operation.
+		 * @param maximum the maximum number of bytes allowed per operation.
+		 * @throws AssertionError if the benchmark allocated more than the allowed number of bytes per operation.
+		 */
+		public void assertBytesPerOperation(double maximum)
+		{
+			if(getBytesPerOperation() > maximum)
+				throw new AssertionError(String.format("%s allocated %.1f bytes per operation, at most %.1f allowed",
+						name, getBytesPerOperation(), maximum));
+		}
+
+		@Override public String toString()
+		{
+			return String.format("%-48s %14.2f ops/s %14.1f B/op %10.1f MB/s %6d gc %6d ms",
+					name, getOperationsPerSecond(), getBytesPerOperation(), getAllocationRate(), gcCount, gcMillis);
+		}
+	}
+}
@@ -0,0 +1,443 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import net.skordal.cmdline.CommandLineCommand;
+import net.skordal.cmdline.CommandLineOption;
+import net.skordal.cmdline.CommandLineParser;
+import net.skordal.cmdline.CommandLinePipeline;
+import net.skordal.cmdline.OptionConstraint;
+import net.skordal.cmdline.StreamingCommandLineCommand;
+import net.skordal.cmdline.UnrecognizedOptionException;
+
+/**
+ * Benchmarks for command line parsing and usage printing.
+ * Run using {@code ant bench}. Individual benchmarks can be selected with {@code -Dbench.filter=<regex>}.
+ */
+public final class ParserBenchmarks
+{
+	/** Characters used as short options. The character 'h' is reserved for the help option. */
+	private static final String SHORT_OPTIONS = "abcdefgijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+	/** Option set sizes. */
+	private static final int SMALL = 10, MEDIUM = 500, HUGE = 10000;
+
+	/**
+	 * Maximum number of bytes a parse may allocate, regardless of the length of the command line, when no option
+	 * arguments have to be extracted from the command line tokens.
+	 */
+	private static final double PARSE_ALLOCATION_LIMIT = 1024;
+
+	/** Sink for values produced by option handlers, preventing them from being optimized away. */
+	static volatile int sink;
+
+	/** Forms used to specify options on the command line. */
+	private enum OptionForm
+	{
+		/** Short option followed by a separate argument ({@code -o file}). */
+		SHORT,
+		/** Long option followed by a separate argument ({@code --option file}). */
+		LONG,
+		/** Short option with an attached argument ({@code -ofile}). */
+		ATTACHED
+	}
+
+	private ParserBenchmarks()
+	{
+	}
+
+	/**
+	 * Command used in the benchmarks.
+	 */
+	private static final class BenchmarkCommand extends CommandLineCommand
+	{
+		BenchmarkCommand()
+		{
+			super("run", "Runs the benchmark");
+		}
+
+		@Override public void processCommand(LinkedList<String> inputFiles)
+		{
+			sink += inputFiles.size();
+		}
+	}
+
+	/**
+	 * Streaming command used in the benchmarks.
+	 */
+	private static final class StreamingBenchmarkCommand extends StreamingCommandLineCommand
+	{
+		StreamingBenchmarkCommand()
+		{
+			super("stream", "Runs the streaming benchmark");
+		}
+
+		@Override public void processCommand(Iterator<String> inputFiles)
+		{
+			int count = 0;
+			while(inputFiles.hasNext())
+				count += inputFiles.next().length();
+			sink += count;
+		}
+	}
+
+	/**
+	 * Creates a parser with a single command and the specified number of options.
+	 * All options require an argument. The first options have short options, all options have long options.
+	 * @param numOptions number of options to add to the command.
+	 * @param validate   whether to add argument validators to the options.
+	 * @return a new parser.
+	 */
+	static CommandLineParser createParser(int numOptions, boolean validate)
+	{
+		CommandLineParser parser = new CommandLineParser("bench", "Benchmark application", "End of usage information");
+		BenchmarkCommand command = new BenchmarkCommand();
+
+		for(int i = 0; i < numOptions; ++i)
+		{
+			Character shortOption = i < SHORT_OPTIONS.length() ? SHORT_OPTIONS.charAt(i) : null;
+			CommandLineOption option = new CommandLineOption(shortOption, "option-" + i,
+					CommandLineOption.ARGUMENT_REQUIRED, "Benchmark option number " + i,
+					(o, argument) -> sink += argument.length());
+			if(validate)
+				option.setArgumentValidator(argument -> {
+						try {
+							int value = Integer.parseInt(argument);
+							return value >= 0 && value < 1000000 && argument.matches("[0-9]+");
+						} catch(NumberFormatException error) {
+							return false;
+						}
+					});
+			command.addOption(option);
+		}
+
+		parser.addCommand(command);
+		return parser;
+	}
+
+	/**
+	 * Creates a parser with a single command and the specified number of {@code int} options.
+	 * @param numOptions number of options to add to the command.
+	 * @return a new parser.
+	 */
+	static CommandLineParser createTypedParser(int numOptions)
+	{
+		CommandLineParser parser = new CommandLineParser("bench", "Benchmark application", "End of usage information");
+		BenchmarkCommand command = new BenchmarkCommand();
+
+		for(int i = 0; i < numOptions; ++i)
+		{
+			Character shortOption = i < SHORT_OPTIONS.length() ? SHORT_OPTIONS.charAt(i) : null;
+			command.addOption(CommandLineOption.createIntOption(shortOption, "option-" + i,
+					"Benchmark option number " + i, 0, 999999, (o, value) -> sink += value));
+		}
+
+		parser.addCommand(command);
+		return parser;
+	}
+
+	/**
+	 * Creates a command line consisting of options for the benchmark command.
+	 * @param numOptions number of options available on the command.
+	 * @param numTokens  approximate number of tokens on the command line.
+	 * @param form       the form to use for specifying the options.
+	 * @return the command line.
+	 */
+	static String[] createOptionArguments(int numOptions, int numTokens, OptionForm form)
+	{
+		int numShort = Math.min(numOptions, SHORT_OPTIONS.length());
+		int perOption = form == OptionForm.ATTACHED ? 1 : 2;
+		String[] args = new String[1 + Math.max(1, (numTokens - 1) / perOption) * perOption];
+
+		args[0] = "run";
+		for(int i = 1, n = 0; i < args.length; i += perOption, ++n)
+		{
+			// Spread the options used over the whole option set:
+			int index = (int) ((n * 7919L) % (form == OptionForm.LONG ? numOptions : numShort));
+			String value = Integer.toString(n % 100000);
+
+			switch(form)
+			{
+				case SHORT:
+					args[i] = "-" + SHORT_OPTIONS.charAt(index);
+					args[i + 1] = value;
+					break;
+				case LONG:
+					args[i] = "--option-" + index;
+					args[i + 1] = value;
+					break;
+				case ATTACHED:
+					args[i] = "-" + SHORT_OPTIONS.charAt(index) + value;
+					break;
+			}
+		}
+
+		return args;
+	}
+
+	/**
+	 * Creates a command line consisting of a mix of long options and input files.
+	 * @param numOptions number of options available on the command.
+	 * @param numTokens  number of tokens on the command line.
+	 * @return the command line.
+	 */
+	static String[] createMixedArguments(int numOptions, int numTokens)
+	{
+		String[] args = new String[numTokens];
+
+		args[0] = "run";
+		for(int i = 1; i < numTokens; ++i)
+		{
+			if(i % 4 == 1 && i + 1 < numTokens)
+			{
+				args[i] = "--option-" + (i * 7919L) % numOptions;
+				args[++i] = Integer.toString(i);
+			} else
+				args[i] = "input-file-" + i + ".txt";
+		}
+
+		return args;
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 * @param arguments ignored.
+	 * @throws Exception if a benchmark fails.
+	 */
+	public static void main(String[] arguments) throws Exception
+	{
+		BenchmarkRunner runner = BenchmarkRunner.fromSystemProperties();
+
+		// Parsing using different option forms and option set sizes:
+		for(int numOptions : new int[]{ SMALL, MEDIUM, HUGE })
+		{
+			CommandLineParser parser = createParser(numOptions, false);
+			parser.compile();
+			for(OptionForm form : OptionForm.values())
+			{
+				String[] args = createOptionArguments(numOptions, 1000, form);
+				BenchmarkRunner.Result result = runner.run(String.format("parse.form.%s.options-%d",
+						form.name().toLowerCase(), numOptions), () -> parser.parse(args));
+
+				// Looking up options must not allocate; only attached arguments need new strings:
+				if(result != null && form != OptionForm.ATTACHED)
+					result.assertBytesPerOperation(PARSE_ALLOCATION_LIMIT);
+			}
+		}
+
+		// Parsing command lines of different lengths:
+		for(int numOptions : new int[]{ SMALL, MEDIUM, HUGE })
+		{
+			CommandLineParser parser = createParser(numOptions, false);
+			parser.compile();
+			for(int numTokens : new int[]{ 5, 1000, 100000, 1000000 })
+			{
+				String[] args = createMixedArguments(numOptions, numTokens);
+				runner.run(String.format("parse.length-%d.options-%d", numTokens, numOptions),
+						() -> parser.parse(args));
+			}
+		}
+
+		// Parsing abbreviated long options, which are resolved using the prefix trie:
+		for(int numOptions : new int[]{ SMALL, MEDIUM, HUGE })
+		{
+			CommandLineParser parser = new CommandLineParser("bench", "Benchmark application", "End of usage information");
+			BenchmarkCommand command = new BenchmarkCommand();
+			for(int i = 0; i < numOptions; ++i)
+				command.addOption(new CommandLineOption(null, "option-" + i + "-value", CommandLineOption.ARGUMENT_REQUIRED,
+						"Benchmark option number " + i, (o, argument) -> sink += argument.length()));
+			parser.addCommand(command);
+			parser.compile();
+
+			String[] args = createOptionArguments(numOptions, 1000, OptionForm.LONG);
+			for(int i = 1; i < args.length; i += 2)
+				args[i] += "-v";
+			BenchmarkRunner.Result result = runner.run(String.format("parse.abbreviated.options-%d", numOptions),
+					() -> parser.parse(args));
+			if(result != null)
+				result.assertBytesPerOperation(PARSE_ALLOCATION_LIMIT);
+		}
+
+		// Parsing with option constraints, which are checked using a bitset of the options found:
+		for(int numOptions : new int[]{ MEDIUM, HUGE })
+		{
+			CommandLineParser parser = new CommandLineParser("bench", "Benchmark application", "End of usage information");
+			BenchmarkCommand command = new BenchmarkCommand();
+			CommandLineOption[] options = new CommandLineOption[numOptions];
+			for(int i = 0; i < numOptions; ++i)
+			{
+				options[i] = new CommandLineOption(null, "option-" + i, CommandLineOption.ARGUMENT_REQUIRED,
+						"Benchmark option number " + i, (o, argument) -> sink += argument.length());
+				command.addOption(options[i]);
+			}
+
+			// Groups are offset from the bitset words so that most constraints span two words:
+			for(int i = 16; i + 32 <= numOptions; i += 32)
+			{
+				command.addConstraint(OptionConstraint.cardinality(0, 32, Arrays.copyOfRange(options, i, i + 32)));
+				command.addConstraint(OptionConstraint.cardinality(0, 2, options[i], options[i + 31]));
+			}
+			parser.addCommand(command);
+			parser.compile();
+
+			String[] args = createOptionArguments(numOptions, 1000, OptionForm.LONG);
+			BenchmarkRunner.Result result = runner.run(String.format("parse.constrained.options-%d", numOptions),
+					() -> parser.parse(args));
+			if(result != null)
+				result.assertBytesPerOperation(PARSE_ALLOCATION_LIMIT + numOptions / 8);
+		}
+
+		// Parsing with a streaming command:
+		for(int numTokens : new int[]{ 1000, 1000000 })
+		{
+			CommandLineParser parser = new CommandLineParser("bench", "Benchmark application", "End of usage information");
+			parser.addCommand(new StreamingBenchmarkCommand());
+			parser.compile();
+			String[] args = createMixedArguments(1, numTokens);
+			args[0] = "stream";
+			for(int i = 1; i < args.length; ++i)
+				if(args[i].startsWith("--"))
+					args[i] = args[i + 1] = "input-file-" + i + ".txt";
+			runner.run(String.format("parse.streaming.length-%d", numTokens), () -> parser.parse(args));
+		}
+
+		// Parsing into a parse result without handling the options:
+		for(int numOptions : new int[]{ SMALL, MEDIUM, HUGE })
+		{
+			CommandLineParser parser = createParser(numOptions, false);
+			parser.compile();
+			String[] args = createMixedArguments(numOptions, 1000);
+			runner.run(String.format("parseArguments.length-1000.options-%d", numOptions),
+					() -> sink += parser.parseArguments(args).getInputFiles().size());
+		}
+
+		// Parsing with argument validators on all options:
+		for(int numOptions : new int[]{ SMALL, MEDIUM, HUGE })
+		{
+			CommandLineParser parser = createParser(numOptions, true);
+			parser.compile();
+			String[] args = createOptionArguments(numOptions, 1000, OptionForm.LONG);
+			runner.run(String.format("parse.validated.options-%d", numOptions), () -> parser.parse(args));
+		}
+
+		// Parsing with typed options converting their arguments:
+		for(int numOptions : new int[]{ SMALL, MEDIUM, HUGE })
+		{
+			CommandLineParser parser = createTypedParser(numOptions);
+			parser.compile();
+			String[] args = createOptionArguments(numOptions, 1000, OptionForm.LONG);
+			BenchmarkRunner.Result result = runner.run(String.format("parse.typed.options-%d", numOptions),
+					() -> parser.parse(args));
+			if(result != null)
+				result.assertBytesPerOperation(PARSE_ALLOCATION_LIMIT);
+		}
+
+		// Suggesting options for misspelled option names:
+		for(int numOptions : new int[]{ SMALL, MEDIUM, HUGE })
+		{
+			CommandLineParser parser = createParser(numOptions, false);
+			parser.compile();
+			String[] args = new String[]{ "run", "--opiton-" + numOptions / 3, "value" };
+			runner.run(String.format("suggest.options-%d", numOptions), () -> {
+					try {
+						parser.parseArguments(args);
+					} catch(UnrecognizedOptionException error) {
+						sink += error.getSuggestions().size();
+					}
+				});
+		}
+
+		// Taking option defaults from a shared configuration file, parsed on every invocation or cached on disk:
+		Path directory = Files.createTempDirectory("cmdline-bench");
+		for(int numLines : new int[]{ 1000, 100000 })
+		{
+			StringBuilder contents = new StringBuilder();
+			for(int i = 0; i < SMALL; ++i)
+				contents.append("option-").append(i).append(" = ").append(i).append('\n');
+			for(int i = 0; i < numLines; ++i)
+			{
+				if(i % 100 == 0)
+					contents.append("[other-command-").append(i / 100).append("]\n");
+				contents.append("other-option-").append(i).append(" = \"value ").append(i).append("\"\n");
+			}
+			Path config = Files.writeString(directory.resolve("config-" + numLines + ".ini"), contents);
+
+			String[] args = { "run" };
+			runner.run(String.format("defaults.config.lines-%d", numLines), () -> {
+					CommandLineParser parser = createParser(SMALL, false);
+					parser.setConfigFile(config);
+					parser.parse(args);
+				});
+			runner.run(String.format("defaults.config.cached.lines-%d", numLines), () -> {
+					CommandLineParser parser = createParser(SMALL, false);
+					parser.setConfigFile(config);
+					parser.setConfigCacheDirectory(directory);
+					parser.parse(args);
+				});
+		}
+
+		// Running pipelines of short commands, concurrently and in sequence:
+		for(int numSegments : new int[]{ 4, 16 })
+		{
+			CommandLineParser parser = createParser(SMALL, false);
+			parser.compile();
+			String[] args = new String[numSegments * 4 - 1];
+			for(int i = 0; i < numSegments; ++i)
+			{
+				if(i > 0)
+					args[i * 4 - 1] = CommandLinePipeline.SEPARATOR;
+				args[i * 4] = "run";
+				args[i * 4 + 1] = "--option-" + i % SMALL;
+				args[i * 4 + 2] = Integer.toString(i);
+			}
+
+			CommandLinePipeline concurrent = new CommandLinePipeline(parser);
+			concurrent.setReentrantCommands(true);
+			CommandLinePipeline sequential = new CommandLinePipeline(parser);
+			runner.run(String.format("pipeline.concurrent.segments-%d", numSegments),
+					() -> sink += concurrent.run(args).getSucceeded());
+			runner.run(String.format("pipeline.sequential.segments-%d", numSegments),
+					() -> sink += sequential.run(args).getSucceeded());
+		}
+
+		// Printing usage information:
+		PrintStream stdout = System.out;
+		PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+		for(int numOptions : new int[]{ SMALL, MEDIUM, HUGE })
+		{
+			CommandLineParser parser = createParser(numOptions, false);
+			CommandLineCommand command = new BenchmarkCommand();
+			for(int i = 0; i < numOptions; ++i)
+				command.addOption(new CommandLineOption(null, "option-" + i, CommandLineOption.NO_ARGUMENT,
+						"Benchmark option number " + i, null));
+			for(int i = 0; i < numOptions; ++i)
+				parser.addGlobalOption(new CommandLineOption(null, "global-option-" + i, CommandLineOption.NO_ARGUMENT,
+						"Global benchmark option number " + i, null));
+
+			runner.run(String.format("usage.global.options-%d", numOptions), () -> {
+					System.setOut(discard);
+					try {
+						parser.printUsage();
+					} finally {
+						System.setOut(stdout);
+					}
+				});
+			runner.run(String.format("usage.command.options-%d", numOptions), () -> {
+					System.setOut(discard);
+					try {
+						command.printOptions();
+					} finally {
+						System.setOut(stdout);
+					}
+				});
+		}
+	}
+}
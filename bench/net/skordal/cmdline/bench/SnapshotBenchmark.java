@@ -0,0 +1,307 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import net.skordal.cmdline.CommandLineParser;
+
+/**
+ * Benchmark measuring the time from starting the JVM until a command is processed, with and without startup
+ * snapshots.
+ * The benchmark generates an application with a large number of commands and starts it in a new JVM for every
+ * run, measuring the time until the command prints a marker line. The application is run without a snapshot,
+ * using an AppCDS archive created by a training run with {@code -Dcmdline.train}, and, if the JVM supports CRaC,
+ * restored from a checkpoint taken after the training run.
+ * <p>
+ * Run using {@code ant bench}; select the benchmark with {@code -Dbench.filter=snapshot}.
+ */
+public final class SnapshotBenchmark
+{
+	/** Number of commands in the generated application. */
+	private static final int NUM_COMMANDS = 300;
+	/** Number of options for each command in the generated application. */
+	private static final int NUM_OPTIONS = 8;
+	/** Number of runs measured for each variant. */
+	private static final int NUM_RUNS = 10;
+	/** Line printed by the application when a command is processed. */
+	private static final String READY = "ready";
+
+	private SnapshotBenchmark()
+	{
+	}
+
+	/**
+	 * Generates the source code for a command class.
+	 * @param index the number of the command.
+	 * @return the source code of the command class.
+	 */
+	private static String generateCommand(int index)
+	{
+		StringBuilder source = new StringBuilder();
+		source.append("package generated;\n");
+		source.append("public final class Command").append(index)
+				.append(" extends net.skordal.cmdline.CommandLineCommand {\n");
+		source.append("\tstatic int value;\n");
+		source.append("\tpublic Command").append(index).append("() {\n");
+		source.append("\t\tsuper(\"command-").append(index).append("\", \"Command number ").append(index).append("\");\n");
+		for(int i = 0; i < NUM_OPTIONS; ++i)
+		{
+			source.append("\t\taddOption(new net.skordal.cmdline.CommandLineOption(null, \"option-").append(i)
+					.append("\", net.skordal.cmdline.CommandLineOption.ARGUMENT_REQUIRED, \"Option number ")
+					.append(i).append("\", (o, a) -> value += a.length() + ").append(i).append("));\n");
+		}
+		source.append("\t}\n");
+		source.append("\t@Override public void processCommand(java.util.LinkedList<String> inputFiles) {\n");
+		source.append("\t\tSystem.out.println(\"").append(READY).append("\");\n");
+		source.append("\t\tSystem.out.flush();\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/**
+	 * Generates the source code for the application class.
+	 * @return the source code of the application class.
+	 */
+	private static String generateApplication()
+	{
+		StringBuilder source = new StringBuilder();
+		source.append("package generated;\n");
+		source.append("import net.skordal.cmdline.*;\n");
+		source.append("public final class SnapshotApplication {\n");
+		source.append("\tpublic static void main(String[] args) throws Exception {\n");
+		source.append("\t\tCommandLineParser parser = new CommandLineParser(\"app\", \"Application\", \"\");\n");
+		for(int i = 0; i < NUM_COMMANDS; ++i)
+			source.append("\t\tparser.addCommand(new Command").append(i).append("());\n");
+		source.append("\t\tparser.parse(args);\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/**
+	 * Generates and compiles the benchmark application.
+	 * @param directory the directory to write the sources and classes to.
+	 * @throws Exception if the application cannot be compiled.
+	 */
+	private static void compileApplication(Path directory) throws Exception
+	{
+		Path sources = Files.createDirectories(directory.resolve("generated"));
+		ArrayList<String> arguments = new ArrayList<>();
+		arguments.add("-classpath");
+		arguments.add(System.getProperty("java.class.path"));
+		arguments.add("-proc:none");
+		arguments.add("-d");
+		arguments.add(directory.toString());
+
+		for(int i = 0; i < NUM_COMMANDS; ++i)
+		{
+			Path file = sources.resolve("Command" + i + ".java");
+			Files.writeString(file, generateCommand(i));
+			arguments.add(file.toString());
+		}
+		Path application = sources.resolve("SnapshotApplication.java");
+		Files.writeString(application, generateApplication());
+		arguments.add(application.toString());
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if(compiler == null || compiler.run(null, null, System.err, arguments.toArray(new String[0])) != 0)
+			throw new IllegalStateException("could not compile the snapshot benchmark application");
+	}
+
+	/**
+	 * Packages the class files in a directory into a JAR file.
+	 * AppCDS only archives classes loaded from JAR files, so the library and the application are packaged
+	 * before running them.
+	 * @param directory the directory containing the class files.
+	 * @param jar       the JAR file to create.
+	 * @throws IOException if the JAR file cannot be written.
+	 */
+	private static void createJar(Path directory, Path jar) throws IOException
+	{
+		try(JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar));
+				Stream<Path> files = Files.walk(directory))
+		{
+			for(Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".class"))::iterator)
+			{
+				output.putNextEntry(new JarEntry(directory.relativize(file).toString().replace('\\', '/')));
+				Files.copy(file, output);
+				output.closeEntry();
+			}
+		}
+	}
+
+	/**
+	 * Starts the application in a new JVM and waits until it has processed its command.
+	 * @param jvmOptions the options to pass to the JVM.
+	 * @param classpath  the class path of the application.
+	 * @param args       the command line to run, or {@code null} to run without a command line.
+	 * @param checkExit  whether to fail if the JVM exits with an error, which it does after creating a checkpoint.
+	 * @return the number of nanoseconds until the command was processed, or -1 if it was never processed.
+	 * @throws Exception if the JVM cannot be started or fails.
+	 */
+	private static long runApplication(List<String> jvmOptions, String classpath, String[] args,
+			boolean checkExit) throws Exception
+	{
+		ArrayList<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmOptions);
+		if(classpath != null)
+		{
+			command.add("-classpath");
+			command.add(classpath);
+			command.add("generated.SnapshotApplication");
+		}
+		if(args != null)
+			command.addAll(Arrays.asList(args));
+
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		long retval = -1;
+		try(BufferedReader output = new BufferedReader(
+				new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)))
+		{
+			String line;
+			while((line = output.readLine()) != null)
+			{
+				if(retval < 0 && line.equals(READY))
+					retval = System.nanoTime() - start;
+			}
+		}
+
+		if(process.waitFor() != 0 && checkExit)
+			throw new IllegalStateException("application failed: " + String.join(" ", command));
+		return retval;
+	}
+
+	/**
+	 * Measures a variant of the benchmark and prints the results.
+	 * @param name       the name of the variant.
+	 * @param jvmOptions the options to pass to the JVM.
+	 * @param classpath  the class path of the application, or {@code null} when restoring a checkpoint.
+	 * @param args       the command line to run.
+	 * @throws Exception if the application fails.
+	 */
+	private static void measure(String name, List<String> jvmOptions, String classpath, String[] args)
+			throws Exception
+	{
+		long total = 0, best = Long.MAX_VALUE;
+		for(int i = 0; i < NUM_RUNS; ++i)
+		{
+			long elapsed = runApplication(jvmOptions, classpath, args, true);
+			if(elapsed < 0)
+				throw new IllegalStateException(name + ": the command was not processed");
+			total += elapsed;
+			best = Math.min(best, elapsed);
+		}
+
+		System.out.println(String.format("%-48s %11.2f ms/run %11.2f ms best", name, total / 1e6 / NUM_RUNS,
+				best / 1e6));
+	}
+
+	/**
+	 * Checks whether the JVM running the benchmark supports CRaC.
+	 * @return {@code true} if checkpoints can be created.
+	 */
+	private static boolean isCheckpointSupported()
+	{
+		try {
+			Class.forName("jdk.crac.Core");
+			return true;
+		} catch(ClassNotFoundException error) {
+			return false;
+		}
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * @param arguments ignored.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String[] arguments) throws Exception
+	{
+		String filter = System.getProperty("bench.filter", "");
+		Pattern pattern = filter.isEmpty() ? null : Pattern.compile(filter);
+		String[] names = new String[]{ "baseline", "appcds", "crac" };
+		boolean selected = false;
+		for(String name : names)
+			selected |= pattern == null || pattern.matcher("snapshot." + name).find();
+		if(!selected)
+			return;
+
+		Path directory = Files.createTempDirectory("cmdline-snapshot");
+		Path classes = Files.createDirectories(directory.resolve("classes"));
+		compileApplication(classes);
+
+		Path library = directory.resolve("cmdline.jar"), application = directory.resolve("application.jar");
+		createJar(Paths.get(CommandLineParser.class.getProtectionDomain().getCodeSource().getLocation().toURI()),
+				library);
+		createJar(classes, application);
+		String classpath = library + java.io.File.pathSeparator + application;
+
+		String[] args = new String[]{ "command-" + (NUM_COMMANDS / 2), "--option-1", "value", "input.txt" };
+		Path training = directory.resolve("training.txt");
+		try(OutputStream output = Files.newOutputStream(training))
+		{
+			for(int i = 0; i < NUM_COMMANDS; i += NUM_COMMANDS / 10)
+				output.write(("command-" + i + " --option-0 value input.txt\n").getBytes(StandardCharsets.UTF_8));
+			output.write((String.join(" ", args) + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		for(String name : names)
+		{
+			String variant = "snapshot." + name + ".commands-" + NUM_COMMANDS;
+			if(pattern != null && !pattern.matcher(variant).find())
+				continue;
+
+			switch(name)
+			{
+				case "baseline":
+					runApplication(List.of(), classpath, args, true);
+					measure(variant, List.of(), classpath, args);
+					break;
+				case "appcds":
+				{
+					Path archive = directory.resolve("cmdline.jsa");
+					runApplication(List.of("-XX:ArchiveClassesAtExit=" + archive, "-Dcmdline.train=" + training),
+							classpath, args, true);
+					measure(variant, List.of("-XX:SharedArchiveFile=" + archive), classpath, args);
+					break;
+				}
+				case "crac":
+				{
+					if(!isCheckpointSupported())
+					{
+						System.out.println(String.format("%-48s skipped: CRaC is not supported by this JVM",
+								variant));
+						break;
+					}
+
+					Path checkpoint = directory.resolve("checkpoint");
+					runApplication(List.of("-XX:CRaCCheckpointTo=" + checkpoint, "-Dcmdline.train=" + training,
+							"-Dcmdline.checkpoint=true"), classpath, args, false);
+					measure(variant, List.of("-XX:CRaCRestoreFrom=" + checkpoint,
+							"-Dcmdline.args=" + String.join(" ", args)), null, null);
+					break;
+				}
+			}
+		}
+	}
+}
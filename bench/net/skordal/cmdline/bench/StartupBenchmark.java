@@ -0,0 +1,263 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline.bench;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import net.skordal.cmdline.CommandLineParser;
+
+/**
+ * Benchmark measuring the startup cost of applications with many commands.
+ * The benchmark generates an application with a large number of command classes, each with a number of options
+ * whose handlers are lambdas, and registers the commands either eagerly or lazily. A third variant declares the
+ * same commands using annotations and uses the parser generated at compile time. Every run loads the library
+ * and the application into a new class loader, registers all commands and parses a command line running one of
+ * them, which approximates the class loading work done when a real application starts.
+ * <p>
+ * Run using {@code ant bench}; select the benchmark with {@code -Dbench.filter=startup}.
+ */
+public final class StartupBenchmark
+{
+	/** Number of commands in the generated application. */
+	private static final int NUM_COMMANDS = 300;
+	/** Number of options for each command in the generated application. */
+	private static final int NUM_OPTIONS = 8;
+	/** Number of runs measured for each variant. */
+	private static final int NUM_RUNS = 20;
+
+	private static final ClassLoadingMXBean CLASSES = ManagementFactory.getClassLoadingMXBean();
+
+	private StartupBenchmark()
+	{
+	}
+
+	/**
+	 * Generates the source code for a command class.
+	 * @param index the number of the command.
+	 * @return the source code of the command class.
+	 */
+	private static String generateCommand(int index)
+	{
+		StringBuilder source = new StringBuilder();
+		source.append("package generated;\n");
+		source.append("public final class Command").append(index)
+				.append(" extends net.skordal.cmdline.CommandLineCommand {\n");
+		source.append("\tstatic int value;\n");
+		source.append("\tpublic Command").append(index).append("() {\n");
+		source.append("\t\tsuper(\"command-").append(index).append("\", \"Command number ").append(index).append("\");\n");
+		for(int i = 0; i < NUM_OPTIONS; ++i)
+		{
+			source.append("\t\taddOption(new net.skordal.cmdline.CommandLineOption(null, \"option-").append(i)
+					.append("\", net.skordal.cmdline.CommandLineOption.ARGUMENT_REQUIRED, \"Option number ")
+					.append(i).append("\", (o, a) -> value += a.length() + ").append(i).append("));\n");
+		}
+		source.append("\t}\n");
+		source.append("\t@Override public void processCommand(java.util.LinkedList<String> inputFiles) {\n");
+		source.append("\t\tvalue += inputFiles.size();\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/**
+	 * Generates the source code for an annotated command class.
+	 * @param index the number of the command.
+	 * @return the source code of the command class.
+	 */
+	private static String generateAnnotatedCommand(int index)
+	{
+		StringBuilder source = new StringBuilder();
+		source.append("package generated;\n");
+		source.append("@net.skordal.cmdline.annotation.Command(name = \"command-").append(index)
+				.append("\", description = \"Command number ").append(index).append("\")\n");
+		source.append("public final class AnnotatedCommand").append(index).append(" implements Runnable {\n");
+		source.append("\tstatic int value;\n");
+		for(int i = 0; i < NUM_OPTIONS; ++i)
+		{
+			source.append("\t@net.skordal.cmdline.annotation.Option(longName = \"option-").append(i)
+					.append("\", description = \"Option number ").append(i).append("\") String option").append(i)
+					.append(";\n");
+		}
+		source.append("\t@net.skordal.cmdline.annotation.Arguments java.util.List<String> inputFiles;\n");
+		source.append("\t@Override public void run() {\n");
+		source.append("\t\tvalue += inputFiles.size();\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/**
+	 * Generates the source code for an application using the parser generated from annotations.
+	 * @return the source code of the application class.
+	 */
+	private static String generateAnnotatedApplication()
+	{
+		StringBuilder source = new StringBuilder();
+		source.append("package generated;\n");
+		source.append("@net.skordal.cmdline.annotation.CommandLineApplication(name = \"app\", description = \"Application\",\n");
+		source.append("\t\tcommands = {");
+		for(int i = 0; i < NUM_COMMANDS; ++i)
+			source.append(i == 0 ? "" : ", ").append("AnnotatedCommand").append(i).append(".class");
+		source.append("})\n");
+		source.append("public final class AnnotatedApplication {\n");
+		source.append("\tpublic static void run(String[] args) throws Exception {\n");
+		source.append("\t\tAnnotatedApplicationCommandLine.parse(new AnnotatedApplication(), args);\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/**
+	 * Generates the source code for an application registering the generated commands.
+	 * @param name the name of the application class.
+	 * @param lazy whether the commands are registered lazily.
+	 * @return the source code of the application class.
+	 */
+	private static String generateApplication(String name, boolean lazy)
+	{
+		StringBuilder source = new StringBuilder();
+		source.append("package generated;\n");
+		source.append("import net.skordal.cmdline.*;\n");
+		source.append("public final class ").append(name).append(" {\n");
+		source.append("\tpublic static void run(String[] args) throws Exception {\n");
+		source.append("\t\tCommandLineParser parser = new CommandLineParser(\"app\", \"Application\", \"\");\n");
+		if(lazy)
+		{
+			// A single lambda is used for all commands, so that registration does not create a class per command:
+			source.append("\t\tfinal ClassLoader loader = ").append(name).append(".class.getClassLoader();\n");
+			source.append("\t\tfor(int i = 0; i < ").append(NUM_COMMANDS).append("; ++i) {\n");
+			source.append("\t\t\tfinal String type = \"generated.Command\" + i;\n");
+			source.append("\t\t\tparser.addCommand(\"command-\" + i, \"Command number \" + i, () -> {\n");
+			source.append("\t\t\t\ttry {\n");
+			source.append("\t\t\t\t\treturn (CommandLineCommand) Class.forName(type, true, loader)"
+					+ ".getDeclaredConstructor().newInstance();\n");
+			source.append("\t\t\t\t} catch(ReflectiveOperationException error) {\n");
+			source.append("\t\t\t\t\tthrow new IllegalStateException(error);\n");
+			source.append("\t\t\t\t}\n");
+			source.append("\t\t\t});\n");
+			source.append("\t\t}\n");
+		} else {
+			for(int i = 0; i < NUM_COMMANDS; ++i)
+				source.append("\t\tparser.addCommand(new Command").append(i).append("());\n");
+		}
+		source.append("\t\tparser.parse(args);\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/**
+	 * Generates and compiles the benchmark application.
+	 * @param directory the directory to write the sources and classes to.
+	 * @throws Exception if the application cannot be compiled.
+	 */
+	private static void compileApplication(Path directory) throws Exception
+	{
+		Path sources = Files.createDirectories(directory.resolve("generated"));
+		ArrayList<String> arguments = new ArrayList<>();
+		arguments.add("-classpath");
+		arguments.add(System.getProperty("java.class.path"));
+		arguments.add("-d");
+		arguments.add(directory.toString());
+		arguments.add("-s");
+		arguments.add(sources.toString());
+
+		for(int i = 0; i < NUM_COMMANDS; ++i)
+		{
+			Path file = sources.resolve("Command" + i + ".java");
+			Files.writeString(file, generateCommand(i));
+			arguments.add(file.toString());
+		}
+		for(boolean lazy : new boolean[]{ false, true })
+		{
+			String name = lazy ? "LazyApplication" : "EagerApplication";
+			Path file = sources.resolve(name + ".java");
+			Files.writeString(file, generateApplication(name, lazy));
+			arguments.add(file.toString());
+		}
+		for(int i = 0; i < NUM_COMMANDS; ++i)
+		{
+			Path file = sources.resolve("AnnotatedCommand" + i + ".java");
+			Files.writeString(file, generateAnnotatedCommand(i));
+			arguments.add(file.toString());
+		}
+		Path application = sources.resolve("AnnotatedApplication.java");
+		Files.writeString(application, generateAnnotatedApplication());
+		arguments.add(application.toString());
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if(compiler == null || compiler.run(null, null, System.err, arguments.toArray(new String[0])) != 0)
+			throw new IllegalStateException("could not compile the startup benchmark application");
+	}
+
+	/**
+	 * Runs an application in a new class loader.
+	 * @param classpath   the class path containing the library and the application.
+	 * @param application the name of the application class.
+	 * @param args        the command line to run.
+	 * @return the number of classes loaded by the run.
+	 * @throws Exception if the application fails.
+	 */
+	private static long runApplication(URL[] classpath, String application, String[] args) throws Exception
+	{
+		long classes = CLASSES.getTotalLoadedClassCount();
+		try(URLClassLoader loader = new URLClassLoader(classpath, ClassLoader.getPlatformClassLoader()))
+		{
+			loader.loadClass(application).getMethod("run", String[].class).invoke(null, (Object) args);
+		}
+
+		return CLASSES.getTotalLoadedClassCount() - classes;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * @param arguments ignored.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String[] arguments) throws Exception
+	{
+		String filter = System.getProperty("bench.filter", "");
+		Pattern pattern = filter.isEmpty() ? null : Pattern.compile(filter);
+
+		Path directory = Files.createTempDirectory("cmdline-startup");
+		compileApplication(directory);
+
+		URL[] classpath = new URL[]{
+				CommandLineParser.class.getProtectionDomain().getCodeSource().getLocation(),
+				directory.toUri().toURL()
+			};
+		String[] args = new String[]{ "command-" + (NUM_COMMANDS / 2), "--option-1", "value", "input.txt" };
+
+		for(String variant : new String[]{ "Eager", "Lazy", "Annotated" })
+		{
+			String name = String.format("startup.%s.commands-%d", variant.toLowerCase(), NUM_COMMANDS);
+			if(pattern != null && !pattern.matcher(name).find())
+				continue;
+
+			String application = "generated." + variant + "Application";
+			runApplication(classpath, application, args);
+
+			long classes = 0, total = 0, best = Long.MAX_VALUE;
+			for(int i = 0; i < NUM_RUNS; ++i)
+			{
+				long start = System.nanoTime();
+				classes = runApplication(classpath, application, args);
+				long elapsed = System.nanoTime() - start;
+				total += elapsed;
+				best = Math.min(best, elapsed);
+			}
+
+			System.out.println(String.format("%-48s %11.2f ms/run %11.2f ms best %10d classes loaded",
+					name, total / 1e6 / NUM_RUNS, best / 1e6, classes));
+		}
+	}
+}
@@ -0,0 +1,37 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exception used to indicate that an abbreviated long option matches more than one option.
+ * @see CommandLineParser#setAbbreviationsEnabled(boolean)
+ */
+public class AmbiguousOptionException extends UnrecognizedOptionException
+{
+	private final List<String> candidates;
+
+	/**
+	 * Creates a new AmbiguousOptionException object.
+	 * @param option     the abbreviated option as specified on the command line, without the leading dashes.
+	 * @param candidates the names of the options starting with the abbreviation, without the leading dashes.
+	 */
+	public AmbiguousOptionException(String option, List<String> candidates)
+	{
+		super(option, "ambiguous command line option: --" + option + " (could be --" + String.join(", --", candidates)
+				+ ")");
+		this.candidates = Collections.unmodifiableList(candidates);
+	}
+
+	/**
+	 * Gets the names of the options matching the abbreviation.
+	 * @return an unmodifiable list of the matching option names, without the leading dashes, in sorted order.
+	 */
+	public List<String> getCandidates()
+	{
+		return candidates;
+	}
+}
@@ -0,0 +1,33 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+/**
+ * Exception used to indicate that an argument file could not be read.
+ * @see CommandLineParser#setArgumentFilesEnabled(boolean)
+ */
+public class ArgumentFileException extends CommandLineException
+{
+	private final String file;
+
+	/**
+	 * Creates a new ArgumentFileException object.
+	 * @param file   name of the argument file.
+	 * @param reason description of the error.
+	 */
+	public ArgumentFileException(String file, String reason)
+	{
+		super("error reading argument file " + file + ": " + reason);
+		this.file = file;
+	}
+
+	/**
+	 * Gets the name of the argument file that caused the exception.
+	 * @return the name of the argument file.
+	 */
+	public String getFile()
+	{
+		return file;
+	}
+}
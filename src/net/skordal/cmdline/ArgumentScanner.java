@@ -0,0 +1,441 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scanner recognizing commands, options and input files on a command line.
+ * The scanner processes one element of the command line at a time and reports what it finds to a listener.
+ * A scanner holds the state of a single parse and is not shared between threads; the compiled definitions
+ * it reads from are never modified by it.
+ * <p>
+ * If argument file expansion is enabled, tokens of the form {@code @file} are replaced by the tokens read from
+ * the specified file, which may in turn refer to other argument files. A token starting with {@code @@} is
+ * passed on with the first {@code @} removed. Argument files are read as the scanner reaches them.
+ * <p>
+ * If input file lists are enabled, the elements {@code --files0-from=FILE} and {@code --files-from=FILE} are
+ * replaced by the NUL-separated or newline-separated input files read from the specified file, or from standard
+ * input if the file is {@code -}. Entries in input file lists are always treated as input files.
+ * <p>
+ * Short options may be clustered, so that {@code -vx} is equivalent to {@code -v -x}. The last option in a
+ * cluster may take an argument, which is either the rest of the element, as in {@code -vofile}, or the next
+ * element. If abbreviations are enabled, long options may be shortened to any unambiguous prefix of their name.
+ */
+final class ArgumentScanner implements AutoCloseable
+{
+	/** Maximum nesting depth of argument files. */
+	private static final int MAX_ARGUMENT_FILE_DEPTH = 32;
+
+	/** Prefix of the element specifying a NUL-separated input file list. */
+	static final String FILES0_FROM = "--files0-from=";
+	/** Prefix of the element specifying a newline-separated input file list. */
+	static final String FILES_FROM = "--files-from=";
+
+	private final CompiledCommandLine definitions;
+	private final ArrayDeque<TokenSource> sources = new ArrayDeque<>();
+	private final boolean expandArgumentFiles, expandInputFileLists, abbreviations;
+	private String lookahead = null;
+
+	private TokenSource inputFileList = null;
+	private String nextInputFile = null;
+
+	private CompiledCommandLine.CommandEntry entry = null;
+	private CommandLineCommand command = null;
+	private OptionTable options;
+	private OptionConstraints constraints = null;
+	private ArrayList<CommandLineOption> precedingOptions = null;
+	private long[] seen = null;
+
+	private ParseInstrumentation instrumentation = null;
+
+	/**
+	 * Listener receiving the elements recognized by the scanner.
+	 */
+	interface Listener
+	{
+		/**
+		 * Called when the command has been recognized.
+		 * @param command the command.
+		 * @throws CommandLineException if the listener rejects the command.
+		 */
+		void commandFound(CommandLineCommand command) throws CommandLineException;
+
+		/**
+		 * Called when an option has been recognized.
+		 * @param option   the option.
+		 * @param argument the argument of the option, or {@code null} if no argument was provided.
+		 * @throws CommandLineException if the listener rejects the option or its argument.
+		 */
+		void optionFound(CommandLineOption option, String argument) throws CommandLineException;
+
+		/**
+		 * Called when an input file has been recognized.
+		 * @param inputFile the input file.
+		 * @throws CommandLineException if the listener rejects the input file.
+		 */
+		void inputFileFound(String inputFile) throws CommandLineException;
+
+		/**
+		 * Called when the end of the command line has been reached by a scanner that was advanced on demand,
+		 * such as when iterating over the input files of a streaming command.
+		 * @throws CommandLineException if the listener rejects the command line.
+		 */
+		default void endOfCommandLine() throws CommandLineException
+		{
+		}
+	}
+
+	/**
+	 * Creates a new scanner.
+	 * @param definitions         the compiled command and option definitions.
+	 * @param tokens              the source of the command line tokens.
+	 * @param expandArgumentFiles  whether to expand argument files.
+	 * @param expandInputFileLists whether to expand input file lists.
+	 * @param abbreviations        whether to accept unambiguous prefixes of long option names.
+	 */
+	ArgumentScanner(CompiledCommandLine definitions, TokenSource tokens, boolean expandArgumentFiles,
+			boolean expandInputFileLists, boolean abbreviations)
+	{
+		this.definitions = definitions;
+		this.sources.push(tokens);
+		this.expandArgumentFiles = expandArgumentFiles;
+		this.expandInputFileLists = expandInputFileLists;
+		this.abbreviations = abbreviations;
+		this.options = definitions.getGlobalOptions();
+	}
+
+	/**
+	 * Sets the instrumentation recording the time spent reading tokens and looking up commands and options.
+	 * @param instrumentation the instrumentation of the parse, or {@code null} to disable instrumentation.
+	 */
+	void setInstrumentation(ParseInstrumentation instrumentation)
+	{
+		this.instrumentation = instrumentation;
+	}
+
+	/**
+	 * Gets the command recognized so far.
+	 * @return the command, or {@code null} if no command has been recognized yet.
+	 */
+	CommandLineCommand getCommand()
+	{
+		return command;
+	}
+
+	/**
+	 * Checks whether there are more elements left on the command line.
+	 * @return {@code true} if there are more elements to scan.
+	 * @throws CommandLineException if reading the next token fails.
+	 */
+	boolean hasNext() throws CommandLineException
+	{
+		return peekInputFile() != null || peekToken() != null;
+	}
+
+	/**
+	 * Scans the next element of the command line and reports it to the listener.
+	 * An element is either a command, an input file or an option together with its argument.
+	 * @param listener the listener to report the element to.
+	 * @throws CommandLineException if the element is invalid or rejected by the listener.
+	 */
+	void next(Listener listener) throws CommandLineException
+	{
+		if(peekInputFile() != null)
+		{
+			final String inputFile = nextInputFile;
+			nextInputFile = null;
+			listener.inputFileFound(inputFile);
+			return;
+		}
+
+		final String token = nextToken();
+
+		if(expandInputFileLists && (token.startsWith(FILES0_FROM) || token.startsWith(FILES_FROM)))
+		{
+			if(command == null)
+				throw new NoCommandSpecifiedException();
+
+			if(token.startsWith(FILES0_FROM))
+				inputFileList = DelimitedTokenSource.open(token.substring(FILES0_FROM.length()), (byte) 0);
+			else
+				inputFileList = DelimitedTokenSource.open(token.substring(FILES_FROM.length()), (byte) '\n');
+		} else if(token.startsWith("--"))
+		{
+			final CommandLineOption option = lookupLongOption(token);
+			if(option == null)
+			{
+				final String name = token.substring(2);
+				throw new UnrecognizedOptionException(name, options.suggestLongOptions(name));
+			}
+			mark(option);
+
+			String argument = null;
+			if(option.argumentRequired())
+			{
+				if(peekToken() != null)
+					argument = nextToken();
+				else
+					throw new ArgumentMissingException(token);
+			} else if(option.argumentOptional() && nextIsArgument())
+				argument = nextToken();
+
+			listener.optionFound(option, argument);
+		} else if(token.startsWith("-") && token.length() > 1)
+			nextShortOptions(token, listener);
+		else if(command == null || command instanceof CommandLineCommandGroup)
+		{
+			final long start = instrumentation != null ? System.nanoTime() : 0;
+			final CompiledCommandLine.CommandEntry next = entry == null ? definitions.getEntry(token)
+					: entry.getSubcommand(token);
+			if(next == null)
+				throw new InvalidCommandException(token, definitions.suggestCommands(entry, token));
+			entry = next;
+			command = next.getCommand();
+			options = definitions.getOptions(next);
+			constraints = definitions.getConstraints(next);
+			if(constraints != null && precedingOptions != null && !(command instanceof CommandLineCommandGroup))
+			{
+				for(CommandLineOption option : precedingOptions)
+					seen = constraints.mark(seen, option);
+			}
+			if(instrumentation != null)
+				instrumentation.lookedUp(start);
+
+			listener.commandFound(command);
+		} else
+			listener.inputFileFound(token);
+	}
+
+	/**
+	 * Reports the options in a cluster of short options to the listener.
+	 * Options are processed from left to right until an option taking an argument is found, which consumes the
+	 * rest of the element or, if the option is last in the cluster, the next element.
+	 * @param token    the command line element, including the leading {@code -}.
+	 * @param listener the listener to report the options to.
+	 * @throws CommandLineException if an option is invalid or rejected by the listener.
+	 */
+	private void nextShortOptions(String token, Listener listener) throws CommandLineException
+	{
+		for(int i = 1; i < token.length(); ++i)
+		{
+			final CommandLineOption option = lookupShortOption(token.charAt(i));
+			if(option == null && i == 1)
+				throw new UnrecognizedOptionException(token, options.suggestLongOptions(token.substring(1)));
+			else if(option == null)
+				throw new UnrecognizedOptionException("-" + token.charAt(i));
+			mark(option);
+
+			final boolean last = i + 1 == token.length();
+			if(option.argumentRequired())
+			{
+				if(!last)
+					listener.optionFound(option, token.substring(i + 1));
+				else if(peekToken() != null)
+					listener.optionFound(option, nextToken());
+				else
+					throw new ArgumentMissingException(i == 1 ? token : "-" + token.charAt(i));
+				return;
+			} else if(option.argumentOptional())
+			{
+				if(!last)
+					listener.optionFound(option, token.substring(i + 1));
+				else
+					listener.optionFound(option, nextIsArgument() ? nextToken() : null);
+				return;
+			}
+
+			listener.optionFound(option, null);
+		}
+	}
+
+	/**
+	 * Gets all options available to the command recognized so far.
+	 * @return the global options, the options inherited from groups and the options of the command.
+	 */
+	List<CommandLineOption> getScopeOptions()
+	{
+		return definitions.getScopeOptions(entry);
+	}
+
+	/**
+	 * Reports an option that was not found on the command line, such as an option with a default value, to a
+	 * listener as if it had been found on the command line.
+	 * @param option   the option.
+	 * @param argument the argument of the option.
+	 * @param listener the listener to report the option to.
+	 * @throws CommandLineException if the listener rejects the option.
+	 */
+	void supply(CommandLineOption option, String argument, Listener listener) throws CommandLineException
+	{
+		mark(option);
+		listener.optionFound(option, argument);
+	}
+
+	/**
+	 * Records that an option is present on the command line, for checking the option constraints.
+	 * Options found before the command are kept until the command, and thereby the constraints that apply, is
+	 * known.
+	 * @param option the option.
+	 */
+	private void mark(CommandLineOption option)
+	{
+		if(command == null || command instanceof CommandLineCommandGroup)
+		{
+			if(precedingOptions == null)
+				precedingOptions = new ArrayList<>();
+			precedingOptions.add(option);
+		} else if(constraints != null)
+			seen = constraints.mark(seen, option);
+	}
+
+	/**
+	 * Checks the option constraints of the command found against the options present on the command line.
+	 * @throws ConstraintViolationException if any constraint is violated.
+	 */
+	void checkConstraints() throws ConstraintViolationException
+	{
+		if(constraints != null)
+			constraints.check(seen);
+	}
+
+	/**
+	 * Looks up a long option in the options of the current command.
+	 * If no option matches exactly and abbreviations are enabled, the option is looked up by prefix.
+	 * @param token the command line element, including the leading {@code --}.
+	 * @return the option, or {@code null} if no option matches.
+	 * @throws AmbiguousOptionException if the element is an abbreviation matching several options.
+	 */
+	private CommandLineOption lookupLongOption(String token) throws AmbiguousOptionException
+	{
+		final long start = instrumentation != null ? System.nanoTime() : 0;
+		CommandLineOption retval = options.getLongOption(token, 2);
+		if(retval == null && abbreviations)
+			retval = options.getLongOptionPrefix(token, 2);
+
+		if(instrumentation != null)
+			instrumentation.lookedUp(start);
+		return retval;
+	}
+
+	/**
+	 * Looks up a short option in the options of the current command.
+	 * @param option the option character.
+	 * @return the option, or {@code null} if no option matches.
+	 */
+	private CommandLineOption lookupShortOption(char option)
+	{
+		if(instrumentation == null)
+			return options.getShortOption(option);
+
+		final long start = System.nanoTime();
+		final CommandLineOption retval = options.getShortOption(option);
+		instrumentation.lookedUp(start);
+		return retval;
+	}
+
+	/**
+	 * Checks whether the next element on the command line can be used as an optional option argument.
+	 * Required arguments are taken from the next element unconditionally, as with getopt, so that arguments such
+	 * as {@code --offset -5} can be given.
+	 * @return {@code true} if the next element exists and does not look like an option.
+	 */
+	private boolean nextIsArgument() throws CommandLineException
+	{
+		String next = peekToken();
+		return next != null && !next.startsWith("-");
+	}
+
+	/**
+	 * Reads the next entry of the current input file list without consuming it.
+	 * @return the next input file from the input file list, or {@code null} if no input file list is being read.
+	 */
+	private String peekInputFile() throws CommandLineException
+	{
+		if(nextInputFile == null && inputFileList != null)
+		{
+			nextInputFile = inputFileList.next();
+			if(nextInputFile == null)
+			{
+				inputFileList.close();
+				inputFileList = null;
+			}
+		}
+
+		return nextInputFile;
+	}
+
+	/**
+	 * Reads the next token without consuming it.
+	 * @return the next token, or {@code null} if there are no more tokens.
+	 */
+	private String peekToken() throws CommandLineException
+	{
+		if(lookahead == null)
+		{
+			if(instrumentation == null)
+				lookahead = readToken();
+			else {
+				final long start = System.nanoTime();
+				lookahead = readToken();
+				instrumentation.tokenized(start);
+			}
+		}
+
+		return lookahead;
+	}
+
+	/**
+	 * Reads and consumes the next token.
+	 * @return the next token.
+	 */
+	private String nextToken() throws CommandLineException
+	{
+		String retval = peekToken();
+		lookahead = null;
+		return retval;
+	}
+
+	/**
+	 * Reads the next token from the token sources, expanding argument files.
+	 * @return the next token, or {@code null} if there are no more tokens.
+	 */
+	private String readToken() throws CommandLineException
+	{
+		while(!sources.isEmpty())
+		{
+			String token = sources.peek().next();
+			if(token == null)
+				sources.pop().close();
+			else if(expandArgumentFiles && token.startsWith("@"))
+			{
+				if(token.startsWith("@@"))
+					return token.substring(1);
+				if(sources.size() > MAX_ARGUMENT_FILE_DEPTH)
+					throw new ArgumentFileException(token.substring(1), "argument files nested too deeply");
+				sources.push(ArgumentTokenizer.open(token.substring(1)));
+			} else
+				return token;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Closes any argument files and input file lists still open.
+	 */
+	@Override public void close()
+	{
+		if(inputFileList != null)
+		{
+			inputFileList.close();
+			inputFileList = null;
+		}
+
+		while(!sources.isEmpty())
+			sources.pop().close();
+	}
+}
@@ -0,0 +1,254 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Tokenizer splitting text into command line tokens.
+ * Tokens are separated by whitespace. Single or double quotes can be used to include whitespace in a token, and
+ * quoted text may contain the escape sequences {@code \n}, {@code \r}, {@code \t}, {@code \f}, {@code \\},
+ * {@code \"} and {@code \'}. A backslash at the end of a line inside quotes continues the quoted text on the next
+ * line, skipping its leading whitespace. Lines starting with {@code #} outside of a token are comments.
+ * <p>
+ * The text is read incrementally, so only the token currently being read is kept in memory. Tokens can also be
+ * read one line at a time, in which case a line break outside of quotes ends the command line being read.
+ */
+final class ArgumentTokenizer implements TokenSource
+{
+	private final Reader reader;
+	private final String name;
+
+	private final char[] buffer = new char[8192];
+	private int position = 0, limit = 0;
+	private final StringBuilder token = new StringBuilder();
+	private boolean endOfLine = false;
+
+	/**
+	 * Creates a new tokenizer.
+	 * @param reader the reader to read text from.
+	 * @param name   name of the text source, used in error messages.
+	 */
+	ArgumentTokenizer(Reader reader, String name)
+	{
+		this.reader = reader;
+		this.name = name;
+	}
+
+	/**
+	 * Opens an argument file for tokenizing.
+	 * The file is read using a memory-mapped window, so argument files of any size can be tokenized.
+	 * @param file name of the argument file.
+	 * @return a tokenizer reading from the file.
+	 * @throws ArgumentFileException if the file cannot be opened.
+	 */
+	static ArgumentTokenizer open(String file) throws ArgumentFileException
+	{
+		try {
+			Path path = CommandLineSession.current().resolve(file);
+			return new ArgumentTokenizer(new MappedFileReader(path), file);
+		} catch(NoSuchFileException error) {
+			throw new ArgumentFileException(file, "no such file");
+		} catch(IOException | RuntimeException error) {
+			throw new ArgumentFileException(file, String.valueOf(error.getMessage()));
+		}
+	}
+
+	@Override public String next() throws CommandLineException
+	{
+		try {
+			int c = skipWhitespace(false);
+			if(c == -1)
+			{
+				close();
+				return null;
+			}
+
+			return readToken(c);
+		} catch(IOException error) {
+			close();
+			throw new ArgumentFileException(name, String.valueOf(error.getMessage()));
+		}
+	}
+
+	/**
+	 * Reads the tokens on the next line containing any tokens.
+	 * Empty lines and lines containing only comments are skipped. Line breaks inside quotes are part of the
+	 * quoted text and do not end the line.
+	 * @return the tokens on the line, or {@code null} if the end of the input has been reached.
+	 * @throws CommandLineException if reading the input fails or the line contains an unterminated quote.
+	 */
+	String[] nextLine() throws CommandLineException
+	{
+		try {
+			ArrayList<String> tokens = new ArrayList<>();
+			for(;;)
+			{
+				int c = skipWhitespace(true);
+				if(c == -1 && tokens.isEmpty())
+				{
+					close();
+					return null;
+				} else if(c == -1 || (c == '\n' && !tokens.isEmpty()))
+					break;
+				else if(c == '\n')
+					continue;
+
+				tokens.add(readToken(c));
+				if(endOfLine)
+					break;
+			}
+
+			return tokens.toArray(new String[0]);
+		} catch(IOException error) {
+			close();
+			throw new ArgumentFileException(name, String.valueOf(error.getMessage()));
+		}
+	}
+
+	/**
+	 * Reads a token.
+	 * Afterwards, {@link #endOfLine} indicates whether the token was followed by a line break or the end of the
+	 * input.
+	 * @param c the first character of the token.
+	 * @return the token.
+	 */
+	private String readToken(int c) throws IOException, ArgumentFileException
+	{
+		int quote = 0;
+		token.setLength(0);
+		for(;;)
+		{
+			if(quote != 0)
+			{
+				if(c == quote)
+					quote = 0;
+				else if(c == '\\')
+					readEscape();
+				else
+					token.append((char) c);
+			} else if(c == '"' || c == '\'')
+				quote = c;
+			else if(Character.isWhitespace(c))
+			{
+				endOfLine = c == '\n';
+				break;
+			} else
+				token.append((char) c);
+
+			c = read();
+			if(c == -1)
+			{
+				if(quote != 0)
+					throw new ArgumentFileException(name, "unterminated quote");
+				endOfLine = true;
+				break;
+			}
+		}
+
+		return token.toString();
+	}
+
+	/**
+	 * Skips whitespace and comments preceding a token.
+	 * @param stopAtNewline whether to stop at the end of a line, including the end of a line containing a comment.
+	 * @return the first character of the token, {@code '\n'} if the end of a line was reached and
+	 *         {@code stopAtNewline} is set, or -1 if the end of the input has been reached.
+	 */
+	private int skipWhitespace(boolean stopAtNewline) throws IOException
+	{
+		for(;;)
+		{
+			int c = read();
+			if(c == '#')
+			{
+				do {
+					c = read();
+				} while(c != -1 && c != '\n');
+				if(stopAtNewline && c == '\n')
+					return c;
+			} else if(c == -1 || !Character.isWhitespace(c) || (stopAtNewline && c == '\n'))
+				return c;
+		}
+	}
+
+	/**
+	 * Reads an escape sequence following a backslash in a quoted string and appends it to the token.
+	 */
+	private void readEscape() throws IOException, ArgumentFileException
+	{
+		int c = read();
+		switch(c)
+		{
+			case -1:
+				throw new ArgumentFileException(name, "unterminated escape sequence");
+			case 'n':
+				token.append('\n');
+				break;
+			case 'r':
+				token.append('\r');
+				break;
+			case 't':
+				token.append('\t');
+				break;
+			case 'f':
+				token.append('\f');
+				break;
+			case '\r':
+			case '\n':
+				// Line continuation, skip the line break and leading whitespace on the next line:
+				while(position < limit || fill())
+				{
+					char next = buffer[position];
+					if(next != '\n' && next != '\r' && next != ' ' && next != '\t')
+						break;
+					++position;
+				}
+				break;
+			default:
+				token.append((char) c);
+				break;
+		}
+	}
+
+	/**
+	 * Reads the next character of the input.
+	 * @return the next character, or -1 if the end of the input has been reached.
+	 */
+	private int read() throws IOException
+	{
+		if(position == limit && !fill())
+			return -1;
+		return buffer[position++];
+	}
+
+	/**
+	 * Refills the input buffer.
+	 * @return {@code true} if characters were read, {@code false} if the end of the input has been reached.
+	 */
+	private boolean fill() throws IOException
+	{
+		int count;
+		do {
+			count = reader.read(buffer, 0, buffer.length);
+		} while(count == 0);
+
+		position = 0;
+		limit = Math.max(count, 0);
+		return count > 0;
+	}
+
+	@Override public void close()
+	{
+		try {
+			reader.close();
+		} catch(IOException error) {
+			// Nothing useful can be done if closing fails
+		}
+	}
+}
@@ -0,0 +1,210 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Validation of all option arguments on a command line as a single phase.
+ * The argument validators of the options are called concurrently using an executor, and each validator is
+ * called only once for each distinct argument, even if several options share the validator or an option is
+ * specified several times. Checks done by the option types themselves are cheap and done on the calling thread.
+ * All invalid arguments are reported together.
+ */
+final class ArgumentValidation
+{
+	private final Executor executor;
+
+	/**
+	 * Call of an argument validator with an argument.
+	 * Tasks are equal if they call the same validator with equal arguments, so they can be used as their own
+	 * keys when looking for duplicate calls.
+	 */
+	private static final class Task implements Runnable
+	{
+		private final CommandLineArgumentValidator validator;
+		private final String argument;
+		private final CommandLineOption option;
+
+		private CountDownLatch done;
+		private boolean valid, reported;
+		private long duration;
+		private RuntimeException exception;
+		private Error error;
+
+		/**
+		 * Creates a new validation task.
+		 * @param validator the argument validator.
+		 * @param argument  the argument to validate.
+		 * @param option    the first option the argument was specified for, used when reporting events.
+		 */
+		Task(CommandLineArgumentValidator validator, String argument, CommandLineOption option)
+		{
+			this.validator = validator;
+			this.argument = argument;
+			this.option = option;
+		}
+
+		@Override public void run()
+		{
+			CommandLineEvents.OptionValidation event = new CommandLineEvents.OptionValidation();
+			event.begin();
+			long start = System.nanoTime();
+			try {
+				valid = validator.validateArgument(argument);
+			} catch(RuntimeException exception) {
+				this.exception = exception;
+			} catch(Error error) {
+				this.error = error;
+			} finally {
+				duration = System.nanoTime() - start;
+				event.end();
+				if(event.shouldCommit())
+				{
+					event.option = ParseInstrumentation.getName(option);
+					event.valid = valid;
+					event.commit();
+				}
+
+				if(done != null)
+					done.countDown();
+			}
+		}
+
+		@Override public boolean equals(Object other)
+		{
+			if(!(other instanceof Task))
+				return false;
+			Task task = (Task) other;
+			return task.validator == validator && task.argument.equals(argument);
+		}
+
+		@Override public int hashCode()
+		{
+			return System.identityHashCode(validator) * 31 + argument.hashCode();
+		}
+	}
+
+	/**
+	 * Creates a new ArgumentValidation object.
+	 * @param executor the executor used to run the argument validators.
+	 */
+	ArgumentValidation(Executor executor)
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Validates the arguments of options.
+	 * @param options         the options and their arguments.
+	 * @param instrumentation the instrumentation of the parse, or {@code null} if the parse is not instrumented.
+	 * @throws ArgumentValidationException thrown if one or more arguments are invalid.
+	 */
+	void validate(List<ParseResult.OptionValue> options, ParseInstrumentation instrumentation)
+			throws ArgumentValidationException
+	{
+		final Task[] optionTasks = new Task[options.size()];
+		final HashMap<Task, Task> distinct = new HashMap<>();
+		final ArrayList<Task> tasks = new ArrayList<>();
+		for(int i = 0; i < optionTasks.length; ++i)
+		{
+			final CommandLineOption option = options.get(i).getOption();
+			final String argument = options.get(i).getArgument();
+			final CommandLineArgumentValidator validator = option.getValidatorFor(argument);
+			if(validator == null)
+				continue;
+
+			final Task task = new Task(validator, argument, option);
+			final Task existing = distinct.putIfAbsent(task, task);
+			if(existing == null)
+				tasks.add(task);
+			optionTasks[i] = existing != null ? existing : task;
+		}
+
+		run(tasks);
+
+		final ArrayList<InvalidArgumentException> errors = new ArrayList<>();
+		for(int i = 0; i < optionTasks.length; ++i)
+		{
+			final CommandLineOption option = options.get(i).getOption();
+			final String argument = options.get(i).getArgument();
+			final Task task = optionTasks[i];
+			if(task != null && task.exception != null)
+				throw task.exception;
+			if(task != null && task.error != null)
+				throw task.error;
+
+			final long start = instrumentation != null ? System.nanoTime() : 0;
+			boolean valid = task == null || task.valid;
+			if(valid)
+			{
+				try {
+					option.validateType(argument);
+				} catch(InvalidArgumentException error) {
+					errors.add(error);
+					valid = false;
+				}
+			} else
+				errors.add(new InvalidArgumentException(argument, option));
+
+			if(instrumentation != null)
+			{
+				long duration = System.nanoTime() - start;
+				if(task != null && !task.reported)
+				{
+					duration += task.duration;
+					task.reported = true;
+				}
+				instrumentation.validated(option, valid, duration);
+			}
+		}
+
+		if(!errors.isEmpty())
+			throw new ArgumentValidationException(errors);
+	}
+
+	/**
+	 * Runs validation tasks and waits for them to finish.
+	 * The first task is run on the calling thread while the others run using the executor.
+	 * @param tasks the tasks to run.
+	 */
+	private void run(List<Task> tasks)
+	{
+		if(tasks.isEmpty())
+			return;
+
+		final CountDownLatch done = new CountDownLatch(tasks.size() - 1);
+		for(int i = 1; i < tasks.size(); ++i)
+		{
+			final Task task = tasks.get(i);
+			task.done = done;
+			try {
+				executor.execute(task);
+			} catch(RejectedExecutionException error) {
+				task.run();
+			}
+		}
+
+		tasks.get(0).run();
+
+		boolean interrupted = false;
+		while(true)
+		{
+			try {
+				done.await();
+				break;
+			} catch(InterruptedException error) {
+				interrupted = true;
+			}
+		}
+
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+}
@@ -0,0 +1,40 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exception used to report all invalid option arguments on a command line at once.
+ * This is thrown instead of {@link InvalidArgumentException} when the arguments of all options are validated
+ * together before the options are handled.
+ * @see CommandLineParser#setValidationExecutor(java.util.concurrent.Executor)
+ */
+public class ArgumentValidationException extends CommandLineException
+{
+	private final List<InvalidArgumentException> errors;
+
+	/**
+	 * Creates a new ArgumentValidationException object.
+	 * @param errors the invalid arguments, in the order they were specified on the command line.
+	 */
+	public ArgumentValidationException(List<InvalidArgumentException> errors)
+	{
+		super(errors.size() == 1 ? "invalid command line argument provided"
+				: errors.size() + " invalid command line arguments provided");
+		this.errors = Collections.unmodifiableList(errors);
+		for(InvalidArgumentException error : errors)
+			addSuppressed(error);
+	}
+
+	/**
+	 * Gets the invalid arguments.
+	 * @return an unmodifiable list of the invalid arguments, in the order they were specified on the command line.
+	 */
+	public List<InvalidArgumentException> getErrors()
+	{
+		return errors;
+	}
+}
@@ -0,0 +1,186 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of running the jobs in a batch manifest or the segments of a pipeline.
+ * The result contains the status of each job in the order of the jobs in the manifest or on the command line,
+ * and the total time taken to run the batch.
+ * @see CommandLineBatch
+ * @see CommandLinePipeline
+ */
+public final class BatchResult
+{
+	private final List<Job> jobs;
+	private final long elapsed;
+	private final int failed, skipped;
+
+	/**
+	 * Status of a single job in a batch.
+	 */
+	public static final class Job
+	{
+		private final int index;
+		private final int exitCode;
+		private final Throwable error;
+		private final long duration;
+
+		Job(int index, int exitCode, Throwable error, long duration)
+		{
+			this.index = index;
+			this.exitCode = exitCode;
+			this.error = error;
+			this.duration = duration;
+		}
+
+		/**
+		 * Gets the position of the job in the manifest or pipeline.
+		 * Empty lines and comments in the manifest are not counted.
+		 * @return the number of the job, starting at 1.
+		 */
+		public int getIndex()
+		{
+			return index;
+		}
+
+		/**
+		 * Gets the exit code of the job.
+		 * @return the exit code, which is 0 if the job succeeded.
+		 * @see CommandLineBatch
+		 */
+		public int getExitCode()
+		{
+			return exitCode;
+		}
+
+		/**
+		 * Gets the error that made the job fail.
+		 * @return the exception thrown while parsing the command line or running the command, or {@code null} if no
+		 *         exception was thrown.
+		 */
+		public Throwable getError()
+		{
+			return error;
+		}
+
+		/**
+		 * Gets the time spent running the job.
+		 * @return the duration in nanoseconds.
+		 */
+		public long getDuration()
+		{
+			return duration;
+		}
+
+		/**
+		 * Checks whether the job was skipped because an earlier job failed.
+		 * @return {@code true} if the job was not run.
+		 * @see CommandLineBatch#setFailFast(boolean)
+		 * @see CommandLinePipeline#addDependency(String, String)
+		 */
+		public boolean isSkipped()
+		{
+			return duration < 0;
+		}
+
+		/**
+		 * Checks whether the job succeeded.
+		 * @return {@code true} if the job was run and its exit code is 0.
+		 */
+		public boolean isSuccessful()
+		{
+			return !isSkipped() && exitCode == 0;
+		}
+	}
+
+	/**
+	 * Creates a new BatchResult object.
+	 * @param jobs    the status of each job, in the order of the jobs in the manifest.
+	 * @param elapsed the time taken to run the batch, in nanoseconds.
+	 */
+	BatchResult(ArrayList<Job> jobs, long elapsed)
+	{
+		this.jobs = Collections.unmodifiableList(jobs);
+		this.elapsed = elapsed;
+
+		int failed = 0, skipped = 0;
+		for(Job job : jobs)
+		{
+			if(job.isSkipped())
+				++skipped;
+			else if(!job.isSuccessful())
+				++failed;
+		}
+		this.failed = failed;
+		this.skipped = skipped;
+	}
+
+	/**
+	 * Gets the status of the jobs in the batch.
+	 * @return an unmodifiable list of the jobs, in the order of the jobs in the manifest.
+	 */
+	public List<Job> getJobs()
+	{
+		return jobs;
+	}
+
+	/**
+	 * Gets the number of jobs that were run and succeeded.
+	 * @return the number of successful jobs.
+	 */
+	public int getSucceeded()
+	{
+		return jobs.size() - failed - skipped;
+	}
+
+	/**
+	 * Gets the number of jobs that were run and failed.
+	 * @return the number of failed jobs.
+	 */
+	public int getFailed()
+	{
+		return failed;
+	}
+
+	/**
+	 * Gets the number of jobs that were skipped after an earlier job failed.
+	 * @return the number of skipped jobs.
+	 */
+	public int getSkipped()
+	{
+		return skipped;
+	}
+
+	/**
+	 * Checks whether all jobs in the batch succeeded.
+	 * @return {@code true} if no job failed or was skipped.
+	 */
+	public boolean isSuccessful()
+	{
+		return failed == 0 && skipped == 0;
+	}
+
+	/**
+	 * Gets the time taken to run the batch, from reading the first line of the manifest until the last job
+	 * finished.
+	 * @return the elapsed time in nanoseconds.
+	 */
+	public long getElapsed()
+	{
+		return elapsed;
+	}
+
+	/**
+	 * Gets the number of jobs run per second.
+	 * @return the throughput of the batch, counting the jobs that were run.
+	 */
+	public double getThroughput()
+	{
+		return elapsed == 0 ? 0 : (jobs.size() - skipped) * 1e9 / elapsed;
+	}
+}
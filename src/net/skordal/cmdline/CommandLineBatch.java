@@ -0,0 +1,219 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Driver running a command for each line of a job manifest.
+ * Each line of the manifest is a command line, split into tokens using the same quoting rules as argument files.
+ * The lines are parsed and run by a bounded number of concurrent jobs, all using the same parser and its compiled
+ * command and option definitions. The manifest is read while the jobs run and at most twice the parallelism
+ * jobs are waiting to run at any time, so manifests of any length can be processed using a constant amount of
+ * memory apart from the status kept for each job.
+ * <p>
+ * As with {@link CommandLineDaemon}, option handlers and commands are called concurrently and must therefore be
+ * thread-safe. Each job runs in its own {@link CommandLineSession}, whose exit code becomes the exit code of the
+ * job. If the command line is invalid or usage information is requested, the exit code is
+ * {@link CommandLineDaemon#EXIT_USAGE}; if the command throws an exception, the exit code is
+ * {@link CommandLineDaemon#EXIT_FAILURE}.
+ */
+public final class CommandLineBatch
+{
+	private final CommandLineParser parser;
+	private volatile ExecutorService executor = null;
+	private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+	private volatile boolean failFast = false;
+
+	/**
+	 * Creates a new batch driver.
+	 * Jobs requesting usage information never exit the application, whether or not the parser is configured to
+	 * exit on help, and the configuration of the parser is not changed.
+	 * @param parser the parser used to parse the lines of the manifest.
+	 */
+	public CommandLineBatch(CommandLineParser parser)
+	{
+		if(parser == null)
+			throw new NullPointerException("parser is null in command line batch object");
+
+		this.parser = parser;
+	}
+
+	/**
+	 * Sets the executor used to run the jobs.
+	 * By default, a fixed pool with one platform thread per job that may run concurrently is created for each
+	 * batch. On Java 21 and later, an executor creating a virtual thread per task can be used instead; the number
+	 * of concurrent jobs is still limited by the parallelism. The executor is not shut down by the batch.
+	 * @param executor the executor to run jobs on, or {@code null} to use a pool created for each batch.
+	 */
+	public void setExecutor(ExecutorService executor)
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the maximum number of jobs running concurrently.
+	 * The default is the number of available processors.
+	 * @param parallelism the maximum number of concurrent jobs.
+	 */
+	public void setParallelism(int parallelism)
+	{
+		if(parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Sets whether the batch stops at the first failing job.
+	 * When enabled, no more lines are read from the manifest after a job fails, and jobs that have not started
+	 * yet are skipped. Jobs that are already running are allowed to finish. By default, all jobs are run.
+	 * @param failFast {@code true} to stop at the first failure, {@code false} to continue after errors.
+	 */
+	public void setFailFast(boolean failFast)
+	{
+		this.failFast = failFast;
+	}
+
+	/**
+	 * Runs the jobs in a manifest file.
+	 * @param manifest the path of the manifest.
+	 * @return the status of the jobs in the batch.
+	 * @throws ArgumentFileException if the manifest cannot be read or contains an unterminated quote. Jobs
+	 *                               started before the error have finished when the exception is thrown.
+	 */
+	public BatchResult run(Path manifest) throws ArgumentFileException
+	{
+		final Reader input;
+		try {
+			input = new MappedFileReader(manifest);
+		} catch(NoSuchFileException error) {
+			throw new ArgumentFileException(manifest.toString(), "no such file");
+		} catch(IOException | RuntimeException error) {
+			throw new ArgumentFileException(manifest.toString(), String.valueOf(error.getMessage()));
+		}
+
+		return run(input, manifest.toString());
+	}
+
+	/**
+	 * Runs the jobs in a manifest read from a reader.
+	 * @param input the reader to read the manifest from, which is closed afterwards.
+	 * @param name  name of the manifest, used in error messages.
+	 * @return the status of the jobs in the batch.
+	 * @throws ArgumentFileException if reading the manifest fails or it contains an unterminated quote. Jobs
+	 *                               started before the error have finished when the exception is thrown.
+	 */
+	public BatchResult run(Reader input, String name) throws ArgumentFileException
+	{
+		final int parallelism = this.parallelism;
+		final boolean failFast = this.failFast;
+		final ExecutorService executor = this.executor;
+		final ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool(parallelism,
+				runnable -> {
+					Thread thread = new Thread(runnable, "cmdline-batch");
+					thread.setDaemon(true);
+					return thread;
+				});
+
+		// Permits limit the number of jobs submitted but not yet finished, including those waiting in the pool:
+		final int limit = parallelism * 2;
+		final Semaphore pending = new Semaphore(limit);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		final ArrayList<BatchResult.Job> jobs = new ArrayList<>();
+
+		parser.compile();
+		final long start = System.nanoTime();
+		try(ArgumentTokenizer tokenizer = new ArgumentTokenizer(input, name))
+		{
+			int index = 0;
+			String[] args;
+			while((args = tokenizer.nextLine()) != null && !(failFast && failed.get()))
+			{
+				final int job = ++index;
+				final String[] jobArgs = args;
+				pending.acquireUninterruptibly();
+				try {
+					pool.execute(() -> {
+							try {
+								BatchResult.Job result = failFast && failed.get()
+										? new BatchResult.Job(job, 0, null, -1) : runJob(job, jobArgs);
+								if(!result.isSkipped() && !result.isSuccessful())
+									failed.set(true);
+								synchronized(jobs)
+								{
+									jobs.add(result);
+								}
+							} finally {
+								pending.release();
+							}
+						});
+				} catch(RejectedExecutionException error) {
+					pending.release();
+					failed.set(true);
+					synchronized(jobs)
+					{
+						jobs.add(new BatchResult.Job(job, CommandLineDaemon.EXIT_FAILURE, error, 0));
+					}
+				}
+			}
+		} catch(ArgumentFileException error) {
+			pending.acquireUninterruptibly(limit);
+			throw error;
+		} catch(CommandLineException error) {
+			pending.acquireUninterruptibly(limit);
+			throw new ArgumentFileException(name, error.getMessage());
+		} finally {
+			if(pool != executor)
+				pool.shutdown();
+		}
+
+		pending.acquireUninterruptibly(limit);
+		final long elapsed = System.nanoTime() - start;
+		jobs.sort(Comparator.comparingInt(BatchResult.Job::getIndex));
+		return new BatchResult(jobs, elapsed);
+	}
+
+	/**
+	 * Parses the command line of a job and runs the command.
+	 * @param index the number of the job.
+	 * @param args  the command line arguments of the job.
+	 * @return the status of the job.
+	 */
+	private BatchResult.Job runJob(int index, String[] args)
+	{
+		final long start = System.nanoTime();
+		final CommandLineSession session = new CommandLineSession(null, null, null, null, null);
+		final CommandLineSession previous = CommandLineSession.bound();
+		CommandLineSession.bind(session);
+		int exitCode;
+		Throwable error = null;
+		try {
+			parser.parse(args, false);
+			exitCode = session.getExitCode();
+		} catch(HelpRequestedException exception) {
+			exitCode = CommandLineDaemon.EXIT_USAGE;
+		} catch(CommandLineException exception) {
+			exitCode = CommandLineDaemon.EXIT_USAGE;
+			error = exception;
+		} catch(Throwable exception) {
+			// Errors are recorded as failures too, so that every job appears in the result:
+			exitCode = CommandLineDaemon.EXIT_FAILURE;
+			error = exception;
+		} finally {
+			CommandLineSession.bind(previous);
+		}
+
+		return new BatchResult.Job(index, exitCode, error, System.nanoTime() - start);
+	}
+}
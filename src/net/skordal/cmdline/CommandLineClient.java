@@ -0,0 +1,138 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Client sending a command line to a {@link CommandLineDaemon}.
+ * The client forwards its command line, working directory, environment variables and standard input to the
+ * daemon, and copies the output of the command to its own standard output and error streams. The protocol is
+ * simple enough that the client can also be implemented in a lightweight language where the startup time of
+ * the virtual machine matters.
+ */
+public final class CommandLineClient
+{
+	/** Name of the environment variable and system property specifying the socket path used by {@link #main}. */
+	public static final String SOCKET_VARIABLE = "CMDLINE_SOCKET";
+
+	private CommandLineClient()
+	{
+	}
+
+	/**
+	 * Runs a command line in a daemon.
+	 * @param socketPath path of the Unix domain socket the daemon listens on.
+	 * @param args       the command line arguments.
+	 * @return the exit code of the command.
+	 * @throws IOException if communication with the daemon fails.
+	 */
+	public static int run(Path socketPath, String[] args) throws IOException
+	{
+		try(SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX))
+		{
+			channel.connect(UnixDomainSocketAddress.of(socketPath));
+
+			final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+					DaemonProtocol.newOutputStream(channel)));
+			DataInputStream input = new DataInputStream(new BufferedInputStream(DaemonProtocol.newInputStream(channel)));
+
+			output.writeInt(DaemonProtocol.MAGIC);
+			output.writeInt(args.length);
+			for(String argument : args)
+				DaemonProtocol.writeString(output, argument);
+			DaemonProtocol.writeString(output, Paths.get("").toAbsolutePath().toString());
+
+			Map<String, String> environment = System.getenv();
+			output.writeInt(environment.size());
+			for(Map.Entry<String, String> variable : environment.entrySet())
+			{
+				DaemonProtocol.writeString(output, variable.getKey());
+				DaemonProtocol.writeString(output, variable.getValue());
+			}
+			output.flush();
+
+			Thread stdinPump = new Thread(() -> forwardInput(System.in, output), "cmdline-client-stdin");
+			stdinPump.setDaemon(true);
+			stdinPump.start();
+
+			for(;;)
+			{
+				byte type = input.readByte();
+				int length = DaemonProtocol.readLength(input, DaemonProtocol.MAX_FRAME_LENGTH, "frame length");
+				byte[] data = new byte[length];
+				input.readFully(data);
+
+				switch(type)
+				{
+					case DaemonProtocol.FRAME_STDOUT:
+						System.out.write(data, 0, data.length);
+						System.out.flush();
+						break;
+					case DaemonProtocol.FRAME_STDERR:
+						System.err.write(data, 0, data.length);
+						System.err.flush();
+						break;
+					case DaemonProtocol.FRAME_EXIT:
+						if(data.length != 4)
+							throw new IOException("invalid exit frame from daemon");
+						return ((data[0] & 0xff) << 24) | ((data[1] & 0xff) << 16) | ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+					default:
+						throw new IOException("unexpected frame type from daemon");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forwards standard input to the daemon.
+	 * @param input  the input to forward.
+	 * @param output the stream connected to the daemon.
+	 */
+	private static void forwardInput(InputStream input, DataOutputStream output)
+	{
+		byte[] buffer = new byte[8192];
+		try {
+			int count;
+			while((count = input.read(buffer)) > 0)
+				DaemonProtocol.writeFrame(output, DaemonProtocol.FRAME_STDIN, buffer, 0, count);
+			DaemonProtocol.writeFrame(output, DaemonProtocol.FRAME_STDIN, buffer, 0, 0);
+		} catch(IOException error) {
+			// The daemon has closed the connection
+		}
+	}
+
+	/**
+	 * Runs a command line in the daemon listening on the socket specified by the {@code CMDLINE_SOCKET}
+	 * environment variable or system property, and exits with the exit code of the command.
+	 * @param args the command line arguments.
+	 */
+	public static void main(String[] args)
+	{
+		String socket = System.getProperty(SOCKET_VARIABLE, System.getenv(SOCKET_VARIABLE));
+		if(socket == null)
+		{
+			System.err.println("the " + SOCKET_VARIABLE + " environment variable is not set");
+			System.exit(CommandLineDaemon.EXIT_FAILURE);
+		}
+
+		try {
+			System.exit(run(Paths.get(socket), args));
+		} catch(IOException error) {
+			System.err.println("cannot communicate with daemon: " + error.getMessage());
+			System.exit(CommandLineDaemon.EXIT_FAILURE);
+		}
+	}
+}
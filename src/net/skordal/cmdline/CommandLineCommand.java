@@ -3,8 +3,10 @@
 // Report bugs and issues on <https://github.com/skordal/cmdline/issues>
 package net.skordal.cmdline;
 
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -13,8 +15,27 @@ import java.util.Set;
 public abstract class CommandLineCommand implements Comparable<CommandLineCommand>
 {
 	private final LinkedHashSet<CommandLineOption> options = new LinkedHashSet<>();
+	private final ArrayList<OptionConstraint> constraints = new ArrayList<>();
 	private final String command, description;
 	private int longestOption;
+	private volatile int revision;
+	private volatile RenderedUsage optionUsage;
+	private volatile CommandLineCommandGroup parent;
+
+	/**
+	 * Option usage rendered for a specific revision of the command.
+	 */
+	private static final class RenderedUsage
+	{
+		final int revision;
+		final String usage;
+
+		RenderedUsage(int revision, String usage)
+		{
+			this.revision = revision;
+			this.usage = usage;
+		}
+	}
 
 	/**
 	 * Constructs a new CommandLineCommand object.
@@ -37,10 +58,24 @@ public abstract class CommandLineCommand implements Comparable<CommandLineComman
 	public final void addOption(CommandLineOption option)
 	{
 		options.add(option);
+		invalidate();
 		if(option.getLongOption() != null && option.getLongOption().length() > longestOption)
 			longestOption = option.getLongOption().length();
 	}
 
+	/**
+	 * Adds a constraint on the options of the command line command.
+	 * The constraint may refer to the options of the command, of the groups containing it and global options.
+	 * @param constraint Constraint to add to the command.
+	 */
+	public final void addConstraint(OptionConstraint constraint)
+	{
+		if(constraint == null)
+			throw new NullPointerException("constraint is null in command line command object");
+		constraints.add(constraint);
+		invalidate();
+	}
+
 	/**
 	 * Gets the name of the command.
 	 * @return the name of the command.
@@ -50,6 +85,16 @@ public abstract class CommandLineCommand implements Comparable<CommandLineComman
 		return command;
 	}
 
+	/**
+	 * Gets the path of the command, consisting of the names of the groups containing it and its own name.
+	 * @return the names of the command and the groups containing it, separated by spaces.
+	 */
+	public String getPath()
+	{
+		CommandLineCommandGroup group = parent;
+		return group == null ? command : group.getPath() + " " + command;
+	}
+
 	/**
 	 * Gets the description of the command.
 	 * @return the description of the command.
@@ -64,34 +109,53 @@ public abstract class CommandLineCommand implements Comparable<CommandLineComman
 	 */
 	public void printOptions()
 	{
-		System.out.println(String.format("Options for \"%s\" command:", getCommand()));
-		if(options.isEmpty())
-		{
-			System.out.println("  No options supported.");
-		} else {
-			for(CommandLineOption option : options)
-			{
-				int numSpaces;
+		System.out.print(getOptionUsage());
+	}
 
-				if(option.getLongOption() == null)
-					numSpaces = longestOption + CommandLineParser.USAGE_COLUMN_INDENT;
-				else
-					numSpaces = longestOption - option.getLongOption().length() + CommandLineParser.USAGE_COLUMN_INDENT;
+	/**
+	 * Gets the list of available options for this command as printed by {@link #printOptions()}.
+	 * The list is rendered once and cached until an option is added to the command or to a group containing it.
+	 * @return the list of available options.
+	 */
+	String getOptionUsage()
+	{
+		final int currentRevision = getRevision();
+		RenderedUsage retval = optionUsage;
+		if(retval == null || retval.revision != currentRevision)
+		{
+			StringBuilder usage = new StringBuilder(64 + options.size() * 64);
+			appendUsage(usage);
+			retval = new RenderedUsage(currentRevision, usage.toString());
+			optionUsage = retval;
+		}
 
-				System.out.print("  ");
-				if(option.getShortOption() != null)
-					System.out.print("-" + option.getShortOption() + ", ");
-				else
-					System.out.print("    ");
+		return retval.usage;
+	}
 
-				if(option.getLongOption() != null)
-					System.out.print("--" + option.getLongOption());
+	/**
+	 * Appends the usage information for this command, consisting of its options and the options inherited from
+	 * the groups containing it.
+	 * @param usage the buffer to append the usage information to.
+	 */
+	void appendUsage(StringBuilder usage)
+	{
+		final String newline = System.lineSeparator();
+		usage.append(String.format("Options for \"%s\" command:", getPath())).append(newline);
+		if(options.isEmpty())
+			usage.append("  No options supported.").append(newline);
+		else {
+			for(CommandLineOption option : options)
+				option.appendUsage(usage, longestOption);
+		}
 
-				for(int i = 0; i < numSpaces; ++i)
-					System.out.print(" ");
+		for(CommandLineCommand group = parent; group != null; group = group.parent)
+		{
+			if(group.options.isEmpty())
+				continue;
 
-				System.out.println(option.getDescription());
-			}
+			usage.append(String.format("Options inherited from \"%s\" command:", group.getPath())).append(newline);
+			for(CommandLineOption option : group.options)
+				option.appendUsage(usage, group.longestOption);
 		}
 	}
 
@@ -120,4 +184,76 @@ public abstract class CommandLineCommand implements Comparable<CommandLineComman
 	{
 		return options;
 	}
+
+	/**
+	 * Returns the list of option constraints associated with this command.
+	 * @return the list of option constraints associated with this command.
+	 */
+	List<OptionConstraint> getConstraints()
+	{
+		return constraints;
+	}
+
+	/**
+	 * Returns the revision of the option set of this command.
+	 * The revision is incremented every time an option is added to the command or to a group containing it,
+	 * and is used by the command line parser to determine whether its compiled option tables are up to date.
+	 * @return the revision of the option set of this command.
+	 */
+	int getRevision()
+	{
+		CommandLineCommandGroup group = parent;
+		return group == null ? revision : revision + group.getRevision();
+	}
+
+	/**
+	 * Increments the revision of the command and discards its rendered usage information.
+	 */
+	final void invalidate()
+	{
+		++revision;
+		optionUsage = null;
+	}
+
+	/**
+	 * Gets the group containing this command.
+	 * @return the group containing the command, or {@code null} if the command is not part of a group.
+	 */
+	CommandLineCommandGroup getParent()
+	{
+		return parent;
+	}
+
+	/**
+	 * Sets the group containing this command.
+	 * @param parent the group containing the command.
+	 * @throws IllegalArgumentException if the command already belongs to another group.
+	 */
+	void setParent(CommandLineCommandGroup parent)
+	{
+		if(this.parent != null && this.parent != parent)
+			throw new IllegalArgumentException("command \"" + command + "\" already belongs to a group");
+		this.parent = parent;
+	}
+
+	/**
+	 * Gets the command that is run when this command is found on the command line.
+	 * Commands registered lazily are created by this method; other commands return themselves.
+	 * @return the command to run.
+	 */
+	CommandLineCommand resolve()
+	{
+		return this;
+	}
+
+	/**
+	 * Compiles the option table used when parsing the options of this command.
+	 * @param globalOptions the global options and the options inherited from the groups containing the command,
+	 *                      which take precedence over the options of the command.
+	 * @return the option table for the command.
+	 */
+	OptionTable compileOptions(List<CommandLineOption> globalOptions)
+	{
+		return new OptionTable(globalOptions, resolve().getOptions());
+	}
 }
@@ -0,0 +1,99 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Class representing a command containing subcommands.
+ * Groups allow building command hierarchies such as {@code tool cluster node drain}, where {@code cluster} and
+ * {@code node} are groups. The options of a group apply to all commands below it, and take precedence over the
+ * options of the subcommands, in the same way as global options. A group is not a command on its own: if the
+ * command line ends at a group, the usage information for the group is printed and a
+ * {@link NoCommandSpecifiedException} is thrown.
+ * <p>
+ * Subcommands are looked up one level at a time while parsing, so finding a command takes time proportional
+ * to its depth in the hierarchy, regardless of the number of commands.
+ */
+public class CommandLineCommandGroup extends CommandLineCommand
+{
+	private final TreeSet<CommandLineCommand> commands = new TreeSet<>();
+	private int longestCommand = 0;
+
+	/**
+	 * Constructs a new CommandLineCommandGroup object.
+	 * @param command     Command string used on the command line.
+	 * @param description Description of the command used in help texts.
+	 */
+	public CommandLineCommandGroup(String command, String description)
+	{
+		super(command, description);
+	}
+
+	/**
+	 * Adds a subcommand to the group.
+	 * @param command the command to add, which may be another group.
+	 * @throws IllegalArgumentException if the command already belongs to another group.
+	 */
+	public final void addCommand(CommandLineCommand command)
+	{
+		command.setParent(this);
+		commands.add(command);
+		invalidate();
+		if(command.getCommand().length() > longestCommand)
+			longestCommand = command.getCommand().length();
+	}
+
+	/**
+	 * Adds a subcommand that is created when it is first used.
+	 * @param command     Command string used on the command line.
+	 * @param description Description of the command used in help texts.
+	 * @param supplier    Supplier creating the command, which must have the specified name.
+	 * @see CommandLineParser#addCommand(String, String, Supplier)
+	 */
+	public final void addCommand(String command, String description, Supplier<? extends CommandLineCommand> supplier)
+	{
+		addCommand(new LazyCommandLineCommand(command, description, supplier));
+	}
+
+	/**
+	 * Gets the subcommands of the group.
+	 * @return an unmodifiable view of the subcommands, ordered by name.
+	 */
+	Collection<CommandLineCommand> getCommands()
+	{
+		return Collections.unmodifiableCollection(commands);
+	}
+
+	@Override void appendUsage(StringBuilder usage)
+	{
+		final String newline = System.lineSeparator();
+		usage.append(String.format("Commands for \"%s\" command:", getPath())).append(newline);
+		for(CommandLineCommand command : commands)
+		{
+			usage.append("  ").append(command.getCommand());
+			CommandLineParser.appendPadding(usage,
+					longestCommand - command.getCommand().length() + CommandLineParser.USAGE_COLUMN_INDENT);
+			usage.append(command.getDescription()).append(newline);
+		}
+		usage.append(newline);
+
+		super.appendUsage(usage);
+	}
+
+	/**
+	 * Processes this command.
+	 * Groups are never processed by the command line parser, so this method throws an exception.
+	 * @param inputFiles ignored.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override public final void processCommand(LinkedList<String> inputFiles)
+	{
+		throw new UnsupportedOperationException("command group \"" + getPath() + "\" cannot be processed");
+	}
+}
@@ -0,0 +1,34 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+/**
+ * Service provider interface for commands discovered using {@link java.util.ServiceLoader}.
+ * Providers are listed in {@code META-INF/services/net.skordal.cmdline.CommandLineCommandProvider} or in the
+ * {@code provides} clause of a module declaration. A provider describes a command without creating it, so that the
+ * class of the command and its options are only loaded if the command is used. Providers should therefore be
+ * small classes that do not refer to the command class except in {@link #createCommand()}.
+ * @see CommandLineParser#loadCommands(ClassLoader)
+ */
+public interface CommandLineCommandProvider
+{
+	/**
+	 * Gets the name of the command.
+	 * @return the command string used on the command line.
+	 */
+	public String getCommand();
+
+	/**
+	 * Gets the description of the command.
+	 * @return the description of the command used in help texts.
+	 */
+	public String getDescription();
+
+	/**
+	 * Creates the command.
+	 * This is called at most once, when the command is first used.
+	 * @return the command, which must have the name returned by {@link #getCommand()}.
+	 */
+	public CommandLineCommand createCommand();
+}
@@ -0,0 +1,295 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Server running commands on behalf of clients connecting through a Unix domain socket.
+ * A daemon keeps a command line parser and its commands loaded in a long-running process, so that each
+ * invocation of the application avoids the startup cost of the virtual machine. Clients, such as
+ * {@link CommandLineClient}, send their command line, working directory, environment variables and standard
+ * input to the daemon, which parses the command line, runs the command and streams its output and exit code
+ * back to the client.
+ * <p>
+ * Each connection is handled by a task submitted to an executor, so several commands can run concurrently.
+ * Option handlers and commands must therefore be thread-safe. While a command runs, its thread is bound to a
+ * {@link CommandLineSession} describing the client, and {@code System.out}, {@code System.err} and
+ * {@code System.in} are routed to the client. Commands must not call {@code System.exit}.
+ * <p>
+ * The exit code sent to the client is the one set using {@link CommandLineSession#setExitCode(int)}, or 0 if the
+ * command completes normally. If the command line is invalid or usage information is requested, the exit code is
+ * {@link #EXIT_USAGE}; if the command throws an exception, the exit code is {@link #EXIT_FAILURE}.
+ */
+public final class CommandLineDaemon implements Closeable
+{
+	/** Exit code used when the command line is invalid or usage information was requested. */
+	public static final int EXIT_USAGE = 1;
+	/** Exit code used when a command fails with an exception. */
+	public static final int EXIT_FAILURE = 70;
+
+	private static PrintStream routedOutput, routedError;
+
+	private final CommandLineParser parser;
+	private final Path socketPath;
+	private ExecutorService executor = null;
+	private volatile ServerSocketChannel server = null;
+
+	/**
+	 * Creates a new daemon.
+	 * Command lines requesting usage information never exit the daemon, whether or not the parser is configured
+	 * to exit on help, and the configuration of the parser is not changed.
+	 * @param parser     the parser used to parse the command lines sent by clients.
+	 * @param socketPath the path of the Unix domain socket to listen on.
+	 */
+	public CommandLineDaemon(CommandLineParser parser, Path socketPath)
+	{
+		if(parser == null || socketPath == null)
+			throw new NullPointerException("parser or socket path is null in command line daemon object");
+
+		this.parser = parser;
+		this.socketPath = socketPath;
+	}
+
+	/**
+	 * Sets the executor used to run commands.
+	 * By default, a cached thread pool of daemon threads is used. On Java 21 and later, an executor creating a
+	 * virtual thread per task can be used instead.
+	 * @param executor the executor to run commands on.
+	 */
+	public void setExecutor(ExecutorService executor)
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Listens for and handles connections until the daemon is closed.
+	 * The parser is compiled before the daemon starts listening. A stale socket file left by an earlier daemon
+	 * is removed.
+	 * @throws IOException if the socket cannot be created.
+	 */
+	public void serve() throws IOException
+	{
+		parser.compile();
+		installRouting();
+
+		if(executor == null)
+		{
+			executor = Executors.newCachedThreadPool(runnable -> {
+					Thread thread = new Thread(runnable, "cmdline-daemon");
+					thread.setDaemon(true);
+					return thread;
+				});
+		}
+
+		Files.deleteIfExists(socketPath);
+		ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		channel.bind(UnixDomainSocketAddress.of(socketPath));
+		server = channel;
+
+		try {
+			while(channel.isOpen())
+			{
+				final SocketChannel client;
+				try {
+					client = channel.accept();
+				} catch(ClosedChannelException error) {
+					break;
+				}
+
+				try {
+					executor.execute(() -> handleConnection(client));
+				} catch(RejectedExecutionException error) {
+					client.close();
+				}
+			}
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Stops the daemon.
+	 * Commands that are already running are allowed to finish.
+	 * @throws IOException if the socket cannot be closed.
+	 */
+	@Override public void close() throws IOException
+	{
+		ServerSocketChannel channel = server;
+		if(channel != null)
+		{
+			server = null;
+			channel.close();
+			Files.deleteIfExists(socketPath);
+		}
+	}
+
+	/**
+	 * Handles a connection from a client.
+	 * @param channel the channel connected to the client.
+	 */
+	private void handleConnection(SocketChannel channel)
+	{
+		try(SocketChannel client = channel)
+		{
+			DataInputStream input = new DataInputStream(new BufferedInputStream(DaemonProtocol.newInputStream(client)));
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(DaemonProtocol.newOutputStream(client)));
+
+			if(input.readInt() != DaemonProtocol.MAGIC)
+				return;
+
+			String[] args = new String[DaemonProtocol.readLength(input, DaemonProtocol.MAX_COUNT, "argument count")];
+			for(int i = 0; i < args.length; ++i)
+				args[i] = DaemonProtocol.readString(input);
+			Path workingDirectory = Paths.get(DaemonProtocol.readString(input));
+			int numVariables = DaemonProtocol.readLength(input, DaemonProtocol.MAX_COUNT, "variable count");
+			HashMap<String, String> environment = new HashMap<>();
+			for(int i = 0; i < numVariables; ++i)
+				environment.put(DaemonProtocol.readString(input), DaemonProtocol.readString(input));
+
+			PrintStream stdout = new PrintStream(new BufferedOutputStream(
+					new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.FRAME_STDOUT)), true);
+			PrintStream stderr = new PrintStream(new BufferedOutputStream(
+					new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.FRAME_STDERR)), true);
+			CommandLineSession session = new CommandLineSession(workingDirectory, environment,
+					new DaemonProtocol.FrameInputStream(input), stdout, stderr);
+
+			int exitCode = run(session, args);
+			stdout.flush();
+			stderr.flush();
+
+			byte[] code = new byte[]{ (byte) (exitCode >>> 24), (byte) (exitCode >>> 16), (byte) (exitCode >>> 8),
+					(byte) exitCode };
+			DaemonProtocol.writeFrame(output, DaemonProtocol.FRAME_EXIT, code, 0, code.length);
+		} catch(IOException error) {
+			// The client has disconnected or sent a malformed request, nothing more can be done for it
+		} catch(RuntimeException error) {
+			// A malformed request, such as an invalid working directory, must not stop the worker thread
+		}
+	}
+
+	/**
+	 * Runs a command line in a session.
+	 * @param session the session to run the command line in.
+	 * @param args    the command line arguments.
+	 * @return the exit code.
+	 */
+	private int run(CommandLineSession session, String[] args)
+	{
+		CommandLineSession.bind(session);
+		try {
+			parser.parse(args, false);
+			return session.getExitCode();
+		} catch(HelpRequestedException error) {
+			return EXIT_USAGE;
+		} catch(CommandLineException error) {
+			session.getError().println(parser.getApplicationName() + ": " + error.getMessage());
+			return EXIT_USAGE;
+		} catch(RuntimeException | Error error) {
+			error.printStackTrace(session.getError());
+			return EXIT_FAILURE;
+		} finally {
+			CommandLineSession.bind(null);
+		}
+	}
+
+	/**
+	 * Routes the standard streams of the process to the session bound to the current thread.
+	 * Threads without a bound session keep using the original streams.
+	 */
+	private static synchronized void installRouting()
+	{
+		if(routedOutput != null)
+			return;
+
+		final PrintStream out = System.out, err = System.err;
+		final InputStream in = System.in;
+
+		routedOutput = new PrintStream(new RoutingOutputStream(out, false), true);
+		routedError = new PrintStream(new RoutingOutputStream(err, true), true);
+		System.setOut(routedOutput);
+		System.setErr(routedError);
+		System.setIn(new InputStream()
+			{
+				private InputStream target()
+				{
+					CommandLineSession session = CommandLineSession.bound();
+					return session == null ? in : session.getInput();
+				}
+
+				@Override public int read() throws IOException
+				{
+					return target().read();
+				}
+
+				@Override public int read(byte[] buffer, int offset, int length) throws IOException
+				{
+					return target().read(buffer, offset, length);
+				}
+
+				@Override public int available() throws IOException
+				{
+					return target().available();
+				}
+			});
+	}
+
+	/**
+	 * Output stream writing to the standard output or error stream of the session bound to the current thread.
+	 */
+	private static final class RoutingOutputStream extends OutputStream
+	{
+		private final PrintStream original;
+		private final boolean error;
+
+		RoutingOutputStream(PrintStream original, boolean error)
+		{
+			this.original = original;
+			this.error = error;
+		}
+
+		private PrintStream target()
+		{
+			CommandLineSession session = CommandLineSession.bound();
+			if(session == null)
+				return original;
+			return error ? session.getError() : session.getOutput();
+		}
+
+		@Override public void write(int b)
+		{
+			target().write(b);
+		}
+
+		@Override public void write(byte[] buffer, int offset, int length)
+		{
+			target().write(buffer, offset, length);
+		}
+
+		@Override public void flush()
+		{
+			target().flush();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events emitted by the command line parser.
+ * The events are disabled unless enabled in a recording, for instance using
+ * {@code -XX:StartFlightRecording:+net.skordal.cmdline.Parse#enabled=true} or a custom settings file.
+ */
+final class CommandLineEvents
+{
+	private static final String CATEGORY = "CmdLine";
+
+	private CommandLineEvents()
+	{
+	}
+
+	/**
+	 * Event spanning the parsing and processing of a command line.
+	 * The time spent in each phase of the parse is included as fields of the event.
+	 */
+	@Name("net.skordal.cmdline.Parse") @Label("Command Line Parse") @Category(CATEGORY)
+	@Description("Parsing and processing of a command line") @StackTrace(false) @Enabled(false)
+	static final class Parse extends Event
+	{
+		@Label("Application") String application;
+		@Label("Command") String command;
+		@Label("Successful") boolean successful;
+		@Label("Options") int options;
+		@Label("Tokenizing Time") @Description("Time spent reading tokens and argument files")
+		@Timespan(Timespan.NANOSECONDS) long tokenizeTime;
+		@Label("Lookup Time") @Description("Time spent looking up commands and options")
+		@Timespan(Timespan.NANOSECONDS) long lookupTime;
+		@Label("Validation Time") @Description("Time spent validating option arguments")
+		@Timespan(Timespan.NANOSECONDS) long validationTime;
+		@Label("Handler Time") @Description("Time spent in option handlers")
+		@Timespan(Timespan.NANOSECONDS) long handlerTime;
+		@Label("Command Time") @Description("Time spent processing the command")
+		@Timespan(Timespan.NANOSECONDS) long commandTime;
+	}
+
+	/**
+	 * Event spanning the validation of an option argument.
+	 */
+	@Name("net.skordal.cmdline.OptionValidation") @Label("Option Validation") @Category(CATEGORY)
+	@Description("Validation of an option argument") @StackTrace(false) @Enabled(false)
+	static final class OptionValidation extends Event
+	{
+		@Label("Option") String option;
+		@Label("Valid") boolean valid;
+	}
+
+	/**
+	 * Event spanning a call to an option handler.
+	 */
+	@Name("net.skordal.cmdline.OptionHandler") @Label("Option Handler") @Category(CATEGORY)
+	@Description("Call to an option handler") @StackTrace(false) @Enabled(false)
+	static final class OptionHandler extends Event
+	{
+		@Label("Option") String option;
+	}
+
+	/**
+	 * Event spanning the processing of a command.
+	 */
+	@Name("net.skordal.cmdline.ProcessCommand") @Label("Process Command") @Category(CATEGORY)
+	@Description("Processing of a command") @StackTrace(false) @Enabled(false)
+	static final class ProcessCommand extends Event
+	{
+		@Label("Command") String command;
+	}
+}
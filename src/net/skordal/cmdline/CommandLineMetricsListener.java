@@ -0,0 +1,44 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+/**
+ * Interface for listeners receiving measurements from the command line parser.
+ * The listener is called from the thread parsing the command line, so implementations that are shared between
+ * threads must be thread safe. All times are in nanoseconds.
+ * @see CommandLineParser#setMetricsListener(CommandLineMetricsListener)
+ * @see CommandLineStatistics
+ */
+public interface CommandLineMetricsListener
+{
+	/**
+	 * Called when an option has been recognized on the command line and its argument has been validated.
+	 * @param option   the option.
+	 * @param valid    whether the argument of the option was accepted by the option.
+	 * @param duration the time spent validating the argument.
+	 */
+	public void optionValidated(CommandLineOption option, boolean valid, long duration);
+
+	/**
+	 * Called when the handler of an option has been called.
+	 * @param option   the option.
+	 * @param duration the time spent in the option handler.
+	 */
+	public void optionHandled(CommandLineOption option, long duration);
+
+	/**
+	 * Called when a command has been processed.
+	 * @param command  the command.
+	 * @param duration the time spent processing the command.
+	 */
+	public void commandProcessed(CommandLineCommand command, long duration);
+
+	/**
+	 * Called when the parser has finished parsing a command line.
+	 * @param command    the command found on the command line, or {@code null} if no command was found.
+	 * @param successful whether the command line was parsed without errors.
+	 * @param duration   the total time spent parsing and processing the command line.
+	 */
+	public void commandLineParsed(CommandLineCommand command, boolean successful, long duration);
+}
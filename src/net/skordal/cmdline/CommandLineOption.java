@@ -3,6 +3,8 @@
 // Report bugs and issues on <https://github.com/skordal/cmdline/issues>
 package net.skordal.cmdline;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 
 /**
@@ -14,13 +16,15 @@ public class CommandLineOption implements Comparable<CommandLineOption>
 	public final static int ARGUMENT_OPTIONAL = 1;
 	public final static int ARGUMENT_REQUIRED = 2;
 
-	private final Character shortOption;
+	private final char      shortOption;
+	private final boolean   hasShortOption;
 	private final String    longOption;
 	private final String    description;
 
 	private final int                    argumentRequired;
 	private CommandLineOptionHandler     handler;
 	private CommandLineArgumentValidator validator;
+	private boolean                      required;
 
 	/**
 	 * Creates a new command line option object.
@@ -42,7 +46,8 @@ public class CommandLineOption implements Comparable<CommandLineOption>
 		if(argumentRequired != NO_ARGUMENT && argumentRequired != ARGUMENT_OPTIONAL && argumentRequired != ARGUMENT_REQUIRED)
 			throw new IllegalArgumentException("invalid value for argument requirement parameter");
 
-		this.shortOption = shortOption;
+		this.shortOption = shortOption != null ? shortOption : 0;
+		this.hasShortOption = shortOption != null;
 		this.longOption = longOption;
 		this.argumentRequired = argumentRequired;
 		this.description = description;
@@ -51,11 +56,190 @@ public class CommandLineOption implements Comparable<CommandLineOption>
 		validator = null;
 	}
 
+	/**
+	 * Creates an option taking an {@code int} argument.
+	 * The argument is converted and validated by the option, and invalid arguments cause an
+	 * {@link InvalidArgumentException} to be thrown.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param handler     Handler called with the value of the argument.
+	 * @return the new option.
+	 */
+	public static CommandLineOption createIntOption(Character shortOption, String longOption, String description,
+			IntOptionHandler handler)
+	{
+		return createIntOption(shortOption, longOption, description, Integer.MIN_VALUE, Integer.MAX_VALUE, handler);
+	}
+
+	/**
+	 * Creates an option taking an {@code int} argument within a range.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param minimum     The smallest valid value, inclusive.
+	 * @param maximum     The largest valid value, inclusive.
+	 * @param handler     Handler called with the value of the argument.
+	 * @return the new option.
+	 */
+	public static CommandLineOption createIntOption(Character shortOption, String longOption, String description,
+			int minimum, int maximum, IntOptionHandler handler)
+	{
+		return new TypedCommandLineOption.IntOption(shortOption, longOption, description, minimum, maximum, handler);
+	}
+
+	/**
+	 * Creates an option taking a {@code long} argument.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param handler     Handler called with the value of the argument.
+	 * @return the new option.
+	 */
+	public static CommandLineOption createLongOption(Character shortOption, String longOption, String description,
+			LongOptionHandler handler)
+	{
+		return createLongOption(shortOption, longOption, description, Long.MIN_VALUE, Long.MAX_VALUE, handler);
+	}
+
+	/**
+	 * Creates an option taking a {@code long} argument within a range.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param minimum     The smallest valid value, inclusive.
+	 * @param maximum     The largest valid value, inclusive.
+	 * @param handler     Handler called with the value of the argument.
+	 * @return the new option.
+	 */
+	public static CommandLineOption createLongOption(Character shortOption, String longOption, String description,
+			long minimum, long maximum, LongOptionHandler handler)
+	{
+		return new TypedCommandLineOption.LongOption(shortOption, longOption, description, minimum, maximum, false,
+				handler);
+	}
+
+	/**
+	 * Creates an option taking a size argument.
+	 * Sizes are non-negative integers optionally followed by one of the suffixes {@code k}, {@code M}, {@code G},
+	 * {@code T} or {@code P}, which multiply the value by powers of 1024. The suffix may be followed by {@code B}
+	 * or {@code iB}, and is not case sensitive, so {@code 4M}, {@code 4MB} and {@code 4MiB} are all 4194304 bytes.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param handler     Handler called with the size in bytes.
+	 * @return the new option.
+	 */
+	public static CommandLineOption createSizeOption(Character shortOption, String longOption, String description,
+			LongOptionHandler handler)
+	{
+		return new TypedCommandLineOption.LongOption(shortOption, longOption, description, 0, Long.MAX_VALUE, true,
+				handler);
+	}
+
+	/**
+	 * Creates an option taking a {@code double} argument.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param handler     Handler called with the value of the argument.
+	 * @return the new option.
+	 */
+	public static CommandLineOption createDoubleOption(Character shortOption, String longOption, String description,
+			DoubleOptionHandler handler)
+	{
+		return new TypedCommandLineOption.DoubleOption(shortOption, longOption, description, handler);
+	}
+
+	/**
+	 * Creates an option representing a {@code boolean} value.
+	 * The option does not take an argument on the command line; specifying it sets the value to {@code true}.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param handler     Handler called with the value of the option.
+	 * @return the new option.
+	 */
+	public static CommandLineOption createBooleanOption(Character shortOption, String longOption, String description,
+			BooleanOptionHandler handler)
+	{
+		return new TypedCommandLineOption.BooleanOption(shortOption, longOption, description, handler);
+	}
+
+	/**
+	 * Creates an option taking the name of an enum constant as argument.
+	 * The name is not case sensitive.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param type        The enum type.
+	 * @param handler     Handler called with the enum constant.
+	 * @return the new option.
+	 */
+	public static <E extends Enum<E>> CommandLineOption createEnumOption(Character shortOption, String longOption,
+			String description, Class<E> type, ValueOptionHandler<E> handler)
+	{
+		final E[] constants = type.getEnumConstants();
+		return new TypedCommandLineOption.ValueOption<>(shortOption, longOption, description,
+				argument -> TypedCommandLineOption.parseEnum(constants, argument), handler);
+	}
+
+	/**
+	 * Creates an option taking a file system path as argument.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param handler     Handler called with the path.
+	 * @return the new option.
+	 */
+	public static CommandLineOption createPathOption(Character shortOption, String longOption, String description,
+			ValueOptionHandler<Path> handler)
+	{
+		return new TypedCommandLineOption.ValueOption<>(shortOption, longOption, description,
+				TypedCommandLineOption::parsePath, handler);
+	}
+
+	/**
+	 * Creates an option taking a duration as argument.
+	 * Durations are either ISO-8601 durations such as {@code PT1M30S}, or a number followed by one of the units
+	 * {@code ns}, {@code us}, {@code ms}, {@code s}, {@code m}, {@code h} or {@code d}, such as {@code 500ms}.
+	 * A number without a unit is interpreted as seconds.
+	 * @param shortOption Short option character, or {@code null} if there is no short option.
+	 * @param longOption  Long option string, or {@code null} if there is no long option.
+	 * @param description Description of the option, which is used when printing the option summary.
+	 * @param handler     Handler called with the duration.
+	 * @return the new option.
+	 */
+	public static CommandLineOption createDurationOption(Character shortOption, String longOption, String description,
+			ValueOptionHandler<Duration> handler)
+	{
+		return new TypedCommandLineOption.ValueOption<>(shortOption, longOption, description,
+				TypedCommandLineOption::parseDuration, handler);
+	}
+
 	/**
 	 * Gets the character representing the short option.
 	 * @return the character representing the option or {@code null} if no short option has been specified.
 	 */
 	public Character getShortOption()
+	{
+		return hasShortOption ? Character.valueOf(shortOption) : null;
+	}
+
+	/**
+	 * Checks whether this option has a short option.
+	 * @return {@code true} if this option has a short option.
+	 */
+	boolean hasShortOption()
+	{
+		return hasShortOption;
+	}
+
+	/**
+	 * Gets the short option character without boxing it.
+	 * @return the short option character; only meaningful if {@link #hasShortOption()} returns {@code true}.
+	 */
+	char getShortOptionChar()
 	{
 		return shortOption;
 	}
@@ -120,6 +304,27 @@ public class CommandLineOption implements Comparable<CommandLineOption>
 		this.handler = handler;
 	}
 
+	/**
+	 * Sets whether this option must be present on the command line.
+	 * Required options are checked together with the other option constraints when the command line has been
+	 * parsed. The flag must be set before the option is added to a command or to the parser.
+	 * @param required {@code true} if the option is required.
+	 * @see OptionConstraint#required(CommandLineOption)
+	 */
+	public void setRequired(boolean required)
+	{
+		this.required = required;
+	}
+
+	/**
+	 * Checks whether this option must be present on the command line.
+	 * @return {@code true} if the option is required.
+	 */
+	public boolean isRequired()
+	{
+		return required;
+	}
+
 	/**
 	 * Handles the option.
 	 * This is called by the command line parser when the option has been recognzied on the command line.
@@ -130,13 +335,82 @@ public class CommandLineOption implements Comparable<CommandLineOption>
 	 */
 	void handle(String argument) throws InvalidArgumentException
 	{
-		if(argument != null && (argumentOptional() || argumentRequired()))
-			if(validator != null && !validator.validateArgument(argument))
-				throw new InvalidArgumentException(argument, this);
+		validate(argument);
+		handleValidated(argument);
+	}
+
+	/**
+	 * Validates an argument for the option using the argument validator of the option.
+	 * The argument is then checked by {@link #validateType(String)}.
+	 * @param argument the argument of the option.
+	 * @throws InvalidArgumentException thrown if the argument validator reports that the argument is invalid.
+	 */
+	void validate(String argument) throws InvalidArgumentException
+	{
+		CommandLineArgumentValidator argumentValidator = getValidatorFor(argument);
+		if(argumentValidator != null && !argumentValidator.validateArgument(argument))
+			throw new InvalidArgumentException(argument, this);
+		validateType(argument);
+	}
+
+	/**
+	 * Gets the argument validator that has to accept an argument for the option.
+	 * @param argument the argument of the option.
+	 * @return the argument validator, or {@code null} if the argument does not need to be checked by a validator.
+	 */
+	CommandLineArgumentValidator getValidatorFor(String argument)
+	{
+		return argument != null && (argumentOptional() || argumentRequired()) ? validator : null;
+	}
+
+	/**
+	 * Checks that an argument can be used by the option, without calling the argument validator.
+	 * Options converting their arguments check that the argument can be converted.
+	 * @param argument the argument of the option.
+	 * @throws InvalidArgumentException thrown if the argument cannot be used by the option.
+	 */
+	void validateType(String argument) throws InvalidArgumentException
+	{
+	}
+
+	/**
+	 * Handles the option without validating its argument.
+	 * This is used when the argument has already been validated by {@link #validate(String)}.
+	 * @param argument the argument of the option.
+	 */
+	void handleValidated(String argument)
+	{
 		if(handler != null)
 			handler.handleOption(this, argument);
 	}
 
+	/**
+	 * Appends the usage line for this option to a usage description.
+	 * @param usage         the buffer to append the usage line to.
+	 * @param longestOption length of the longest long option in the list the option is part of, used for alignment.
+	 */
+	void appendUsage(StringBuilder usage, int longestOption)
+	{
+		int numSpaces;
+
+		if(longOption == null)
+			numSpaces = longestOption + CommandLineParser.USAGE_COLUMN_INDENT;
+		else
+			numSpaces = longestOption - longOption.length() + CommandLineParser.USAGE_COLUMN_INDENT;
+
+		usage.append("  ");
+		if(hasShortOption)
+			usage.append('-').append(shortOption).append(", ");
+		else
+			usage.append("    ");
+
+		if(longOption != null)
+			usage.append("--").append(longOption);
+
+		CommandLineParser.appendPadding(usage, numSpaces);
+		usage.append(getDescription()).append(System.lineSeparator());
+	}
+
 	/**
 	 * Checks if this command line option is equal to another object.
 	 * This is done by comparing whether the objects are of the same type, and if
@@ -151,9 +425,9 @@ public class CommandLineOption implements Comparable<CommandLineOption>
 
 		CommandLineOption option = (CommandLineOption) other;
 		boolean shortMatch = false, longMatch = false;
-		if(shortOption != null && option.shortOption != null)
-			shortMatch = option.shortOption.equals(shortOption);
-		if(longOption != null && option.shortOption != null)
+		if(hasShortOption && option.hasShortOption)
+			shortMatch = option.shortOption == shortOption;
+		if(longOption != null && option.longOption != null)
 			longMatch = option.longOption.equals(longOption);
 		return shortMatch || longMatch;
 	}
@@ -165,18 +439,15 @@ public class CommandLineOption implements Comparable<CommandLineOption>
 	 */
 	@Override public int compareTo(CommandLineOption option)
 	{
-		if(shortOption != null && option.shortOption != null)
-			return shortOption.compareTo(option.shortOption);
+		if(hasShortOption && option.hasShortOption)
+			return Character.compare(shortOption, option.shortOption);
 		else if(longOption != null && option.longOption != null)
 			return longOption.compareTo(option.longOption);
 		else {
-			Character a;
-			String b;
-
-			if(shortOption != null)
-				return shortOption.compareTo(option.longOption.charAt(0));
+			if(hasShortOption)
+				return Character.compare(shortOption, option.longOption.charAt(0));
 			else
-				return option.shortOption.compareTo(longOption.charAt(0));
+				return Character.compare(option.shortOption, longOption.charAt(0));
 		}
 	}
 
@@ -187,8 +458,8 @@ public class CommandLineOption implements Comparable<CommandLineOption>
 	@Override public int hashCode()
 	{
 		int hash = 7;
-		if(shortOption != null)
-			hash = 29 * hash + Objects.hashCode(shortOption);
+		if(hasShortOption)
+			hash = 29 * hash + Character.hashCode(shortOption);
 		if(longOption != null)
 			hash = 29 * hash + Objects.hashCode(longOption);
 		hash = 29 * hash + Objects.hashCode(description);
@@ -3,8 +3,21 @@
 // Report bugs and issues on <https://github.com/skordal/cmdline/issues>
 package net.skordal.cmdline;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ServiceLoader;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * Class for parsing command line commands and arguments.
@@ -13,17 +26,35 @@ public final class CommandLineParser
 {
 	/** Number of spaces used to separate options/commands and their descriptions in the application usage description. */
 	static final int USAGE_COLUMN_INDENT = 4;
+	/** Spaces used for padding columns in the usage description. */
+	private static final String USAGE_PADDING = "                                                                ";
 
 	private final TreeSet<CommandLineCommand> commands;
 	private final TreeSet<CommandLineOption>  globalOptions;
+	private final ArrayList<OptionConstraint> globalConstraints = new ArrayList<>();
 
 	private final String appname, description, helpFooter;
 	private int longestCommand = 0, longestOption = 0;
 
-	private final LinkedList<String> inputFiles;
-
 	private final CommandLineOption helpOption;
 
+	private volatile CompiledCommandLine compiled;
+	private volatile byte[] globalUsage;
+	private final ConcurrentHashMap<CommandLineCommand, CachedUsage> commandUsage = new ConcurrentHashMap<>();
+	private volatile PrintStream usageStream = null;
+	private volatile WritableByteChannel usageChannel = null;
+
+	private volatile boolean exitOnHelp = true;
+	private volatile boolean argumentFilesEnabled = false;
+	private volatile boolean inputFileListsEnabled = false;
+	private volatile boolean abbreviationsEnabled = true;
+	private volatile CommandLineMetricsListener metricsListener = null;
+	private volatile Executor validationExecutor = null;
+	private volatile String environmentPrefix = null;
+	private volatile Path configFile = null;
+	private volatile Path configCacheDirectory = null;
+	private volatile ConfigFile config = null;
+
 	/**
 	 * Creates a new CommandLineParser object.
 	 * @param appname     name of the application.
@@ -39,87 +70,147 @@ public final class CommandLineParser
 		this.description = description;
 		this.helpFooter = helpFooter;
 
-		inputFiles = new LinkedList<>();
-
 		helpOption = new CommandLineOption('h', "help", CommandLineOption.NO_ARGUMENT,
 				"Prints usage information", (o, a) -> { printUsage(); System.exit(1); });
 		addGlobalOption(helpOption);
 	}
 
 	/**
-	 * Prints usage information for the available commands.
+	 * Appends usage information for the available commands.
+	 * @param usage the buffer to append the usage information to.
 	 */
-	private void printCommandSummary()
+	private void appendCommandSummary(StringBuilder usage)
 	{
-		System.out.println("Commands:");
+		usage.append("Commands:").append(System.lineSeparator());
 		for(CommandLineCommand command : commands)
 		{
-			int numSpaces = longestCommand - command.getCommand().length() + USAGE_COLUMN_INDENT;
-
-			System.out.print("  " + command.getCommand());
-			for(int i = 0; i < numSpaces; ++i)
-				System.out.print(" ");
-			System.out.println(command.getDescription());
+			usage.append("  ").append(command.getCommand());
+			appendPadding(usage, longestCommand - command.getCommand().length() + USAGE_COLUMN_INDENT);
+			usage.append(command.getDescription()).append(System.lineSeparator());
 		}
 	}
 
 	/**
-	 * Prints usage information for global options.
+	 * Appends usage information for global options.
+	 * @param usage the buffer to append the usage information to.
 	 */
-	private void printGlobalOptions()
+	private void appendGlobalOptions(StringBuilder usage)
 	{
-		System.out.println("Global options:");
+		usage.append("Global options:").append(System.lineSeparator());
 		for(CommandLineOption option : globalOptions)
+			option.appendUsage(usage, longestOption);
+	}
+
+	/**
+	 * Appends a number of spaces used for aligning columns in usage information.
+	 * @param usage     the buffer to append the spaces to.
+	 * @param numSpaces the number of spaces to append.
+	 */
+	static void appendPadding(StringBuilder usage, int numSpaces)
+	{
+		while(numSpaces > 0)
 		{
-			int numSpaces;
+			int count = Math.min(numSpaces, USAGE_PADDING.length());
+			usage.append(USAGE_PADDING, 0, count);
+			numSpaces -= count;
+		}
+	}
 
-			if(option.getLongOption() == null)
-				numSpaces = longestOption + USAGE_COLUMN_INDENT;
-			else
-				numSpaces = longestOption - option.getLongOption().length() + USAGE_COLUMN_INDENT;
+	/**
+	 * Renders command line usage information for a command.
+	 * @param command the command to render usage information for, or {@code null} to render the complete usage summary.
+	 * @return the usage information, encoded for output.
+	 */
+	private byte[] renderUsage(CommandLineCommand command)
+	{
+		final String newline = System.lineSeparator();
+		StringBuilder usage = new StringBuilder(1024);
 
-			System.out.print("  ");
-			if(option.getShortOption() != null)
-				System.out.print("-" + option.getShortOption() + ", ");
-			else
-				System.out.print("    ");
+		if(command instanceof CommandLineCommandGroup)
+			usage.append(String.format("Usage: %s %s <COMMAND> [OPTIONS...] [INPUT FILE]", appname, command.getPath()));
+		else if(command != null && command.getParent() != null)
+			usage.append(String.format("Usage: %s %s [OPTIONS...] [INPUT FILE]", appname, command.getPath()));
+		else
+			usage.append(String.format("Usage: %s <COMMAND> [OPTIONS...] [INPUT FILE]", appname));
+		usage.append(newline);
+		usage.append(description).append(newline);
+		usage.append(newline);
 
-			if(option.getLongOption() != null)
-				System.out.print("--" + option.getLongOption());
+		if(command == null)
+		{
+			appendCommandSummary(usage);
+			usage.append(newline);
+		}
 
-			for(int i = 0; i < numSpaces; ++i)
-				System.out.print(" ");
+		if(command == null)
+			appendGlobalOptions(usage);
+		else
+			usage.append(command.getOptionUsage());
+		usage.append(newline);
 
-			System.out.println(option.getDescription());
+		usage.append("For options related to a specific command, use --help or -h as an option for the desired command.");
+		usage.append(newline);
+
+		usage.append(newline);
+		usage.append(helpFooter).append(newline);
+
+		return usage.toString().getBytes(Charset.defaultCharset());
+	}
+
+	/**
+	 * Gets the rendered usage information for a command, rendering it if it is not cached.
+	 * @param command the command to get usage information for, or {@code null} to get the complete usage summary.
+	 * @return the usage information, encoded for output.
+	 */
+	private byte[] getUsage(CommandLineCommand command)
+	{
+		if(command == null)
+		{
+			byte[] retval = globalUsage;
+			if(retval == null)
+			{
+				retval = renderUsage(null);
+				globalUsage = retval;
+			}
+
+			return retval;
+		} else {
+			int revision = command.getRevision();
+			CachedUsage cached = commandUsage.get(command);
+			if(cached == null || cached.revision != revision)
+			{
+				cached = new CachedUsage(revision, renderUsage(command));
+				commandUsage.put(command, cached);
+			}
+
+			return cached.usage;
 		}
 	}
 
 	/**
 	 * Prints command line usage information for a command.
+	 * The usage information is written to the usage output using a single write operation.
 	 * @param command the command to print usage information for, or {@code null} to print the complete usage summary.
 	 */
 	private void printUsage(CommandLineCommand command)
 	{
-		System.out.println(String.format("Usage: %s <COMMAND> [OPTIONS...] [INPUT FILE]", appname));
-		System.out.println(description);
-		System.out.println();
+		byte[] usage = getUsage(command);
+		WritableByteChannel channel = usageChannel;
 
-		if(command == null)
+		if(channel != null)
 		{
-			printCommandSummary();
-			System.out.println();
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(usage);
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+			} catch(IOException error) {
+				// Usage information is best effort, like output to a PrintStream
+			}
+		} else {
+			PrintStream stream = usageStream != null ? usageStream : System.out;
+			stream.write(usage, 0, usage.length);
+			stream.flush();
 		}
-
-		if(command == null)
-			printGlobalOptions();
-		else
-			command.printOptions();
-		System.out.println();
-
-		System.out.println("For options related to a specific command, use --help or -h as an option for the desired command.");
-
-		System.out.println();
-		System.out.println(helpFooter);
 	}
 
 	/**
@@ -130,6 +221,50 @@ public final class CommandLineParser
 		printUsage(null);
 	}
 
+	/**
+	 * Sets the stream that usage information is printed to.
+	 * @param stream the stream to print usage information to, or {@code null} to print to {@code System.out}.
+	 */
+	public void setUsageOutput(PrintStream stream)
+	{
+		usageChannel = null;
+		usageStream = stream;
+	}
+
+	/**
+	 * Sets the channel that usage information is written to.
+	 * @param channel the channel to write usage information to, or {@code null} to print to {@code System.out}.
+	 */
+	public void setUsageOutput(WritableByteChannel channel)
+	{
+		usageStream = null;
+		usageChannel = channel;
+	}
+
+	/**
+	 * Discards all cached usage information.
+	 */
+	private void invalidateUsage()
+	{
+		globalUsage = null;
+		commandUsage.clear();
+	}
+
+	/**
+	 * Usage information rendered for a specific revision of a command.
+	 */
+	private static final class CachedUsage
+	{
+		final int revision;
+		final byte[] usage;
+
+		CachedUsage(int revision, byte[] usage)
+		{
+			this.revision = revision;
+			this.usage = usage;
+		}
+	}
+
 	/**
 	 * Adds a command.
 	 * @param command the command to add to the command line parser.
@@ -137,10 +272,40 @@ public final class CommandLineParser
 	public void addCommand(CommandLineCommand command)
 	{
 		commands.add(command);
+		compiled = null;
+		invalidateUsage();
 		if(command.getCommand().length() > longestCommand)
 			longestCommand = command.getCommand().length();
 	}
 
+	/**
+	 * Adds a command that is created when it is first used.
+	 * Only the name and description of the command are kept until the command is found on the command line,
+	 * so the class of the command and its options are not loaded unless the command is run or usage information
+	 * for it is requested. This reduces the startup time of applications with many commands.
+	 * @param command     Command string used on the command line.
+	 * @param description Description of the command used in help texts.
+	 * @param supplier    Supplier creating the command, which must have the specified name. The supplier is
+	 *                    called at most once.
+	 */
+	public void addCommand(String command, String description, Supplier<? extends CommandLineCommand> supplier)
+	{
+		addCommand(new LazyCommandLineCommand(command, description, supplier));
+	}
+
+	/**
+	 * Adds the commands provided by the {@link CommandLineCommandProvider} services available from a class loader.
+	 * The commands are added as if by {@link #addCommand(String, String, Supplier)}, so only the providers are
+	 * loaded by this method; each command is created when it is first used.
+	 * @param loader the class loader used to locate providers, or {@code null} to use the system class loader.
+	 * @throws java.util.ServiceConfigurationError if a provider cannot be loaded.
+	 */
+	public void loadCommands(ClassLoader loader)
+	{
+		for(final CommandLineCommandProvider provider : ServiceLoader.load(CommandLineCommandProvider.class, loader))
+			addCommand(provider.getCommand(), provider.getDescription(), provider::createCommand);
+	}
+
 	/**
 	 * Adds a global option.
 	 * Global options are options that apply to all available commands.
@@ -149,114 +314,666 @@ public final class CommandLineParser
 	public void addGlobalOption(CommandLineOption option)
 	{
 		globalOptions.add(option);
+		compiled = null;
+		invalidateUsage();
 		if(option.getLongOption() != null && option.getLongOption().length() > longestOption)
 			longestOption = option.getLongOption().length();
 	}
 
+	/**
+	 * Adds a global option constraint.
+	 * Global constraints apply to all commands and are checked when the whole command line has been parsed.
+	 * @param constraint the constraint to add.
+	 * @see OptionConstraint
+	 */
+	public void addGlobalConstraint(OptionConstraint constraint)
+	{
+		if(constraint == null)
+			throw new NullPointerException("constraint is null in command line parser object");
+		globalConstraints.add(constraint);
+		compiled = null;
+	}
+
+	/**
+	 * Compiles the registered commands and options into lookup tables.
+	 * The tables allow the parser to look up each option and command on the command line in constant time.
+	 * Calling this method is optional, as the parser compiles its definitions when needed, but it allows
+	 * the work to be done in advance. Adding commands or options after compiling causes the affected tables
+	 * to be recompiled on the next parse.
+	 */
+	public void compile()
+	{
+		getCompiled();
+	}
+
+	/**
+	 * Performs a training run over representative command lines.
+	 * The parser is compiled, the usage information is rendered, and each command line is parsed without
+	 * handling its options or processing its command, which loads and initializes the classes used when the
+	 * application starts. This is useful when creating startup snapshots, such as AppCDS archives, of an
+	 * application. Errors in the command lines are ignored.
+	 * @param commandLines the command lines to train on.
+	 * @see #parse(String[])
+	 */
+	public void train(String[]... commandLines)
+	{
+		compile();
+		getUsage(null);
+
+		for(String[] args : commandLines)
+		{
+			try {
+				ParseResult result = parseArguments(args);
+				getUsage(result.getCommand());
+			} catch(CommandLineException error) {
+				// Invalid command lines still exercise the parser
+			}
+		}
+	}
+
+	/**
+	 * Gets the compiled form of the registered commands and options, compiling them if needed.
+	 * @return the compiled command line definitions.
+	 */
+	CompiledCommandLine getCompiled()
+	{
+		CompiledCommandLine retval = compiled;
+		if(retval == null)
+		{
+			retval = new CompiledCommandLine(commands, globalOptions, globalConstraints);
+			compiled = retval;
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Sets whether argument files are expanded.
+	 * When enabled, a command line element of the form {@code @file} is replaced by the elements read from the
+	 * specified file. Elements in the file are separated by whitespace and may be quoted using single or double
+	 * quotes, and lines starting with {@code #} are ignored. Argument files may refer to other argument files.
+	 * An element starting with {@code @@} is used as-is with the first {@code @} removed.
+	 * <p>
+	 * Argument files are read incrementally as the parser reaches them, so when used with a
+	 * {@link StreamingCommandLineCommand}, argument files of any size can be parsed using a constant amount of
+	 * memory.
+	 * @param enabled {@code true} to expand argument files, {@code false} to treat them as ordinary elements.
+	 * @see ArgumentFileException
+	 */
+	public void setArgumentFilesEnabled(boolean enabled)
+	{
+		argumentFilesEnabled = enabled;
+	}
+
+	/**
+	 * Sets whether input file lists are read.
+	 * When enabled, the command line elements {@code --files0-from=FILE} and {@code --files-from=FILE} cause the
+	 * input files for the command to be read from the specified file, or from standard input if {@code FILE} is
+	 * {@code -}. With {@code --files0-from}, the input files are separated by NUL characters, as produced by
+	 * {@code find -print0}; with {@code --files-from}, they are separated by newlines. Input file lists must
+	 * follow the command on the command line.
+	 * <p>
+	 * Input file lists are read incrementally, so when used with a {@link StreamingCommandLineCommand}, the
+	 * command receives each input file as soon as it has been read, and lists of any length can be processed
+	 * using a constant amount of memory.
+	 * @param enabled {@code true} to read input file lists, {@code false} to treat the elements as ordinary options.
+	 */
+	public void setInputFileListsEnabled(boolean enabled)
+	{
+		inputFileListsEnabled = enabled;
+	}
+
+	/**
+	 * Runs a command for each line of a job manifest.
+	 * This runs the jobs using a {@link CommandLineBatch} with the default settings, using one thread per
+	 * available processor. Option handlers and commands are called concurrently and must be thread-safe. Jobs
+	 * requesting usage information do not exit the application.
+	 * @param manifest the path of the manifest, containing one command line per line.
+	 * @param failFast {@code true} to stop at the first failing job, {@code false} to run all jobs.
+	 * @return the status of the jobs in the batch.
+	 * @throws ArgumentFileException if the manifest cannot be read or contains an unterminated quote.
+	 */
+	public BatchResult runBatch(Path manifest, boolean failFast) throws ArgumentFileException
+	{
+		CommandLineBatch batch = new CommandLineBatch(this);
+		batch.setFailFast(failFast);
+		return batch.run(manifest);
+	}
+
+	/**
+	 * Sets the prefix of environment variables providing default values for options.
+	 * When set, options that are not specified on the command line are taken from environment variables named by
+	 * the prefix followed by the long option name in upper case, with dashes replaced by underscores, so that the
+	 * option {@code --output-dir} is taken from {@code APP_OUTPUT_DIR} if the prefix is {@code APP_}. The
+	 * environment of the current {@link CommandLineSession} is used. Values are passed to the option validators
+	 * and handlers as if they had been specified on the command line; options that do not take an argument are
+	 * specified by setting the variable to {@code true}, {@code yes}, {@code on} or {@code 1}.
+	 * @param prefix the prefix of the environment variables, or {@code null} to not read defaults from the
+	 *               environment, which is the default.
+	 * @see #setConfigFile(Path)
+	 */
+	public void setEnvironmentPrefix(String prefix)
+	{
+		environmentPrefix = prefix;
+	}
+
+	/**
+	 * Sets the configuration file providing default values for options.
+	 * Options that are specified neither on the command line nor in the environment are taken from the
+	 * configuration file, which contains lines of the form {@code option = value}, where {@code option} is a long
+	 * option name. Values in a section named by a command path, such as {@code [cluster node drain]}, apply to
+	 * that command and the commands below it and take precedence over values outside sections. Lines starting
+	 * with {@code #} or {@code ;} are comments. A relative path is resolved against the working directory of the
+	 * current {@link CommandLineSession}, and a missing file is ignored.
+	 * <p>
+	 * The file is parsed again only when its size or modification time changes.
+	 * @param file the configuration file, or {@code null} to not read defaults from a file, which is the default.
+	 * @see #setConfigCacheDirectory(Path)
+	 */
+	public void setConfigFile(Path file)
+	{
+		configFile = file;
+	}
+
+	/**
+	 * Sets the directory used to cache parsed configuration files between invocations.
+	 * The cache is keyed by the path, size and modification time of the configuration file, so applications
+	 * sharing a large configuration file parse it once instead of on every invocation. The directory must exist.
+	 * @param directory the cache directory, or {@code null} to disable the cache, which is the default.
+	 * @see #setConfigFile(Path)
+	 */
+	public void setConfigCacheDirectory(Path directory)
+	{
+		configCacheDirectory = directory;
+	}
+
+	/**
+	 * Runs the commands in the segments of a command line, separated by {@code --}.
+	 * This runs the segments using a {@link CommandLinePipeline} without dependencies between commands, so all
+	 * segments run concurrently, except that segments running the same command run in sequence. Option handlers
+	 * and commands must be thread-safe.
+	 * @param args the command line, such as {@code fetch a -- index b -- report c}.
+	 * @return the status of each segment.
+	 * @throws CommandLineException if a segment is invalid or requests usage information, in which case no
+	 *                              segment is run.
+	 */
+	public BatchResult runPipeline(String[] args) throws CommandLineException
+	{
+		return new CommandLinePipeline(this).run(args);
+	}
+
+	/**
+	 * Sets whether long options may be abbreviated.
+	 * When enabled, which is the default, a long option that does not match any option exactly is accepted if it
+	 * is the beginning of the name of exactly one option, so that {@code --verb} can be used for {@code --verbose}.
+	 * If it is the beginning of the names of several options, an {@link AmbiguousOptionException} listing the
+	 * matching options is thrown.
+	 * @param enabled {@code true} to accept abbreviated long options, {@code false} to require exact names.
+	 */
+	public void setAbbreviationsEnabled(boolean enabled)
+	{
+		abbreviationsEnabled = enabled;
+	}
+
+	/**
+	 * Gets the help option.
+	 * @return the built-in option used to request usage information.
+	 */
+	CommandLineOption getHelpOption()
+	{
+		return helpOption;
+	}
+
+	/**
+	 * Prints usage information in response to the help option.
+	 * Afterwards, the application is exited, or a {@link HelpRequestedException} is thrown if the parser has been
+	 * configured not to exit.
+	 * @param command the command to print usage information for, or {@code null} to print the complete usage summary.
+	 * @throws HelpRequestedException thrown after printing the usage information if the parser does not exit.
+	 */
+	void printHelp(CommandLineCommand command) throws HelpRequestedException
+	{
+		printHelp(command, exitOnHelp);
+	}
+
+	/**
+	 * Prints usage information in response to the help option.
+	 * @param command    the command to print usage information for, or {@code null} to print the complete usage
+	 *                   summary.
+	 * @param exitOnHelp whether to exit the application afterwards instead of throwing an exception.
+	 * @throws HelpRequestedException thrown after printing the usage information if the application is not exited.
+	 */
+	void printHelp(CommandLineCommand command, boolean exitOnHelp) throws HelpRequestedException
+	{
+		printUsage(command);
+		if(exitOnHelp)
+			System.exit(1);
+		else
+			throw new HelpRequestedException(command);
+	}
+
+	/**
+	 * Sets whether the application exits after printing usage information in response to the help option.
+	 * By default, the parser exits the application with exit code 1. When embedding the parser in a long-running
+	 * process, this can be disabled, in which case a {@link HelpRequestedException} is thrown from the parse
+	 * methods instead. The drivers included in the library, such as {@link CommandLineDaemon}, never exit the
+	 * application, whatever this setting.
+	 * @param exitOnHelp {@code true} to exit the application, {@code false} to throw an exception.
+	 */
+	public void setExitOnHelp(boolean exitOnHelp)
+	{
+		this.exitOnHelp = exitOnHelp;
+	}
+
+	/**
+	 * Sets the listener receiving measurements of the parses done by the parser.
+	 * Without a listener, and unless the events of the parser are enabled in a Flight Recorder recording,
+	 * parsing is not instrumented and no time is spent taking measurements.
+	 * @param listener the metrics listener, or {@code null} to remove the listener.
+	 * @see CommandLineStatistics
+	 */
+	public void setMetricsListener(CommandLineMetricsListener listener)
+	{
+		this.metricsListener = listener;
+	}
+
+	/**
+	 * Sets the executor used to validate option arguments.
+	 * By default, the argument of each option is validated when the option is found on the command line, and
+	 * parsing stops at the first invalid argument. When an executor is set, all options are collected first,
+	 * and their argument validators are run concurrently using the executor before any option handler is
+	 * called. Each validator is called only once for each distinct argument during a parse, and all invalid
+	 * arguments are reported together using an {@link ArgumentValidationException}.
+	 * <p>
+	 * Options following a {@link StreamingCommandLineCommand} are validated as they are found, since they are
+	 * only read while the command is being processed. Validators that block, for instance on file or network
+	 * access, should use an executor with enough threads for the validators of a command line rather than the
+	 * common fork-join pool.
+	 * @param executor the executor used for validation, or {@code null} to validate each argument as it is found.
+	 */
+	public void setValidationExecutor(Executor executor)
+	{
+		this.validationExecutor = executor;
+	}
+
+	/**
+	 * Gets the name of the application.
+	 * @return the name of the application.
+	 */
+	String getApplicationName()
+	{
+		return appname;
+	}
+
+	/**
+	 * Gets the description of the application.
+	 * @return the description of the application.
+	 */
+	String getDescription()
+	{
+		return description;
+	}
+
+	/**
+	 * Gets the footer for the usage information printouts.
+	 * @return the footer for usage information.
+	 */
+	String getHelpFooter()
+	{
+		return helpFooter;
+	}
+
+	/**
+	 * Gets the registered commands.
+	 * @return the commands, sorted by name.
+	 */
+	Collection<CommandLineCommand> getCommands()
+	{
+		return commands;
+	}
+
+	/**
+	 * Gets the registered global options, including the help option.
+	 * @return the global options, in the order they are compiled into the option tables.
+	 */
+	Collection<CommandLineOption> getGlobalOptions()
+	{
+		return globalOptions;
+	}
+
+	/**
+	 * Gets the registered global option constraints.
+	 * @return the global constraints, in the order they were added.
+	 */
+	List<OptionConstraint> getGlobalConstraints()
+	{
+		return globalConstraints;
+	}
+
+	/**
+	 * Checks whether argument files are expanded.
+	 * @return {@code true} if argument files are expanded.
+	 * @see #setArgumentFilesEnabled(boolean)
+	 */
+	boolean isArgumentFilesEnabled()
+	{
+		return argumentFilesEnabled;
+	}
+
+	/**
+	 * Checks whether input file lists are read.
+	 * @return {@code true} if input file lists are read.
+	 * @see #setInputFileListsEnabled(boolean)
+	 */
+	boolean isInputFileListsEnabled()
+	{
+		return inputFileListsEnabled;
+	}
+
+	/**
+	 * Checks whether long options may be abbreviated.
+	 * @return {@code true} if abbreviated long options are accepted.
+	 * @see #setAbbreviationsEnabled(boolean)
+	 */
+	boolean isAbbreviationsEnabled()
+	{
+		return abbreviationsEnabled;
+	}
+
+	/**
+	 * Compiles the registered commands using a precomputed table of global options.
+	 * @param globalOptionsTable the table of global options, which must contain the registered global options.
+	 */
+	void compile(OptionTable globalOptionsTable)
+	{
+		compiled = new CompiledCommandLine(commands, globalOptions, globalConstraints, globalOptionsTable);
+	}
+
+	/**
+	 * Creates the defaults for the options of a command line using the current parser settings.
+	 * @return the defaults, or {@code null} if neither an environment prefix nor a configuration file is set.
+	 * @throws ArgumentFileException if the configuration file cannot be read or is malformed.
+	 */
+	private OptionDefaults createDefaults() throws ArgumentFileException
+	{
+		final String prefix = environmentPrefix;
+		final Path file = configFile;
+		if(prefix == null && file == null)
+			return null;
+
+		final CommandLineSession session = CommandLineSession.current();
+		ConfigFile retval = null;
+		if(file != null)
+		{
+			retval = ConfigFile.load(session.getWorkingDirectory().resolve(file), configCacheDirectory, config);
+			if(retval != null)
+				config = retval;
+		}
+
+		return new OptionDefaults(prefix, session.getEnvironment(), retval, helpOption);
+	}
+
+	/**
+	 * Creates a scanner for parsing a command line using the current parser settings.
+	 * @param tokens the source of the command line tokens.
+	 * @return a new scanner.
+	 */
+	private ArgumentScanner createScanner(TokenSource tokens)
+	{
+		return new ArgumentScanner(getCompiled(), tokens, argumentFilesEnabled, inputFileListsEnabled,
+				abbreviationsEnabled);
+	}
+
 	/**
 	 * Parses the provided command line options.
+	 * Option handlers are called as the options are encountered on the command line, and the command is
+	 * processed when the whole command line has been parsed. Streaming commands are processed as soon as they
+	 * are recognized, and the rest of the command line is parsed as they consume their input files.
+	 * <p>
+	 * If the {@code cmdline.train} system property names a file of representative command lines, one per line,
+	 * the first call to this method trains the parser on them using {@link #train(String[]...)} and exits the
+	 * application, so that a startup snapshot can be created by running the application with
+	 * {@code -XX:ArchiveClassesAtExit}. If the {@code cmdline.checkpoint} system property is {@code true}, a CRaC
+	 * checkpoint is taken after training instead, and the command line in the {@code cmdline.args} system
+	 * property is parsed when the checkpoint is restored.
+	 * @see StreamingCommandLineCommand
 	 * @param args command line arguments.
 	 * @throws CommandLineException thrown if an error occurs while parsing the command line.
 	 */
 	public void parse(String[] args) throws CommandLineException
 	{
-		CommandLineCommand currentCommand = null;
+		parse(StartupSnapshot.prepare(this, args), exitOnHelp);
+	}
 
+	/**
+	 * Parses the provided command line options, overriding whether the application exits when usage information
+	 * is requested. Drivers sharing the parser with the rest of the application use this to run command lines
+	 * without changing the configuration of the parser.
+	 * @param args       command line arguments.
+	 * @param exitOnHelp whether to exit the application after printing usage information.
+	 * @throws CommandLineException thrown if an error occurs while parsing the command line.
+	 * @see #setExitOnHelp(boolean)
+	 */
+	void parse(String[] args, boolean exitOnHelp) throws CommandLineException
+	{
 		if(args.length == 0)
+		{
 			printUsage();
-		else {
-			for(int i = 0; i < args.length; ++i)
+			throw new NoCommandSpecifiedException();
+		}
+
+		final ParseInstrumentation instrumentation = ParseInstrumentation.start(metricsListener);
+		try(ArgumentScanner scanner = createScanner(TokenSource.of(args)))
+		{
+			if(instrumentation == null)
+				parse(scanner, null, exitOnHelp);
+			else {
+				scanner.setInstrumentation(instrumentation);
+				boolean successful = false;
+				try {
+					parse(scanner, instrumentation, exitOnHelp);
+					successful = true;
+				} finally {
+					instrumentation.finish(appname, scanner.getCommand(), successful);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses a command line and handles its options and command.
+	 * @param scanner         the scanner to read the command line from.
+	 * @param instrumentation the instrumentation of the parse, or {@code null} if the parse is not instrumented.
+	 * @param exitOnHelp      whether to exit the application after printing usage information.
+	 * @throws CommandLineException thrown if an error occurs while parsing the command line.
+	 */
+	private void parse(final ArgumentScanner scanner, final ParseInstrumentation instrumentation,
+			final boolean exitOnHelp) throws CommandLineException
+	{
+		final LinkedList<String> inputFiles = new LinkedList<>();
+		final Executor executor = validationExecutor;
+		final ArrayList<ParseResult.OptionValue> pending = executor != null ? new ArrayList<>() : null;
+		final OptionDefaults defaults = createDefaults();
+		final ArgumentScanner.Listener listener = new ArgumentScanner.Listener()
 			{
-				CommandLineOption currentOption = null;
+				@Override public void commandFound(CommandLineCommand command)
+				{
+				}
 
-				if(args[i].startsWith("--"))
+				@Override public void optionFound(CommandLineOption option, String argument)
+						throws CommandLineException
 				{
-					final String optionName = args[i].substring(2);
+					if(defaults != null)
+						defaults.found(option);
+
+					if(option == helpOption)
+						printHelp(scanner.getCommand(), exitOnHelp);
+					else if(pending != null && !(scanner.getCommand() instanceof StreamingCommandLineCommand))
+						pending.add(new ParseResult.OptionValue(option, argument));
+					else if(instrumentation == null)
+						option.handle(argument);
+					else
+						instrumentation.handle(option, argument);
+				}
 
-					currentOption = globalOptions.stream().filter(option -> option.getLongOption().equals(optionName))
-						.findFirst().orElse(null);
-					if(currentOption == helpOption && currentCommand != null)
-					{
-						printUsage(currentCommand);
-						System.exit(1);
-					} else {
-						if(currentOption == null && currentCommand != null)
-							currentOption = currentCommand.getOptions().stream().filter(option -> option.getLongOption().equals(optionName))
-									.findFirst().orElse(null);
-
-						if(currentOption == null)
-							throw new UnrecognizedOptionException(optionName);
-
-						String argument = null;
-						if(currentOption.argumentRequired())
-						{
-							if(i + 1 < args.length && !args[i + 1].startsWith("-"))
-								argument = args[++i];
-							else
-								throw new ArgumentMissingException(args[i]);
-						} else if(currentOption.argumentOptional())
-						{
-							if(i + 1 < args.length && !args[i + 1].startsWith("-"))
-								argument = args[++i];
-						}
-
-						currentOption.handle(argument);
-					}
-				} else if(args[i].startsWith("-"))
+				@Override public void inputFileFound(String inputFile)
 				{
-					final Character optionChar = args[i].charAt(1);
-					currentOption = globalOptions.stream().filter(option -> option.getShortOption().equals(optionChar))
-							.findFirst().orElse(null);
+					inputFiles.add(inputFile);
+				}
 
-					if(currentOption == helpOption && currentCommand != null)
-					{
-						printUsage(currentCommand);
-						System.exit(1);
-					} else {
-						if(currentOption == null && currentCommand != null)
-							currentOption = currentCommand.getOptions().stream().filter(option -> option.getShortOption().equals(optionChar))
-									.findFirst().orElse(null);
-
-						if(currentOption == null)
-							throw new UnrecognizedOptionException(args[i]);
-
-						String argument = null;
-						if(currentOption.argumentRequired())
-						{
-							if(args[i].length() > 2)
-								argument = args[i].substring(2);
-							else if(i + 1 < args.length && !args[i + 1].startsWith("-"))
-								argument = args[++i];
-							else
-								throw new ArgumentMissingException(args[i]);
-						} else if(currentOption.argumentOptional())
-						{
-							if(args[i].length() > 2)
-								argument = args[i].substring(2);
-							else if(i + 1 < args.length && !args[i + 1].startsWith("-"))
-								argument = args[++i];
-						}
-
-						currentOption.handle(argument);
-					}
+				@Override public void endOfCommandLine() throws CommandLineException
+				{
+					if(defaults != null)
+						defaults.apply(scanner, this);
+					scanner.checkConstraints();
+				}
+			};
+
+		while(scanner.hasNext() && !(scanner.getCommand() instanceof StreamingCommandLineCommand))
+			scanner.next(listener);
+
+		final CommandLineCommand command = scanner.getCommand();
+		final boolean complete = command != null && !(command instanceof CommandLineCommandGroup)
+				&& !(command instanceof StreamingCommandLineCommand);
+
+		// Defaults are applied, arguments validated and constraints checked in the same order as in parseArguments.
+		// For streaming commands, the defaults and constraints are applied when the iterator reaches the end of the
+		// command line, so that options following the input files take precedence over their defaults:
+		if(complete && defaults != null)
+			defaults.apply(scanner, listener);
+		if(pending != null && !pending.isEmpty())
+			new ArgumentValidation(executor).validate(pending, instrumentation);
+		if(complete)
+			scanner.checkConstraints();
+
+		if(pending != null)
+		{
+			for(ParseResult.OptionValue value : pending)
+			{
+				if(instrumentation == null)
+					value.getOption().handleValidated(value.getArgument());
+				else
+					instrumentation.handleValidated(value.getOption(), value.getArgument());
+			}
+		}
 
-				} else {
-					if(currentCommand != null)
-						inputFiles.add(args[i]);
-					else {
-						final String lookupCommand = args[i];
-						currentCommand = commands.stream().filter(command -> command.getCommand().equals(lookupCommand))
-								.findFirst().orElse(null);
-						if(currentCommand == null)
-							throw new InvalidCommandException(args[i]);
-					}
+		if(command == null)
+			throw new NoCommandSpecifiedException();
+		else if(command instanceof CommandLineCommandGroup)
+		{
+			printUsage(command);
+			throw new NoCommandSpecifiedException();
+		}
+
+		if(instrumentation != null)
+			instrumentation.beginCommand();
+		try {
+			if(command instanceof StreamingCommandLineCommand)
+			{
+				try {
+					((StreamingCommandLineCommand) command).processCommand(new InputFileIterator(scanner, listener));
+				} catch(UncheckedCommandLineException error) {
+					throw error.getCause();
 				}
+			} else
+				command.processCommand(inputFiles);
+		} finally {
+			if(instrumentation != null)
+				instrumentation.endCommand(command);
+		}
+	}
+
+	/**
+	 * Parses the provided command line options without handling them.
+	 * The options are checked by their argument validators, but neither option handlers nor the command are
+	 * called, and the help option does not print anything. Option constraints are not checked if help was
+	 * requested, and the command of the result is {@code null} if help was requested without specifying a command,
+	 * so that {@link ParseResult#isHelpRequested()} can be used to print usage information for a command line
+	 * that is otherwise incomplete. The parser itself is not modified, so a parser can be used to parse several
+	 * command lines concurrently once all commands and options have been added.
+	 * @param args command line arguments.
+	 * @return the result of parsing the command line.
+	 * @throws CommandLineException thrown if an error occurs while parsing the command line.
+	 * @see ParseResult#dispatch()
+	 */
+	public ParseResult parseArguments(String[] args) throws CommandLineException
+	{
+		final ParseInstrumentation instrumentation = ParseInstrumentation.start(metricsListener);
+		try(ArgumentScanner scanner = createScanner(TokenSource.of(args)))
+		{
+			if(instrumentation == null)
+				return parseArguments(scanner, null);
+
+			scanner.setInstrumentation(instrumentation);
+			boolean successful = false;
+			try {
+				ParseResult retval = parseArguments(scanner, instrumentation);
+				successful = true;
+				return retval;
+			} finally {
+				instrumentation.finish(appname, scanner.getCommand(), successful);
 			}
 		}
+	}
+
+	/**
+	 * Parses a command line into a parse result.
+	 * @param scanner         the scanner to read the command line from.
+	 * @param instrumentation the instrumentation of the parse, or {@code null} if the parse is not instrumented.
+	 * @return the result of parsing the command line.
+	 * @throws CommandLineException thrown if an error occurs while parsing the command line.
+	 */
+	private ParseResult parseArguments(final ArgumentScanner scanner, final ParseInstrumentation instrumentation)
+			throws CommandLineException
+	{
+		final ArrayList<ParseResult.OptionValue> options = new ArrayList<>();
+		final Executor executor = validationExecutor;
+		final ArrayList<String> inputFiles = new ArrayList<>();
+		final OptionDefaults defaults = createDefaults();
+		final ArgumentScanner.Listener listener = new ArgumentScanner.Listener()
+			{
+				@Override public void commandFound(CommandLineCommand command)
+				{
+				}
 
-		if(currentCommand == null)
+				@Override public void optionFound(CommandLineOption option, String argument)
+						throws CommandLineException
+				{
+					if(defaults != null)
+						defaults.found(option);
+
+					if(executor == null)
+					{
+						if(instrumentation == null)
+							option.validate(argument);
+						else
+							instrumentation.validate(option, argument);
+					}
+					options.add(new ParseResult.OptionValue(option, argument));
+				}
+
+				@Override public void inputFileFound(String inputFile)
+				{
+					inputFiles.add(inputFile);
+				}
+			};
+
+		while(scanner.hasNext())
+			scanner.next(listener);
+
+		final boolean commandFound = scanner.getCommand() != null
+				&& !(scanner.getCommand() instanceof CommandLineCommandGroup);
+		if(defaults != null && commandFound)
+			defaults.apply(scanner, listener);
+		if(executor != null && !options.isEmpty())
+			new ArgumentValidation(executor).validate(options, instrumentation);
+		final ParseResult retval = new ParseResult(this, scanner.getCommand(), options, inputFiles);
+		if(retval.isHelpRequested())
+			return retval;
+		if(!commandFound)
 			throw new NoCommandSpecifiedException();
-		else if(currentCommand != null)
-			currentCommand.processCommand(inputFiles);
+
+		scanner.checkConstraints();
+		return retval;
 	}
 }
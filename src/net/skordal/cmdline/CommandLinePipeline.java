@@ -0,0 +1,241 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Driver running several commands from a single command line.
+ * The command line is split into segments at each {@code --} argument, such as
+ * {@code fetch a -- index b -- report c}, and each segment is parsed as a separate command line. All segments
+ * are parsed before any of them is run, so an invalid segment prevents the whole pipeline from running. The
+ * segments are then run concurrently, except where dependencies between commands have been declared: a segment
+ * running a command that depends on another command waits for the earlier segments running that command, and is
+ * skipped if any of them fails.
+ * <p>
+ * Segments running the same command share the command and its options, so by default they run in sequence, in
+ * the order of the segments, unless the commands are declared reentrant using {@link #setReentrantCommands}.
+ * Segments running different commands are called concurrently, so their option handlers and commands must be
+ * thread-safe, as with {@link CommandLineBatch}. Each segment runs in its own {@link CommandLineSession}, sharing the working directory,
+ * environment and streams of the session running the pipeline, and the exit code of the session becomes the exit
+ * code of the segment. If the command throws an exception, the exit code is {@link CommandLineDaemon#EXIT_FAILURE}.
+ */
+public final class CommandLinePipeline
+{
+	/** Argument separating the segments of a pipeline. */
+	public static final String SEPARATOR = "--";
+
+	private final CommandLineParser parser;
+	private final HashMap<String, Set<String>> dependencies = new HashMap<>();
+	private volatile ExecutorService executor = null;
+	private volatile boolean reentrantCommands = false;
+
+	/**
+	 * Holder of the default executor, which is created when the first pipeline using it is run.
+	 */
+	private static final class DefaultExecutor
+	{
+		static final ExecutorService INSTANCE = createExecutor();
+	}
+
+	/**
+	 * Creates a new pipeline driver.
+	 * @param parser the parser used to parse the segments of the command line.
+	 */
+	public CommandLinePipeline(CommandLineParser parser)
+	{
+		if(parser == null)
+			throw new NullPointerException("parser is null in command line pipeline object");
+		this.parser = parser;
+	}
+
+	/**
+	 * Sets the executor used to run the segments.
+	 * By default, segments run on virtual threads when running on Java 21 or later, and otherwise on a pool of
+	 * daemon platform threads shared by all pipelines, so that threads are reused when many short pipelines are
+	 * run in the same process. The executor is not shut down by the pipeline.
+	 * @param executor the executor to run segments on, or {@code null} to use the default.
+	 */
+	public void setExecutor(ExecutorService executor)
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets whether segments running the same command may run concurrently.
+	 * By default, they run in sequence, since option handlers and commands keep the state of a segment in the
+	 * shared command and option objects. Commands and handlers that keep no such state can be declared reentrant.
+	 * @param reentrantCommands {@code true} to run segments concurrently even if they run the same command.
+	 */
+	public void setReentrantCommands(boolean reentrantCommands)
+	{
+		this.reentrantCommands = reentrantCommands;
+	}
+
+	/**
+	 * Declares that a command depends on another command.
+	 * A segment running the command waits until all earlier segments running the dependency have finished, and is
+	 * skipped if any of them fails. Declaring that a command depends on itself skips the segments running the
+	 * command after the first one that fails.
+	 * @param command    the path of the dependent command, such as {@code report} or {@code cluster node drain}.
+	 * @param dependency the path of the command it depends on.
+	 */
+	public void addDependency(String command, String dependency)
+	{
+		if(command == null || dependency == null)
+			throw new NullPointerException("command or dependency is null in command line pipeline object");
+
+		synchronized(dependencies)
+		{
+			dependencies.computeIfAbsent(command, key -> new HashSet<>()).add(dependency);
+		}
+	}
+
+	/**
+	 * Splits a command line into the segments of a pipeline.
+	 * @param args the command line.
+	 * @return the segments of the command line, not including the separators.
+	 */
+	static List<String[]> split(String[] args)
+	{
+		final ArrayList<String[]> retval = new ArrayList<>();
+		int start = 0;
+		for(int i = 0; i <= args.length; ++i)
+		{
+			if(i == args.length || args[i].equals(SEPARATOR))
+			{
+				retval.add(Arrays.copyOfRange(args, start, i));
+				start = i + 1;
+			}
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Parses and runs the segments of a command line.
+	 * @param args the command line, with segments separated by {@code --}.
+	 * @return the status of each segment, in the order of the segments on the command line.
+	 * @throws CommandLineException if a segment is invalid or requests usage information, in which case no
+	 *                              segment is run. Usage information is printed and a
+	 *                              {@link HelpRequestedException} is thrown whether or not the parser is
+	 *                              configured to exit on help.
+	 */
+	public BatchResult run(String[] args) throws CommandLineException
+	{
+		final List<String[]> segments = split(args);
+		final ParseResult[] results = new ParseResult[segments.size()];
+		for(int i = 0; i < results.length; ++i)
+		{
+			results[i] = parser.parseArguments(segments.get(i));
+			if(results[i].isHelpRequested())
+				parser.printHelp(results[i].getCommand(), false);
+		}
+
+		final HashMap<String, Set<String>> dependencies;
+		synchronized(this.dependencies)
+		{
+			dependencies = new HashMap<>(this.dependencies);
+		}
+
+		final CommandLineSession session = CommandLineSession.current();
+		final ExecutorService executor = this.executor;
+		final ExecutorService pool = executor != null ? executor : DefaultExecutor.INSTANCE;
+		final boolean reentrant = reentrantCommands;
+		final long start = System.nanoTime();
+
+		final List<CompletableFuture<BatchResult.Job>> jobs = new ArrayList<>(results.length);
+		for(int i = 0; i < results.length; ++i)
+		{
+			final int index = i;
+			final Set<String> required = dependencies.get(results[i].getCommand().getPath());
+			final ArrayList<CompletableFuture<BatchResult.Job>> waitFor = new ArrayList<>();
+			CompletableFuture<BatchResult.Job> previous = null;
+			for(int j = 0; j < i; ++j)
+			{
+				if(required != null && required.contains(results[j].getCommand().getPath()))
+					waitFor.add(jobs.get(j));
+				else if(!reentrant && results[j].getCommand() == results[i].getCommand())
+					previous = jobs.get(j);
+			}
+
+			// The previous segment running the same command is waited for, but does not need to succeed:
+			final ArrayList<CompletableFuture<BatchResult.Job>> waitForAll = new ArrayList<>(waitFor);
+			if(previous != null)
+				waitForAll.add(previous);
+
+			if(waitForAll.isEmpty())
+				jobs.add(CompletableFuture.supplyAsync(() -> runSegment(index + 1, results[index], session), pool));
+			else
+				jobs.add(CompletableFuture.allOf(waitForAll.toArray(new CompletableFuture<?>[0])).thenApplyAsync(
+						ignored -> {
+							for(CompletableFuture<BatchResult.Job> dependency : waitFor)
+								if(!dependency.join().isSuccessful())
+									return new BatchResult.Job(index + 1, 0, null, -1);
+							return runSegment(index + 1, results[index], session);
+						}, pool));
+		}
+
+		final ArrayList<BatchResult.Job> retval = new ArrayList<>(jobs.size());
+		for(CompletableFuture<BatchResult.Job> job : jobs)
+			retval.add(job.join());
+		return new BatchResult(retval, System.nanoTime() - start);
+	}
+
+	/**
+	 * Runs the command of a segment.
+	 * @param index   the number of the segment.
+	 * @param result  the parsed segment.
+	 * @param session the session running the pipeline.
+	 * @return the status of the segment.
+	 */
+	private static BatchResult.Job runSegment(int index, ParseResult result, CommandLineSession session)
+	{
+		final long start = System.nanoTime();
+		final CommandLineSession segmentSession = session.fork();
+		final CommandLineSession previous = CommandLineSession.bound();
+		CommandLineSession.bind(segmentSession);
+		int exitCode;
+		Throwable error = null;
+		try {
+			result.dispatch();
+			exitCode = segmentSession.getExitCode();
+		} catch(HelpRequestedException exception) {
+			exitCode = CommandLineDaemon.EXIT_USAGE;
+		} catch(Throwable exception) {
+			// Errors are recorded as failures too, so that the segments depending on this one are skipped:
+			exitCode = CommandLineDaemon.EXIT_FAILURE;
+			error = exception;
+		} finally {
+			CommandLineSession.bind(previous);
+		}
+
+		return new BatchResult.Job(index, exitCode, error, System.nanoTime() - start);
+	}
+
+	/**
+	 * Creates the default executor for running the segments of a pipeline.
+	 * @return an executor creating a virtual thread per segment if available, or a pool of platform threads.
+	 */
+	private static ExecutorService createExecutor()
+	{
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(ReflectiveOperationException error) {
+			return Executors.newCachedThreadPool(runnable -> {
+					Thread thread = new Thread(runnable, "cmdline-pipeline");
+					thread.setDaemon(true);
+					return thread;
+				});
+		}
+	}
+}
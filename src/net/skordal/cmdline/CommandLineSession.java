@@ -0,0 +1,167 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Class representing the environment a command is invoked in.
+ * A session provides the working directory, environment variables and standard streams of an invocation.
+ * Normally these are the ones of the running process, but when a command is run by a
+ * {@link CommandLineDaemon}, they are the ones of the client that sent the command line. Commands that may
+ * run in a daemon should use the current session rather than the process properties directly, for instance
+ * by resolving relative file names using {@link #resolve(String)}.
+ * <p>
+ * The session is bound to the thread running the command and is inherited by threads it creates.
+ */
+public final class CommandLineSession
+{
+	private static final CommandLineSession PROCESS = new CommandLineSession(null, null, null, null, null);
+	private static final InheritableThreadLocal<CommandLineSession> CURRENT = new InheritableThreadLocal<>();
+
+	private final Path workingDirectory;
+	private final Map<String, String> environment;
+	private final InputStream input;
+	private final PrintStream output, error;
+	private volatile int exitCode = 0;
+
+	/**
+	 * Creates a new session.
+	 * Parameters that are {@code null} are taken from the running process.
+	 * @param workingDirectory the working directory.
+	 * @param environment      the environment variables.
+	 * @param input            the standard input stream.
+	 * @param output           the standard output stream.
+	 * @param error            the standard error stream.
+	 */
+	CommandLineSession(Path workingDirectory, Map<String, String> environment, InputStream input,
+			PrintStream output, PrintStream error)
+	{
+		this.workingDirectory = workingDirectory;
+		this.environment = environment == null ? null : Collections.unmodifiableMap(environment);
+		this.input = input;
+		this.output = output;
+		this.error = error;
+	}
+
+	/**
+	 * Gets the session of the current thread.
+	 * @return the session bound to the current thread, or the session of the running process if none is bound.
+	 */
+	public static CommandLineSession current()
+	{
+		CommandLineSession retval = CURRENT.get();
+		return retval == null ? PROCESS : retval;
+	}
+
+	/**
+	 * Gets the session explicitly bound to the current thread.
+	 * @return the bound session, or {@code null} if no session is bound.
+	 */
+	static CommandLineSession bound()
+	{
+		return CURRENT.get();
+	}
+
+	/**
+	 * Binds a session to the current thread.
+	 * @param session the session to bind, or {@code null} to unbind the current session.
+	 */
+	static void bind(CommandLineSession session)
+	{
+		if(session == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(session);
+	}
+
+	/**
+	 * Creates a session sharing the working directory, environment and streams of this session.
+	 * The new session has its own exit code.
+	 * @return a new session.
+	 */
+	CommandLineSession fork()
+	{
+		return new CommandLineSession(workingDirectory, environment, input, output, error);
+	}
+
+	/**
+	 * Gets the working directory of the session.
+	 * @return the absolute path of the working directory.
+	 */
+	public Path getWorkingDirectory()
+	{
+		return workingDirectory != null ? workingDirectory : Paths.get("").toAbsolutePath();
+	}
+
+	/**
+	 * Resolves a file name against the working directory of the session.
+	 * @param file the file name to resolve.
+	 * @return the resolved path.
+	 */
+	public Path resolve(String file)
+	{
+		return getWorkingDirectory().resolve(file);
+	}
+
+	/**
+	 * Gets the environment variables of the session.
+	 * @return an unmodifiable map of the environment variables.
+	 */
+	public Map<String, String> getEnvironment()
+	{
+		return environment != null ? environment : System.getenv();
+	}
+
+	/**
+	 * Gets the standard input stream of the session.
+	 * @return the standard input stream.
+	 */
+	public InputStream getInput()
+	{
+		return input != null ? input : System.in;
+	}
+
+	/**
+	 * Gets the standard output stream of the session.
+	 * @return the standard output stream.
+	 */
+	public PrintStream getOutput()
+	{
+		return output != null ? output : System.out;
+	}
+
+	/**
+	 * Gets the standard error stream of the session.
+	 * @return the standard error stream.
+	 */
+	public PrintStream getError()
+	{
+		return error != null ? error : System.err;
+	}
+
+	/**
+	 * Sets the exit code reported when the command finishes.
+	 * This is used by {@link CommandLineDaemon} to report the exit code to the client.
+	 * @param exitCode the exit code.
+	 */
+	public void setExitCode(int exitCode)
+	{
+		this.exitCode = exitCode;
+	}
+
+	/**
+	 * Gets the exit code reported when the command finishes.
+	 * @return the exit code, which is 0 unless it has been set using {@link #setExitCode(int)}.
+	 */
+	public int getExitCode()
+	{
+		return exitCode;
+	}
+}
@@ -0,0 +1,204 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Shell running command lines read from a terminal or a script using a single parser.
+ * Each line of the input is split into tokens using the same quoting rules as argument files and parsed by the
+ * parser, which runs the command in the same way as {@link CommandLineParser#parse(String[])} does. Since the
+ * parser and its commands stay loaded between lines, a script running many commands only pays the startup cost
+ * of the virtual machine once, and later commands benefit from code compiled while running earlier ones.
+ * <p>
+ * Each line runs in a new {@link CommandLineSession}, so exit codes set by one command do not affect the next,
+ * and a reset handler can be set to clear state kept by option handlers between lines. Lines requesting usage
+ * information do not exit the application, whether or not the parser is configured to exit on help. Unless the
+ * parser has commands with those names, the line {@code help} prints usage information and the shell continues
+ * with the next line, while the lines {@code exit} and {@code quit} end the shell.
+ * <p>
+ * The exit code of a line is the one set using {@link CommandLineSession#setExitCode(int)}, or 0 if the command
+ * completes normally. If the command line is invalid or usage information is requested, the exit code is
+ * {@link CommandLineDaemon#EXIT_USAGE}; if the command throws an exception, the exit code is
+ * {@link CommandLineDaemon#EXIT_FAILURE}.
+ */
+public final class CommandLineShell
+{
+	private final CommandLineParser parser;
+	private volatile String prompt = null;
+	private volatile boolean stopOnError = false;
+	private volatile Runnable resetHandler = null;
+
+	/**
+	 * Creates a new shell.
+	 * The configuration of the parser is not changed.
+	 * @param parser the parser used to parse the lines read by the shell.
+	 */
+	public CommandLineShell(CommandLineParser parser)
+	{
+		if(parser == null)
+			throw new NullPointerException("parser is null in command line shell object");
+
+		this.parser = parser;
+	}
+
+	/**
+	 * Sets the prompt printed before reading each line.
+	 * @param prompt the prompt, or {@code null} to read lines without printing a prompt.
+	 */
+	public void setPrompt(String prompt)
+	{
+		this.prompt = prompt;
+	}
+
+	/**
+	 * Sets whether the shell stops at the first line that fails.
+	 * By default, the shell reports the error and continues with the next line.
+	 * @param stopOnError {@code true} to stop when a line has a non-zero exit code.
+	 */
+	public void setStopOnError(boolean stopOnError)
+	{
+		this.stopOnError = stopOnError;
+	}
+
+	/**
+	 * Sets the handler called before each line is run.
+	 * This can be used to reset state set by option handlers for the previous line.
+	 * @param resetHandler the handler, or {@code null} to not call any handler.
+	 */
+	public void setResetHandler(Runnable resetHandler)
+	{
+		this.resetHandler = resetHandler;
+	}
+
+	/**
+	 * Runs command lines read from standard input until the end of the input or an {@code exit} line.
+	 * If no prompt has been set and standard input is a terminal, the name of the application followed by
+	 * {@code >} is used as the prompt.
+	 * @return the exit code of the last line run.
+	 */
+	public int runInteractive()
+	{
+		if(prompt == null && System.console() != null)
+			setPrompt(parser.getApplicationName() + "> ");
+		return run(new InputStreamReader(System.in, Charset.defaultCharset()), "standard input");
+	}
+
+	/**
+	 * Runs the command lines in a script file.
+	 * @param script the path of the script.
+	 * @return the exit code of the last line run, or of the first failing line if the shell stops on errors.
+	 * @throws ArgumentFileException if the script cannot be opened.
+	 */
+	public int runScript(Path script) throws ArgumentFileException
+	{
+		final Reader input;
+		try {
+			input = new MappedFileReader(script);
+		} catch(NoSuchFileException error) {
+			throw new ArgumentFileException(script.toString(), "no such file");
+		} catch(IOException | RuntimeException error) {
+			throw new ArgumentFileException(script.toString(), String.valueOf(error.getMessage()));
+		}
+
+		return run(input, script.toString());
+	}
+
+	/**
+	 * Runs the command lines read from a reader.
+	 * Errors in the input, such as an unterminated quote, are reported and end the shell.
+	 * @param input the reader to read command lines from, which is closed afterwards.
+	 * @param name  name of the input, used in error messages.
+	 * @return the exit code of the last line run, or of the first failing line if the shell stops on errors.
+	 */
+	public int run(Reader input, String name)
+	{
+		final PrintStream stdout = System.out;
+		int retval = 0;
+		try(ArgumentTokenizer tokenizer = new ArgumentTokenizer(input, name))
+		{
+			for(;;)
+			{
+				final String prompt = this.prompt;
+				if(prompt != null)
+				{
+					stdout.print(prompt);
+					stdout.flush();
+				}
+
+				String[] args = tokenizer.nextLine();
+				if(args == null || (args.length == 1 && isBuiltin(args[0], "exit", "quit")))
+					break;
+
+				if(args.length == 1 && isBuiltin(args[0], "help"))
+				{
+					parser.printUsage();
+					retval = 0;
+				} else
+					retval = execute(args);
+				if(retval != 0 && stopOnError)
+					break;
+			}
+		} catch(CommandLineException error) {
+			System.err.println(parser.getApplicationName() + ": " + error.getMessage());
+			retval = CommandLineDaemon.EXIT_USAGE;
+		}
+
+		if(prompt != null)
+			stdout.println();
+		return retval;
+	}
+
+	/**
+	 * Runs a single command line.
+	 * The reset handler is called first, and the command runs in a new session.
+	 * @param args the command line arguments.
+	 * @return the exit code of the command line.
+	 */
+	public int execute(String[] args)
+	{
+		final Runnable reset = resetHandler;
+		if(reset != null)
+			reset.run();
+
+		final CommandLineSession session = new CommandLineSession(null, null, null, null, null);
+		final CommandLineSession previous = CommandLineSession.bound();
+		CommandLineSession.bind(session);
+		try {
+			parser.parse(args, false);
+			return session.getExitCode();
+		} catch(HelpRequestedException error) {
+			return CommandLineDaemon.EXIT_USAGE;
+		} catch(CommandLineException error) {
+			session.getError().println(parser.getApplicationName() + ": " + error.getMessage());
+			return CommandLineDaemon.EXIT_USAGE;
+		} catch(RuntimeException error) {
+			error.printStackTrace(session.getError());
+			return CommandLineDaemon.EXIT_FAILURE;
+		} finally {
+			CommandLineSession.bind(previous);
+		}
+	}
+
+	/**
+	 * Checks whether a token is the name of a built-in shell command.
+	 * Built-in commands are only recognized if the parser has no command with the same name.
+	 * @param token the token.
+	 * @param names the names of the built-in command.
+	 * @return {@code true} if the token is one of the names and not the name of a command.
+	 */
+	private boolean isBuiltin(String token, String... names)
+	{
+		for(String name : names)
+			if(name.equals(token))
+				return parser.getCompiled().getEntry(token) == null;
+		return false;
+	}
+}
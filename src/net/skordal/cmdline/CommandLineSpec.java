@@ -0,0 +1,690 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Binary specification of a command line parser.
+ * A specification contains the commands and options registered with a parser, including their descriptions and
+ * argument requirements, together with the precomputed lookup tables used to parse options. Applications that
+ * assemble their commands from many sources at startup can write a specification once, for instance as part of
+ * their build, and create the parser from the specification at runtime instead.
+ * <p>
+ * Option constraints, including options marked as required, are stored with the options they refer to.
+ * Specifications are memory-mapped when read. Global options are created when the specification is read, while
+ * commands are registered lazily and their options are only created when the command is used. Descriptions are
+ * decoded from the specification when they are first needed, which is usually only when usage information is
+ * printed.
+ * <p>
+ * Handlers, argument validators and command implementations cannot be stored in a specification, so they are
+ * bound by name when the specification is read, using a {@link Binder}. Options are restored as plain options;
+ * typed options lose their conversions, which the binder can restore by providing handlers that convert the
+ * argument.
+ */
+public final class CommandLineSpec
+{
+	/** Magic number identifying specification files. */
+	private static final int MAGIC = 0x434c5350;
+	/** Version of the specification format. */
+	private static final int VERSION = 2;
+	/** Size of the file header, which contains the magic number, the format version and the string pool offset. */
+	private static final int HEADER_SIZE = 12;
+	/** Size of an entry in the command directory. */
+	private static final int DIRECTORY_ENTRY_SIZE = 12;
+
+	private static final int FLAG_ARGUMENT_FILES = 1;
+	private static final int FLAG_INPUT_FILE_LISTS = 2;
+	private static final int FLAG_NO_ABBREVIATIONS = 4;
+
+	private static final int OPTION_SHORT = 1;
+	private static final int OPTION_LONG = 2;
+	private static final int OPTION_HELP = 4;
+	private static final int OPTION_REQUIRED = 8;
+
+	/**
+	 * Interface used to bind the parts of a parser that are not stored in a specification.
+	 */
+	public interface Binder
+	{
+		/**
+		 * Creates the implementation of a command.
+		 * The options of the command are added to the returned command from the specification, so the command
+		 * must not add them itself. This is called when the command is first used.
+		 * @param command     the name of the command.
+		 * @param description the description of the command.
+		 * @return the command, which must have the specified name.
+		 */
+		public CommandLineCommand createCommand(String command, String description);
+
+		/**
+		 * Gets the handler for an option.
+		 * @param command the name of the command the option belongs to, or {@code null} for a global option.
+		 * @param option  the option.
+		 * @return the handler for the option, or {@code null} if the option has no handler.
+		 */
+		public CommandLineOptionHandler getHandler(String command, CommandLineOption option);
+
+		/**
+		 * Gets the argument validator for an option.
+		 * @param command the name of the command the option belongs to, or {@code null} for a global option.
+		 * @param option  the option.
+		 * @return the argument validator for the option, or {@code null} if arguments are not validated.
+		 */
+		public default CommandLineArgumentValidator getArgumentValidator(String command, CommandLineOption option)
+		{
+			return null;
+		}
+	}
+
+	private CommandLineSpec()
+	{
+	}
+
+	/**
+	 * Writes the specification of a parser to a file.
+	 * Commands that were registered lazily are created in order to write their options.
+	 * @param parser the parser to write the specification of.
+	 * @param file   the file to write to.
+	 * @throws IOException if the file cannot be written.
+	 * @throws IllegalArgumentException if the parser contains command groups, which are not supported by the
+	 *                                  specification format, or if an option constraint refers to an option
+	 *                                  that is not available to the command it belongs to.
+	 */
+	public static void write(CommandLineParser parser, Path file) throws IOException
+	{
+		try(OutputStream output = Files.newOutputStream(file))
+		{
+			write(parser, output);
+		}
+	}
+
+	/**
+	 * Writes the specification of a parser to a stream.
+	 * @param parser the parser to write the specification of.
+	 * @param output the stream to write to.
+	 * @throws IOException if the specification cannot be written.
+	 * @throws IllegalArgumentException if the parser contains command groups, which are not supported by the
+	 *                                  specification format, or if an option constraint refers to an option
+	 *                                  that is not available to the command it belongs to.
+	 */
+	public static void write(CommandLineParser parser, OutputStream output) throws IOException
+	{
+		StringPool strings = new StringPool();
+		ArrayList<CommandLineOption> globalOptions = new ArrayList<>(parser.getGlobalOptions());
+
+		ByteArrayOutputStream frontBuffer = new ByteArrayOutputStream();
+		DataOutputStream front = new DataOutputStream(frontBuffer);
+		front.writeInt(strings.add(parser.getApplicationName()));
+		front.writeInt(strings.add(parser.getDescription()));
+		front.writeInt(strings.add(parser.getHelpFooter()));
+		front.writeByte((parser.isArgumentFilesEnabled() ? FLAG_ARGUMENT_FILES : 0)
+				| (parser.isInputFileListsEnabled() ? FLAG_INPUT_FILE_LISTS : 0)
+				| (parser.isAbbreviationsEnabled() ? 0 : FLAG_NO_ABBREVIATIONS));
+		writeOptions(front, strings, globalOptions, parser.getHelpOption());
+		IdentityHashMap<CommandLineOption, Integer> globalIndices = getIndices(globalOptions, null);
+		writeTable(front, new OptionTable(globalOptions), globalIndices);
+		writeConstraints(front, parser.getGlobalConstraints(), globalIndices, null);
+
+		Collection<CommandLineCommand> commands = parser.getCommands();
+		ByteArrayOutputStream blockBuffer = new ByteArrayOutputStream();
+		DataOutputStream blocks = new DataOutputStream(blockBuffer);
+		ByteArrayOutputStream directoryBuffer = new ByteArrayOutputStream();
+		DataOutputStream directory = new DataOutputStream(directoryBuffer);
+		final int blockBase = HEADER_SIZE + front.size() + 4 + commands.size() * DIRECTORY_ENTRY_SIZE;
+
+		directory.writeInt(commands.size());
+		for(CommandLineCommand command : commands)
+		{
+			directory.writeInt(strings.add(command.getCommand()));
+			directory.writeInt(strings.add(command.getDescription()));
+			directory.writeInt(blockBase + blocks.size());
+
+			if(command.resolve() instanceof CommandLineCommandGroup)
+				throw new IllegalArgumentException("command groups cannot be written to a specification: "
+						+ command.getCommand());
+
+			ArrayList<CommandLineOption> options = new ArrayList<>(command.resolve().getOptions());
+			IdentityHashMap<CommandLineOption, Integer> indices = getIndices(globalOptions, options);
+			writeOptions(blocks, strings, options, null);
+			writeTable(blocks, new OptionTable(globalOptions, options), indices);
+			writeConstraints(blocks, command.resolve().getConstraints(), indices, command.getCommand());
+		}
+
+		DataOutputStream file = new DataOutputStream(output);
+		file.writeInt(MAGIC);
+		file.writeInt(VERSION);
+		file.writeInt(blockBase + blocks.size());
+		frontBuffer.writeTo(file);
+		directoryBuffer.writeTo(file);
+		blockBuffer.writeTo(file);
+		strings.writeTo(file);
+		file.flush();
+	}
+
+	/**
+	 * Writes a list of options.
+	 * @param output     the stream to write to.
+	 * @param strings    the string pool.
+	 * @param options    the options to write.
+	 * @param helpOption the help option, which is marked so that it can be replaced by the help option of the
+	 *                   parser reading the specification, or {@code null}.
+	 * @throws IOException if the options cannot be written.
+	 */
+	private static void writeOptions(DataOutputStream output, StringPool strings, List<CommandLineOption> options,
+			CommandLineOption helpOption) throws IOException
+	{
+		output.writeInt(options.size());
+		for(CommandLineOption option : options)
+		{
+			output.writeByte((option.hasShortOption() ? OPTION_SHORT : 0)
+					| (option.getLongOption() != null ? OPTION_LONG : 0) | (option == helpOption ? OPTION_HELP : 0)
+					| (option.isRequired() ? OPTION_REQUIRED : 0));
+			output.writeChar(option.getShortOptionChar());
+			output.writeInt(option.getLongOption() != null ? strings.add(option.getLongOption()) : -1);
+			output.writeByte(option.argumentRequired() ? CommandLineOption.ARGUMENT_REQUIRED
+					: option.argumentOptional() ? CommandLineOption.ARGUMENT_OPTIONAL : CommandLineOption.NO_ARGUMENT);
+			output.writeInt(strings.add(option.getDescription()));
+		}
+	}
+
+	/**
+	 * Assigns the indices identifying options in a specification.
+	 * Options are identified by their index in the global options, followed by the command options.
+	 * @param globalOptions  the global options.
+	 * @param commandOptions the command options, or {@code null} for the global options only.
+	 * @return the index of each option.
+	 */
+	private static IdentityHashMap<CommandLineOption, Integer> getIndices(List<CommandLineOption> globalOptions,
+			List<CommandLineOption> commandOptions)
+	{
+		IdentityHashMap<CommandLineOption, Integer> retval = new IdentityHashMap<>();
+		if(commandOptions != null)
+			for(int i = commandOptions.size() - 1; i >= 0; --i)
+				retval.put(commandOptions.get(i), globalOptions.size() + i);
+		for(int i = globalOptions.size() - 1; i >= 0; --i)
+			retval.put(globalOptions.get(i), i);
+
+		return retval;
+	}
+
+	/**
+	 * Writes the long option hash table of an option table.
+	 * @param output  the stream to write to.
+	 * @param table   the option table.
+	 * @param indices the indices identifying the options.
+	 * @throws IOException if the table cannot be written.
+	 */
+	private static void writeTable(DataOutputStream output, OptionTable table,
+			IdentityHashMap<CommandLineOption, Integer> indices) throws IOException
+	{
+		output.writeInt(table.getLongCapacity());
+		for(int slot = 0; slot < table.getLongCapacity(); ++slot)
+		{
+			CommandLineOption option = table.getLongSlot(slot);
+			output.writeInt(option == null ? -1 : indices.get(option));
+			output.writeInt(option == null ? 0 : table.getLongSlotHash(slot));
+		}
+	}
+
+	/**
+	 * Writes a list of option constraints.
+	 * Each constraint is written as the index of its trigger option or -1, its bounds, and the indices of its options.
+	 * @param output      the stream to write to.
+	 * @param constraints the constraints.
+	 * @param indices     the indices identifying the options.
+	 * @param command     the name of the command the constraints belong to, or {@code null} for global constraints.
+	 * @throws IOException if the constraints cannot be written.
+	 * @throws IllegalArgumentException if a constraint refers to an option that is not available to the command.
+	 */
+	private static void writeConstraints(DataOutputStream output, List<OptionConstraint> constraints,
+			IdentityHashMap<CommandLineOption, Integer> indices, String command) throws IOException
+	{
+		output.writeInt(constraints.size());
+		for(OptionConstraint constraint : constraints)
+		{
+			output.writeInt(constraint.getTrigger() == null ? -1 : getIndex(indices, constraint.getTrigger(), command));
+			output.writeInt(constraint.getMinimum());
+			output.writeInt(constraint.getMaximum());
+			output.writeInt(constraint.getOptions().size());
+			for(CommandLineOption option : constraint.getOptions())
+				output.writeInt(getIndex(indices, option, command));
+		}
+	}
+
+	/**
+	 * Gets the index of an option referred to by a constraint.
+	 * @param indices the indices identifying the options.
+	 * @param option  the option.
+	 * @param command the name of the command the constraint belongs to, or {@code null} for a global constraint.
+	 * @return the index of the option.
+	 * @throws IllegalArgumentException if the option is not available to the command.
+	 */
+	private static int getIndex(IdentityHashMap<CommandLineOption, Integer> indices, CommandLineOption option,
+			String command)
+	{
+		Integer retval = indices.get(option);
+		if(retval == null)
+			throw new IllegalArgumentException("option constraint refers to an option not available to "
+					+ (command == null ? "all commands" : "command " + command) + ": "
+					+ ParseInstrumentation.getName(option));
+		return retval;
+	}
+
+	/**
+	 * Creates a parser from a specification file.
+	 * @param file   the specification file.
+	 * @param binder the binder providing handlers and command implementations.
+	 * @return the parser.
+	 * @throws IOException if the file cannot be read or is not a valid specification.
+	 */
+	public static CommandLineParser read(Path file, Binder binder) throws IOException
+	{
+		MappedByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			return read(buffer, binder);
+		} catch(IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException error) {
+			throw new IOException("invalid command line specification: " + file, error);
+		}
+	}
+
+	/**
+	 * Creates a parser from a specification.
+	 * @param buffer the buffer containing the specification.
+	 * @param binder the binder providing handlers and command implementations.
+	 * @return the parser.
+	 * @throws IOException if the buffer does not contain a valid specification.
+	 */
+	private static CommandLineParser read(ByteBuffer buffer, Binder binder) throws IOException
+	{
+		if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IOException("not a command line specification, or unsupported version");
+
+		SpecFile spec = new SpecFile(buffer, buffer.getInt(8));
+		int position = HEADER_SIZE;
+		CommandLineParser parser = new CommandLineParser(spec.string(buffer.getInt(position)),
+				spec.string(buffer.getInt(position + 4)), spec.string(buffer.getInt(position + 8)));
+		int flags = buffer.get(position + 12);
+		parser.setArgumentFilesEnabled((flags & FLAG_ARGUMENT_FILES) != 0);
+		parser.setInputFileListsEnabled((flags & FLAG_INPUT_FILE_LISTS) != 0);
+		parser.setAbbreviationsEnabled((flags & FLAG_NO_ABBREVIATIONS) == 0);
+		position += 13;
+
+		ArrayList<CommandLineOption> globalOptions = new ArrayList<>();
+		position = spec.readOptions(position, null, binder, parser.getHelpOption(), globalOptions);
+		for(CommandLineOption option : globalOptions)
+			if(option != parser.getHelpOption())
+				parser.addGlobalOption(option);
+		OptionTable globalTable = spec.readTable(position, globalOptions, globalOptions, null);
+		position += 4 + buffer.getInt(position) * 8;
+		ArrayList<OptionConstraint> globalConstraints = new ArrayList<>();
+		position = spec.readConstraints(position, globalOptions, null, globalConstraints);
+		for(OptionConstraint constraint : globalConstraints)
+			parser.addGlobalConstraint(constraint);
+
+		int numCommands = buffer.getInt(position);
+		position += 4;
+		for(int i = 0; i < numCommands; ++i, position += DIRECTORY_ENTRY_SIZE)
+		{
+			CommandLoader loader = new CommandLoader(spec, spec.string(buffer.getInt(position)),
+					buffer.getInt(position + 4), buffer.getInt(position + 8), globalOptions, binder);
+			parser.addCommand(new SpecCommand(loader));
+		}
+
+		parser.compile(globalTable);
+		return parser;
+	}
+
+	/**
+	 * Writes the specification of the parser created by a parser factory.
+	 * This is used by the {@code spec} target of the build to emit the specification of an application.
+	 * @param args the name of a class implementing {@code Supplier<CommandLineParser>} with a public constructor
+	 *             without parameters, and the specification file to write.
+	 * @throws Exception if the parser cannot be created or the specification cannot be written.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if(args.length != 2)
+		{
+			System.err.println("Usage: CommandLineSpec <parser factory class> <specification file>");
+			System.exit(1);
+		}
+
+		@SuppressWarnings("unchecked")
+		Supplier<CommandLineParser> factory = (Supplier<CommandLineParser>) Class.forName(args[0])
+				.getDeclaredConstructor().newInstance();
+		write(factory.get(), Paths.get(args[1]));
+	}
+
+	/**
+	 * Memory-mapped specification.
+	 */
+	private static final class SpecFile
+	{
+		private final ByteBuffer buffer;
+		private final int stringPool;
+
+		SpecFile(ByteBuffer buffer, int stringPool)
+		{
+			this.buffer = buffer;
+			this.stringPool = stringPool;
+		}
+
+		/**
+		 * Decodes a string from the string pool.
+		 * @param reference the offset of the string in the string pool.
+		 * @return the string.
+		 */
+		String string(int reference)
+		{
+			int offset = stringPool + reference;
+			byte[] bytes = new byte[buffer.getInt(offset)];
+			buffer.get(offset + 4, bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Reads a list of options.
+		 * @param position   the position of the list.
+		 * @param command    the name of the command the options belong to, or {@code null} for global options.
+		 * @param binder     the binder providing handlers and validators.
+		 * @param helpOption the help option of the parser, which replaces the stored help option.
+		 * @param options    the list to add the options to.
+		 * @return the position following the list.
+		 */
+		int readOptions(int position, String command, Binder binder, CommandLineOption helpOption,
+				List<CommandLineOption> options)
+		{
+			int count = buffer.getInt(position);
+			position += 4;
+			for(int i = 0; i < count; ++i, position += 12)
+			{
+				int flags = buffer.get(position);
+				if((flags & OPTION_HELP) != 0)
+				{
+					options.add(helpOption);
+					continue;
+				}
+
+				CommandLineOption option = new SpecOption(
+						(flags & OPTION_SHORT) != 0 ? buffer.getChar(position + 1) : null,
+						(flags & OPTION_LONG) != 0 ? string(buffer.getInt(position + 3)) : null,
+						buffer.get(position + 7), this, buffer.getInt(position + 8));
+				option.setHandler(binder.getHandler(command, option));
+				option.setArgumentValidator(binder.getArgumentValidator(command, option));
+				option.setRequired((flags & OPTION_REQUIRED) != 0);
+				options.add(option);
+			}
+
+			return position;
+		}
+
+		/**
+		 * Reads an option table.
+		 * @param position       the position of the long option hash table.
+		 * @param tableOptions   the options in the table, in order of precedence.
+		 * @param globalOptions  the global options.
+		 * @param commandOptions the command options, or {@code null} for the global option table.
+		 * @return the option table.
+		 */
+		OptionTable readTable(int position, List<CommandLineOption> tableOptions, List<CommandLineOption> globalOptions,
+				List<CommandLineOption> commandOptions)
+		{
+			int capacity = buffer.getInt(position);
+			if(Integer.bitCount(capacity) != 1)
+				throw new IllegalArgumentException("invalid option table size");
+
+			CommandLineOption[] longOptions = new CommandLineOption[capacity];
+			int[] longHashes = new int[capacity];
+			position += 4;
+			for(int slot = 0; slot < capacity; ++slot, position += 8)
+			{
+				int index = buffer.getInt(position);
+				if(index >= 0)
+				{
+					longOptions[slot] = index < globalOptions.size() ? globalOptions.get(index)
+							: commandOptions.get(index - globalOptions.size());
+					longHashes[slot] = buffer.getInt(position + 4);
+				}
+			}
+
+			return new OptionTable(tableOptions, longOptions, longHashes);
+		}
+
+		/**
+		 * Reads a list of option constraints.
+		 * @param position       the position of the list.
+		 * @param globalOptions  the global options.
+		 * @param commandOptions the command options, or {@code null} for global constraints.
+		 * @param constraints    the list to add the constraints to.
+		 * @return the position following the list.
+		 */
+		int readConstraints(int position, List<CommandLineOption> globalOptions, List<CommandLineOption> commandOptions,
+				List<OptionConstraint> constraints)
+		{
+			int count = buffer.getInt(position);
+			position += 4;
+			for(int i = 0; i < count; ++i)
+			{
+				int trigger = buffer.getInt(position);
+				int minimum = buffer.getInt(position + 4), maximum = buffer.getInt(position + 8);
+				CommandLineOption[] options = new CommandLineOption[buffer.getInt(position + 12)];
+				position += 16;
+				for(int j = 0; j < options.length; ++j, position += 4)
+					options[j] = getOption(buffer.getInt(position), globalOptions, commandOptions);
+
+				constraints.add(new OptionConstraint(trigger < 0 ? null : getOption(trigger, globalOptions,
+						commandOptions), options, minimum, maximum));
+			}
+
+			return position;
+		}
+
+		/**
+		 * Gets an option by its index in the specification.
+		 * @param index          the index of the option.
+		 * @param globalOptions  the global options.
+		 * @param commandOptions the command options, or {@code null} if only global options are available.
+		 * @return the option.
+		 */
+		private static CommandLineOption getOption(int index, List<CommandLineOption> globalOptions,
+				List<CommandLineOption> commandOptions)
+		{
+			if(index < globalOptions.size())
+				return globalOptions.get(index);
+			if(commandOptions == null)
+				throw new IndexOutOfBoundsException("invalid option index in specification: " + index);
+			return commandOptions.get(index - globalOptions.size());
+		}
+	}
+
+	/**
+	 * Option read from a specification, with a description that is decoded when first used.
+	 */
+	private static final class SpecOption extends CommandLineOption
+	{
+		private final SpecFile spec;
+		private final int descriptionReference;
+		private volatile String description = null;
+
+		SpecOption(Character shortOption, String longOption, int argumentRequired, SpecFile spec,
+				int descriptionReference)
+		{
+			super(shortOption, longOption, argumentRequired, "", null);
+			this.spec = spec;
+			this.descriptionReference = descriptionReference;
+		}
+
+		@Override public String getDescription()
+		{
+			String retval = description;
+			if(retval == null)
+			{
+				retval = spec.string(descriptionReference);
+				description = retval;
+			}
+
+			return retval;
+		}
+	}
+
+	/**
+	 * Supplier creating a command and its options from a specification.
+	 */
+	private static final class CommandLoader implements Supplier<CommandLineCommand>
+	{
+		private final SpecFile spec;
+		private final String name;
+		private final int descriptionReference, position;
+		private final List<CommandLineOption> globalOptions;
+		private final Binder binder;
+
+		private volatile String description = null;
+		private OptionTable table = null;
+		private CommandLineCommand command = null;
+		private int revision;
+
+		CommandLoader(SpecFile spec, String name, int descriptionReference, int position,
+				List<CommandLineOption> globalOptions, Binder binder)
+		{
+			this.spec = spec;
+			this.name = name;
+			this.descriptionReference = descriptionReference;
+			this.position = position;
+			this.globalOptions = globalOptions;
+			this.binder = binder;
+		}
+
+		String getDescription()
+		{
+			String retval = description;
+			if(retval == null)
+			{
+				retval = spec.string(descriptionReference);
+				description = retval;
+			}
+
+			return retval;
+		}
+
+		@Override public synchronized CommandLineCommand get()
+		{
+			CommandLineCommand retval = binder.createCommand(name, getDescription());
+			if(retval == null)
+				return null;
+
+			ArrayList<CommandLineOption> options = new ArrayList<>();
+			int tablePosition = spec.readOptions(position, name, binder, null, options);
+			for(CommandLineOption option : options)
+				retval.addOption(option);
+
+			ArrayList<CommandLineOption> tableOptions = new ArrayList<>(globalOptions);
+			tableOptions.addAll(options);
+			table = spec.readTable(tablePosition, tableOptions, globalOptions, options);
+
+			ArrayList<OptionConstraint> constraints = new ArrayList<>();
+			spec.readConstraints(tablePosition + 4 + spec.buffer.getInt(tablePosition) * 8, globalOptions, options,
+					constraints);
+			for(OptionConstraint constraint : constraints)
+				retval.addConstraint(constraint);
+			command = retval;
+			revision = retval.getRevision();
+			return retval;
+		}
+
+		/**
+		 * Gets the precomputed option table of the command.
+		 * @param command the command.
+		 * @return the option table, or {@code null} if the options of the command have changed since it was created.
+		 */
+		synchronized OptionTable getTable(CommandLineCommand command)
+		{
+			return command == this.command && command.getRevision() == revision ? table : null;
+		}
+	}
+
+	/**
+	 * Placeholder for a command read from a specification.
+	 */
+	private static final class SpecCommand extends LazyCommandLineCommand
+	{
+		private final CommandLoader loader;
+
+		SpecCommand(CommandLoader loader)
+		{
+			super(loader.name, "", loader);
+			this.loader = loader;
+		}
+
+		@Override public String getDescription()
+		{
+			return loader.getDescription();
+		}
+
+		@Override OptionTable compileOptions(List<CommandLineOption> globalOptions)
+		{
+			OptionTable retval = loader.getTable(resolve());
+			return retval != null ? retval : super.compileOptions(globalOptions);
+		}
+	}
+
+	/**
+	 * Pool of strings stored in a specification.
+	 * Each string is stored once, as its length in bytes followed by its UTF-8 encoding.
+	 */
+	private static final class StringPool
+	{
+		private final HashMap<String, Integer> references = new HashMap<>();
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private final DataOutputStream output = new DataOutputStream(buffer);
+
+		/**
+		 * Adds a string to the pool.
+		 * @param string the string.
+		 * @return the offset of the string in the pool.
+		 * @throws IOException never.
+		 */
+		int add(String string) throws IOException
+		{
+			Integer retval = references.get(string);
+			if(retval == null)
+			{
+				retval = output.size();
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				output.writeInt(bytes.length);
+				output.write(bytes);
+				references.put(string, retval);
+			}
+
+			return retval;
+		}
+
+		void writeTo(OutputStream output) throws IOException
+		{
+			buffer.writeTo(output);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics listener collecting statistics about parsed command lines.
+ * The statistics contain the number of times each option has been used, histograms of the time spent in the
+ * argument validators of each option, and a histogram of the total time spent parsing command lines. The
+ * statistics can be shared between parsers and threads.
+ */
+public final class CommandLineStatistics implements CommandLineMetricsListener
+{
+	private final ConcurrentHashMap<CommandLineOption, LongAdder> optionCounts = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<CommandLineOption, LatencyHistogram> validatorLatencies
+			= new ConcurrentHashMap<>();
+	private final LatencyHistogram parseLatency = new LatencyHistogram();
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * Histogram of latencies.
+	 * Latencies are counted in buckets whose bounds are powers of two nanoseconds, so recording a latency is a
+	 * single atomic increment, and percentiles are accurate to within a factor of two.
+	 */
+	public static final class LatencyHistogram
+	{
+		/** Number of buckets in a histogram. */
+		public static final int NUM_BUCKETS = 64;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+		private final LongAdder totalTime = new LongAdder();
+
+		LatencyHistogram()
+		{
+		}
+
+		/**
+		 * Records a latency.
+		 * @param duration the latency in nanoseconds.
+		 */
+		void record(long duration)
+		{
+			buckets.incrementAndGet(getBucket(duration));
+			totalTime.add(Math.max(duration, 0));
+		}
+
+		/**
+		 * Gets the bucket a latency is counted in.
+		 * @param duration the latency in nanoseconds.
+		 * @return the bucket index.
+		 */
+		private static int getBucket(long duration)
+		{
+			return duration <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(duration) - 1;
+		}
+
+		/**
+		 * Gets the number of latencies counted in a bucket.
+		 * Bucket {@code i} counts latencies of at least 2<sup>i</sup> and less than 2<sup>i + 1</sup> nanoseconds;
+		 * bucket 0 also counts latencies of 0 nanoseconds.
+		 * @param bucket the index of the bucket.
+		 * @return the number of latencies in the bucket.
+		 */
+		public long getBucketCount(int bucket)
+		{
+			return buckets.get(bucket);
+		}
+
+		/**
+		 * Gets the number of latencies recorded.
+		 * @return the number of latencies.
+		 */
+		public long getCount()
+		{
+			long retval = 0;
+			for(int i = 0; i < NUM_BUCKETS; ++i)
+				retval += buckets.get(i);
+			return retval;
+		}
+
+		/**
+		 * Gets the sum of the latencies recorded.
+		 * @return the total time in nanoseconds.
+		 */
+		public long getTotalTime()
+		{
+			return totalTime.sum();
+		}
+
+		/**
+		 * Gets the mean of the latencies recorded.
+		 * @return the mean latency in nanoseconds, or 0 if no latencies have been recorded.
+		 */
+		public double getMean()
+		{
+			long count = getCount();
+			return count == 0 ? 0 : (double) getTotalTime() / count;
+		}
+
+		/**
+		 * Gets an upper bound for a percentile of the latencies recorded.
+		 * @param percentile the percentile, between 0 and 100.
+		 * @return the upper bound of the bucket containing the percentile in nanoseconds, or 0 if no latencies
+		 *         have been recorded.
+		 */
+		public long getPercentile(double percentile)
+		{
+			long[] counts = new long[NUM_BUCKETS];
+			long count = 0;
+			for(int i = 0; i < NUM_BUCKETS; ++i)
+				count += counts[i] = buckets.get(i);
+			if(count == 0)
+				return 0;
+
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count)), seen = 0;
+			for(int i = 0; i < NUM_BUCKETS - 1; ++i)
+			{
+				seen += counts[i];
+				if(seen >= rank)
+					return (1L << (i + 1)) - 1;
+			}
+
+			return Long.MAX_VALUE;
+		}
+
+		@Override public String toString()
+		{
+			return String.format("count=%d mean=%.0fns p50<=%dns p99<=%dns", getCount(), getMean(),
+					getPercentile(50), getPercentile(99));
+		}
+	}
+
+	@Override public void optionValidated(CommandLineOption option, boolean valid, long duration)
+	{
+		optionCounts.computeIfAbsent(option, o -> new LongAdder()).increment();
+		validatorLatencies.computeIfAbsent(option, o -> new LatencyHistogram()).record(duration);
+	}
+
+	@Override public void optionHandled(CommandLineOption option, long duration)
+	{
+	}
+
+	@Override public void commandProcessed(CommandLineCommand command, long duration)
+	{
+	}
+
+	@Override public void commandLineParsed(CommandLineCommand command, boolean successful, long duration)
+	{
+		parseLatency.record(duration);
+		if(!successful)
+			failures.increment();
+	}
+
+	/**
+	 * Gets the number of times an option has been found on a command line.
+	 * @param option the option.
+	 * @return the number of times the option has been used.
+	 */
+	public long getOptionCount(CommandLineOption option)
+	{
+		LongAdder count = optionCounts.get(option);
+		return count != null ? count.sum() : 0;
+	}
+
+	/**
+	 * Gets the number of times each option has been found on a command line.
+	 * @return a map from options to the number of times they have been used, for the options used at least once.
+	 */
+	public Map<CommandLineOption, Long> getOptionCounts()
+	{
+		ConcurrentHashMap<CommandLineOption, Long> retval = new ConcurrentHashMap<>();
+		optionCounts.forEach((option, count) -> retval.put(option, count.sum()));
+		return Collections.unmodifiableMap(retval);
+	}
+
+	/**
+	 * Gets the histogram of the time spent validating the arguments of an option.
+	 * @param option the option.
+	 * @return the histogram, or {@code null} if the option has not been used.
+	 */
+	public LatencyHistogram getValidatorLatency(CommandLineOption option)
+	{
+		return validatorLatencies.get(option);
+	}
+
+	/**
+	 * Gets the histogram of the total time spent parsing and processing command lines.
+	 * @return the histogram.
+	 */
+	public LatencyHistogram getParseLatency()
+	{
+		return parseLatency;
+	}
+
+	/**
+	 * Gets the number of command lines that could not be parsed.
+	 * @return the number of failed parses.
+	 */
+	public long getFailureCount()
+	{
+		return failures.sum();
+	}
+}
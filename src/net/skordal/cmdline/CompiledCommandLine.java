@@ -0,0 +1,317 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compiled form of the commands and options registered with a command line parser.
+ * This contains lookup tables that allow commands and options to be found in constant time while parsing.
+ * The option table of each command also contains the global options and the options of the groups containing
+ * the command, which take precedence over the command options, so that only one lookup is needed per option on
+ * the command line.
+ * <p>
+ * Commands form a trie with one level per group, where each level maps the names of the subcommands to their
+ * entries, so a command is found with one lookup per level. The subcommands of groups registered lazily are
+ * compiled when the group is first used. Suggestions for misspelled command names are found using a
+ * {@link SuggestionIndex} for each level, built when a command is first not found on that level.
+ */
+final class CompiledCommandLine
+{
+	private final List<CommandLineOption> globalOptionList;
+	private final OptionTable globalOptions;
+	private final List<OptionConstraint> globalConstraintList;
+	private final HashMap<String, CommandEntry> commands = new HashMap<>();
+	private volatile SuggestionIndex suggestions = null;
+
+	/**
+	 * Compiles a set of commands, global options and global option constraints.
+	 * @param commands          the commands to compile.
+	 * @param globalOptions     the global options to compile.
+	 * @param globalConstraints the constraints applying to all commands.
+	 */
+	CompiledCommandLine(Collection<CommandLineCommand> commands, Collection<CommandLineOption> globalOptions,
+			Collection<OptionConstraint> globalConstraints)
+	{
+		this(commands, globalOptions, globalConstraints, null);
+	}
+
+	/**
+	 * Compiles a set of commands and global options using a precomputed table of global options.
+	 * @param commands           the commands to compile.
+	 * @param globalOptions      the global options to compile.
+	 * @param globalConstraints  the constraints applying to all commands.
+	 * @param globalOptionsTable the table of global options, or {@code null} to compile it from the global options.
+	 */
+	CompiledCommandLine(Collection<CommandLineCommand> commands, Collection<CommandLineOption> globalOptions,
+			Collection<OptionConstraint> globalConstraints, OptionTable globalOptionsTable)
+	{
+		globalOptionList = new ArrayList<>(globalOptions);
+		this.globalOptions = globalOptionsTable != null ? globalOptionsTable : new OptionTable(globalOptionList);
+		globalConstraintList = new ArrayList<>(globalConstraints);
+
+		for(CommandLineCommand command : commands)
+			this.commands.putIfAbsent(command.getCommand(), new CommandEntry(command, null));
+	}
+
+	/**
+	 * Gets the table of global options.
+	 * @return the table of global options.
+	 */
+	OptionTable getGlobalOptions()
+	{
+		return globalOptions;
+	}
+
+	/**
+	 * Looks up a top-level command by name.
+	 * @param name the name of the command.
+	 * @return the entry for the command, or {@code null} if no such command exists.
+	 */
+	CommandEntry getEntry(String name)
+	{
+		return commands.get(name);
+	}
+
+	/**
+	 * Finds the commands with names similar to a misspelled command name.
+	 * @param entry the entry for the group the command was looked up in, or {@code null} for top-level commands.
+	 * @param name  the misspelled command name.
+	 * @return the names of the closest commands, closest first.
+	 */
+	List<String> suggestCommands(CommandEntry entry, String name)
+	{
+		if(entry != null)
+			return entry.suggestSubcommands(name);
+
+		SuggestionIndex index = suggestions;
+		if(index == null)
+			suggestions = index = new SuggestionIndex(commands.keySet());
+		return index.suggest(name);
+	}
+
+	/**
+	 * Gets the option table used when parsing options for a command.
+	 * The table is recompiled if options have been added to the command or the groups containing it since it
+	 * was last compiled.
+	 * @param entry the entry for the command.
+	 * @return the option table for the command, containing the global, inherited and command options.
+	 */
+	OptionTable getOptions(CommandEntry entry)
+	{
+		return getCommandOptions(entry).table;
+	}
+
+	/**
+	 * Gets all options available to a command.
+	 * @param entry the entry for the command, or {@code null} for the global options.
+	 * @return the global options, followed by the options of the groups containing the command, outermost first,
+	 *         and the options of the command.
+	 */
+	List<CommandLineOption> getScopeOptions(CommandEntry entry)
+	{
+		return entry == null ? globalOptionList : getCommandOptions(entry).scope;
+	}
+
+	/**
+	 * Gets the option constraints applying to a command.
+	 * The constraints are recompiled together with the option table of the command.
+	 * @param entry the entry for the command.
+	 * @return the compiled global, inherited and command constraints, or {@code null} if there are none.
+	 */
+	OptionConstraints getConstraints(CommandEntry entry)
+	{
+		return getCommandOptions(entry).constraints;
+	}
+
+	/**
+	 * Gets the compiled options of a command, compiling them if the command has changed since they were compiled.
+	 * @param entry the entry for the command.
+	 * @return the compiled options of the command.
+	 */
+	private CommandOptions getCommandOptions(CommandEntry entry)
+	{
+		CommandOptions options = entry.options;
+		int revision = entry.getCommand().getRevision();
+		if(options == null || options.revision != revision)
+		{
+			final List<CommandLineOption> inherited = getInheritedOptions(entry);
+			final ArrayList<CommandLineOption> scope = new ArrayList<>(inherited);
+			scope.addAll(entry.getCommand().getOptions());
+			final ArrayList<OptionConstraint> constraints = new ArrayList<>(getInheritedConstraints(entry));
+			constraints.addAll(entry.getCommand().getConstraints());
+
+			options = new CommandOptions(revision, entry.command.compileOptions(inherited), scope,
+					OptionConstraints.compile(scope, constraints));
+			entry.options = options;
+		}
+
+		return options;
+	}
+
+	/**
+	 * Gets the options inherited by a command.
+	 * @param entry the entry for the command.
+	 * @return the global options followed by the options of the groups containing the command, outermost first.
+	 */
+	private List<CommandLineOption> getInheritedOptions(CommandEntry entry)
+	{
+		if(entry.parent == null)
+			return globalOptionList;
+
+		ArrayList<CommandLineOption> retval = new ArrayList<>(getInheritedOptions(entry.parent));
+		retval.addAll(entry.parent.getCommand().getOptions());
+		return retval;
+	}
+
+	/**
+	 * Gets the option constraints inherited by a command.
+	 * @param entry the entry for the command.
+	 * @return the global constraints followed by the constraints of the groups containing the command, outermost
+	 *         first.
+	 */
+	private List<OptionConstraint> getInheritedConstraints(CommandEntry entry)
+	{
+		if(entry.parent == null)
+			return globalConstraintList;
+
+		ArrayList<OptionConstraint> retval = new ArrayList<>(getInheritedConstraints(entry.parent));
+		retval.addAll(entry.parent.getCommand().getConstraints());
+		return retval;
+	}
+
+	/**
+	 * Compiled command entry.
+	 */
+	static final class CommandEntry
+	{
+		private final CommandLineCommand command;
+		private final CommandEntry parent;
+		private volatile CommandLineCommand resolved;
+		private volatile Subcommands subcommands;
+		volatile CommandOptions options;
+
+		/**
+		 * Creates a new command entry.
+		 * The subcommands of groups that are not registered lazily are compiled right away.
+		 * @param command the command.
+		 * @param parent  the entry of the group containing the command, or {@code null} for top-level commands.
+		 */
+		CommandEntry(CommandLineCommand command, CommandEntry parent)
+		{
+			this.command = command;
+			this.parent = parent;
+			if(command instanceof CommandLineCommandGroup)
+				compileSubcommands((CommandLineCommandGroup) command);
+		}
+
+		/**
+		 * Gets the command, creating it if it was registered lazily.
+		 * @return the command.
+		 */
+		CommandLineCommand getCommand()
+		{
+			CommandLineCommand retval = resolved;
+			if(retval == null)
+			{
+				retval = command.resolve();
+				resolved = retval;
+			}
+
+			return retval;
+		}
+
+		/**
+		 * Looks up a subcommand of a group by name.
+		 * @param name the name of the subcommand.
+		 * @return the entry for the subcommand, or {@code null} if the command is not a group or has no
+		 *         subcommand with the specified name.
+		 */
+		CommandEntry getSubcommand(String name)
+		{
+			CommandLineCommand group = getCommand();
+			if(!(group instanceof CommandLineCommandGroup))
+				return null;
+
+			Subcommands retval = subcommands;
+			if(retval == null || retval.revision != group.getRevision())
+				retval = compileSubcommands((CommandLineCommandGroup) group);
+			return retval.entries.get(name);
+		}
+
+		/**
+		 * Finds the subcommands of a group with names similar to a misspelled name.
+		 * @param name the misspelled subcommand name.
+		 * @return the names of the closest subcommands, closest first, or an empty list if the command is not
+		 *         a group.
+		 */
+		List<String> suggestSubcommands(String name)
+		{
+			CommandLineCommand group = getCommand();
+			if(!(group instanceof CommandLineCommandGroup))
+				return Collections.emptyList();
+
+			Subcommands retval = subcommands;
+			if(retval == null || retval.revision != group.getRevision())
+				retval = compileSubcommands((CommandLineCommandGroup) group);
+
+			SuggestionIndex index = retval.suggestions;
+			if(index == null)
+				retval.suggestions = index = new SuggestionIndex(retval.entries.keySet());
+			return index.suggest(name);
+		}
+
+		/**
+		 * Compiles the level of the trie containing the subcommands of a group.
+		 * @param group the group.
+		 * @return the compiled subcommands.
+		 */
+		private Subcommands compileSubcommands(CommandLineCommandGroup group)
+		{
+			Subcommands retval = new Subcommands(group.getRevision());
+			for(CommandLineCommand command : group.getCommands())
+				retval.entries.putIfAbsent(command.getCommand(), new CommandEntry(command, this));
+			subcommands = retval;
+			return retval;
+		}
+	}
+
+	/**
+	 * Compiled subcommands of a specific revision of a group.
+	 */
+	private static final class Subcommands
+	{
+		final int revision;
+		final HashMap<String, CommandEntry> entries = new HashMap<>();
+		volatile SuggestionIndex suggestions = null;
+
+		Subcommands(int revision)
+		{
+			this.revision = revision;
+		}
+	}
+
+	/**
+	 * Option table, option list and constraints compiled for a specific revision of a command.
+	 */
+	private static final class CommandOptions
+	{
+		final int revision;
+		final OptionTable table;
+		final List<CommandLineOption> scope;
+		final OptionConstraints constraints;
+
+		CommandOptions(int revision, OptionTable table, List<CommandLineOption> scope, OptionConstraints constraints)
+		{
+			this.revision = revision;
+			this.table = table;
+			this.scope = scope;
+			this.constraints = constraints;
+		}
+	}
+}
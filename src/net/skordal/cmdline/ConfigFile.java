@@ -0,0 +1,400 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsed configuration file providing default values for options.
+ * Configuration files use a simple INI syntax: each line contains a long option name and a value separated by
+ * {@code =} or {@code :}, and lines starting with {@code #} or {@code ;} are comments. Values may be enclosed in
+ * double quotes to keep leading or trailing whitespace. Lines before the first section apply to all commands,
+ * while lines in a section named by a command path, such as {@code [cluster node drain]}, apply to that command
+ * and the commands below it, and take precedence over less specific sections.
+ * <p>
+ * The parsed form of a file can be cached in a directory, keyed by the path, size and modification time of the
+ * file, so applications sharing a large configuration file do not have to parse it on every invocation. Cache
+ * files start with a directory of the sections in the file and are memory-mapped when read, so only the sections
+ * used by a command are decoded.
+ */
+final class ConfigFile
+{
+	/** Magic number identifying cache files. */
+	private static final int MAGIC = 0x434c4346;
+	/** Version of the cache file format. */
+	private static final int VERSION = 1;
+
+	private final String path;
+	private final long size, modified;
+	private final ConcurrentHashMap<String, Map<String, String>> sections;
+	private final Map<String, Integer> offsets;
+	private final ByteBuffer cache;
+	private volatile boolean parsed;
+
+	/**
+	 * Creates a new configuration file object.
+	 * @param path     the absolute path of the file.
+	 * @param size     the size of the file when it was parsed.
+	 * @param modified the modification time of the file when it was parsed, in nanoseconds.
+	 * @param sections the values in each section that have been decoded, keyed by section name, with the empty
+	 *                 name for values outside sections.
+	 * @param offsets  the positions of the sections in the cache file, keyed by section name.
+	 * @param cache    the contents of the cache file, or {@code null} if the file was parsed.
+	 */
+	private ConfigFile(String path, long size, long modified, Map<String, ? extends Map<String, String>> sections,
+			Map<String, Integer> offsets, ByteBuffer cache)
+	{
+		this.path = path;
+		this.size = size;
+		this.modified = modified;
+		this.sections = new ConcurrentHashMap<>(sections);
+		this.offsets = offsets;
+		this.cache = cache;
+		this.parsed = cache == null;
+	}
+
+	/**
+	 * Loads a configuration file.
+	 * The previously loaded version of the file is reused if the file has not changed, and the cache directory is
+	 * checked before parsing the file.
+	 * @param file           the file to load.
+	 * @param cacheDirectory the directory to cache the parsed file in, or {@code null} to not cache it on disk.
+	 * @param previous       the previously loaded configuration, or {@code null} if none has been loaded.
+	 * @return the configuration, or {@code null} if the file does not exist.
+	 * @throws ArgumentFileException if the file cannot be read or contains a malformed line.
+	 */
+	static ConfigFile load(Path file, Path cacheDirectory, ConfigFile previous) throws ArgumentFileException
+	{
+		final Path absolute = file.toAbsolutePath();
+		final String path = absolute.toString();
+		final BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+		} catch(NoSuchFileException error) {
+			return null;
+		} catch(IOException error) {
+			throw new ArgumentFileException(path, String.valueOf(error.getMessage()));
+		}
+
+		final long size = attributes.size();
+		final long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+		if(previous != null && previous.path.equals(path) && previous.size == size && previous.modified == modified)
+			return previous;
+
+		final Path cache = cacheDirectory != null ? cacheDirectory.resolve(getCacheName(path)) : null;
+		ConfigFile retval = cache != null ? readCache(cache, path, size, modified) : null;
+		if(retval == null)
+		{
+			try(Reader input = new MappedFileReader(absolute))
+			{
+				retval = new ConfigFile(path, size, modified, parse(input, path), Collections.emptyMap(), null);
+			} catch(NoSuchFileException error) {
+				return null;
+			} catch(IOException | RuntimeException error) {
+				throw new ArgumentFileException(path, String.valueOf(error.getMessage()));
+			}
+
+			if(cache != null)
+				retval.writeCache(cache);
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Parses the contents of a configuration file.
+	 * @param input the reader to read the file from.
+	 * @param name  name of the file, used in error messages.
+	 * @return the values in each section of the file.
+	 * @throws IOException           if reading the file fails.
+	 * @throws ArgumentFileException if the file contains a malformed line.
+	 */
+	private static HashMap<String, HashMap<String, String>> parse(Reader input, String name)
+			throws IOException, ArgumentFileException
+	{
+		final HashMap<String, HashMap<String, String>> retval = new HashMap<>();
+		final BufferedReader reader = new BufferedReader(input);
+		HashMap<String, String> section = new HashMap<>();
+		retval.put("", section);
+
+		String line;
+		for(int number = 1; (line = reader.readLine()) != null; ++number)
+		{
+			line = line.trim();
+			if(line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == ';')
+				continue;
+
+			if(line.charAt(0) == '[')
+			{
+				if(line.charAt(line.length() - 1) != ']')
+					throw new ArgumentFileException(name, "unterminated section name on line " + number);
+				String sectionName = String.join(" ", line.substring(1, line.length() - 1).trim().split("\\s+"));
+				section = retval.computeIfAbsent(sectionName, key -> new HashMap<>());
+				continue;
+			}
+
+			int separator = 0;
+			while(separator < line.length() && line.charAt(separator) != '=' && line.charAt(separator) != ':')
+				++separator;
+			if(separator == 0 || separator == line.length())
+				throw new ArgumentFileException(name, "expected option = value on line " + number);
+
+			String value = line.substring(separator + 1).trim();
+			if(value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"')
+				value = value.substring(1, value.length() - 1);
+			section.put(line.substring(0, separator).trim(), value);
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Gets the value of an option for a command.
+	 * The section of the command is searched first, followed by the sections of the groups containing it and
+	 * finally the values outside sections.
+	 * @param commandPath the path of the command, with the names of the groups and the command separated by spaces.
+	 * @param option      the long name of the option.
+	 * @return the value of the option, or {@code null} if the file does not contain a value for the option.
+	 * @throws ArgumentFileException if the cache file is corrupt and parsing the configuration file instead fails.
+	 */
+	String get(String commandPath, String option) throws ArgumentFileException
+	{
+		String section = commandPath;
+		while(true)
+		{
+			Map<String, String> values = getSection(section);
+			String retval = values != null ? values.get(option) : null;
+			if(retval != null || section.isEmpty())
+				return retval;
+
+			int separator = section.lastIndexOf(' ');
+			section = separator < 0 ? "" : section.substring(0, separator);
+		}
+	}
+
+	/**
+	 * Gets the values in a section, decoding the section from the cache file if needed.
+	 * If the section cannot be decoded because the cache file is corrupt, the configuration file is parsed instead.
+	 * @param name the name of the section.
+	 * @return the values in the section, or {@code null} if the file has no such section.
+	 * @throws ArgumentFileException if the configuration file has to be parsed and cannot be read or contains a
+	 *                               malformed line.
+	 */
+	private Map<String, String> getSection(String name) throws ArgumentFileException
+	{
+		Map<String, String> retval = sections.get(name);
+		if(retval == null && !parsed && offsets.containsKey(name))
+		{
+			try {
+				final ByteBuffer buffer = cache.duplicate();
+				buffer.position(offsets.get(name));
+				final int numValues = buffer.getInt();
+				if(numValues < 0 || numValues > buffer.remaining() / 8)
+					throw new BufferUnderflowException();
+				final HashMap<String, String> values = new HashMap<>(numValues * 4 / 3 + 1);
+				for(int i = 0; i < numValues; ++i)
+					values.put(readString(buffer), readString(buffer));
+
+				retval = values;
+				sections.putIfAbsent(name, retval);
+			} catch(RuntimeException error) {
+				parse();
+				retval = sections.get(name);
+			}
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Parses the configuration file, replacing the sections decoded from a corrupt cache file.
+	 * @throws ArgumentFileException if the file cannot be read or contains a malformed line.
+	 */
+	private synchronized void parse() throws ArgumentFileException
+	{
+		if(parsed)
+			return;
+
+		try(Reader input = new MappedFileReader(Paths.get(path)))
+		{
+			final HashMap<String, HashMap<String, String>> values = parse(input, path);
+			sections.putAll(values);
+			sections.keySet().retainAll(values.keySet());
+		} catch(IOException | RuntimeException error) {
+			throw new ArgumentFileException(path, String.valueOf(error.getMessage()));
+		}
+		parsed = true;
+	}
+
+	/**
+	 * Gets the path of the configuration file.
+	 * @return the absolute path of the file.
+	 */
+	String getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * Gets the name of the cache file for a configuration file.
+	 * @param path the absolute path of the configuration file.
+	 * @return the name of the cache file.
+	 */
+	private static String getCacheName(String path)
+	{
+		// 64-bit FNV-1a hash of the path; collisions are detected using the path stored in the cache file:
+		long hash = 0xcbf29ce484222325L;
+		for(byte b : path.getBytes(StandardCharsets.UTF_8))
+			hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+		return String.format("cmdline-config-%016x.cache", hash);
+	}
+
+	/**
+	 * Reads a parsed configuration file from the cache.
+	 * The cache file is memory-mapped and only its header and section directory are decoded.
+	 * @param cache    the cache file.
+	 * @param path     the absolute path of the configuration file.
+	 * @param size     the current size of the configuration file.
+	 * @param modified the current modification time of the configuration file, in nanoseconds.
+	 * @return the configuration, or {@code null} if the cache file does not exist, is invalid or was created for
+	 *         a different version of the configuration file.
+	 */
+	private static ConfigFile readCache(Path cache, String path, long size, long modified)
+	{
+		try(FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ))
+		{
+			final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !readString(buffer).equals(path)
+					|| buffer.getLong() != size || buffer.getLong() != modified)
+				return null;
+
+			final int numSections = buffer.getInt();
+			final HashMap<String, Integer> offsets = new HashMap<>(numSections * 4 / 3 + 1);
+			for(int i = 0; i < numSections; ++i)
+				offsets.put(readString(buffer), buffer.getInt());
+
+			// Section offsets are relative to the end of the directory, and must leave room for the value count:
+			final int base = buffer.position();
+			for(Map.Entry<String, Integer> offset : offsets.entrySet())
+			{
+				if(offset.getValue() < 0 || offset.getValue() > buffer.limit() - base - 4)
+					return null;
+				offset.setValue(base + offset.getValue());
+			}
+
+			return new ConfigFile(path, size, modified, Collections.emptyMap(), offsets, buffer);
+		} catch(IOException | RuntimeException error) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a string from a cache file.
+	 * @param buffer the buffer to read the string from.
+	 * @return the string.
+	 * @throws BufferUnderflowException if the length of the string exceeds the remaining contents of the buffer.
+	 */
+	private static String readString(ByteBuffer buffer)
+	{
+		final int length = buffer.getInt();
+		if(length < 0 || length > buffer.remaining())
+			throw new BufferUnderflowException();
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a string to a cache file.
+	 * @param output the stream to write the string to.
+	 * @param string the string.
+	 * @throws IOException if writing the string fails.
+	 */
+	private static void writeString(DataOutputStream output, String string) throws IOException
+	{
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Writes the configuration to a cache file.
+	 * The cache is written to a temporary file which replaces the cache file, so concurrent invocations never
+	 * read a partially written cache. Errors are ignored, as the configuration file is parsed if there is no
+	 * usable cache file.
+	 * @param cache the cache file.
+	 */
+	private void writeCache(Path cache)
+	{
+		Path temporary = null;
+		try {
+			final ByteArrayOutputStream data = new ByteArrayOutputStream();
+			final DataOutputStream dataOutput = new DataOutputStream(data);
+			final HashMap<String, Integer> sectionOffsets = new HashMap<>();
+			for(Map.Entry<String, Map<String, String>> section : sections.entrySet())
+			{
+				sectionOffsets.put(section.getKey(), dataOutput.size());
+				dataOutput.writeInt(section.getValue().size());
+				for(Map.Entry<String, String> value : section.getValue().entrySet())
+				{
+					writeString(dataOutput, value.getKey());
+					writeString(dataOutput, value.getValue());
+				}
+			}
+
+			temporary = Files.createTempFile(cache.getParent(), cache.getFileName().toString(), ".tmp");
+			try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(temporary))))
+			{
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				writeString(output, path);
+				output.writeLong(size);
+				output.writeLong(modified);
+				output.writeInt(sectionOffsets.size());
+				for(Map.Entry<String, Integer> offset : sectionOffsets.entrySet())
+				{
+					writeString(output, offset.getKey());
+					output.writeInt(offset.getValue());
+				}
+				data.writeTo(output);
+			}
+
+			Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			temporary = null;
+		} catch(IOException | RuntimeException error) {
+			// The cache is an optimization only
+		} finally {
+			if(temporary != null)
+			{
+				try {
+					Files.deleteIfExists(temporary);
+				} catch(IOException error) {
+					// Nothing more can be done
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,35 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exception used to report the option constraints violated by a command line.
+ * @see OptionConstraint
+ */
+public class ConstraintViolationException extends CommandLineException
+{
+	private final List<String> violations;
+
+	/**
+	 * Creates a new ConstraintViolationException object.
+	 * @param violations descriptions of the violated constraints, in the order the constraints were added.
+	 */
+	public ConstraintViolationException(List<String> violations)
+	{
+		super(String.join("; ", violations));
+		this.violations = Collections.unmodifiableList(violations);
+	}
+
+	/**
+	 * Gets descriptions of the violated constraints.
+	 * @return an unmodifiable list describing each violated constraint, in the order the constraints were added.
+	 */
+	public List<String> getViolations()
+	{
+		return violations;
+	}
+}
@@ -0,0 +1,248 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire protocol used between {@link CommandLineDaemon} and {@link CommandLineClient}.
+ * <p>
+ * All integers are big-endian 32-bit values and all strings are UTF-8 encoded and prefixed by their length in
+ * bytes. A client starts by sending a request consisting of the protocol magic number, the number of command
+ * line arguments followed by the arguments, the working directory, and the number of environment variables
+ * followed by their names and values. After the request, the client sends its standard input as
+ * {@link #FRAME_STDIN} frames, ending with an empty frame.
+ * <p>
+ * The daemon responds with a sequence of frames, each consisting of a type byte, a length and the frame data.
+ * {@link #FRAME_STDOUT} and {@link #FRAME_STDERR} frames carry output, and the final {@link #FRAME_EXIT}
+ * frame carries the exit code as its four data bytes.
+ * <p>
+ * Lengths and counts are checked against the limits defined here before anything is allocated for them, and a
+ * negative or too large value is reported as an {@link IOException}, as for any other malformed request.
+ */
+final class DaemonProtocol
+{
+	/** Magic number starting a request. */
+	static final int MAGIC = 0x434c4431;
+
+	/** Frame carrying standard output data. */
+	static final byte FRAME_STDOUT = 1;
+	/** Frame carrying standard error data. */
+	static final byte FRAME_STDERR = 2;
+	/** Frame carrying the exit code. */
+	static final byte FRAME_EXIT = 3;
+	/** Frame carrying standard input data, sent by the client. An empty frame indicates end of input. */
+	static final byte FRAME_STDIN = 4;
+
+	/** Maximum length of a string in a request, in bytes. */
+	static final int MAX_STRING_LENGTH = 1 << 20;
+	/** Maximum number of command line arguments or environment variables in a request. */
+	static final int MAX_COUNT = 1 << 16;
+	/** Maximum length of the data of a frame, in bytes. */
+	static final int MAX_FRAME_LENGTH = 1 << 16;
+
+	private DaemonProtocol()
+	{
+	}
+
+	/**
+	 * Writes a string.
+	 * @param output the stream to write to.
+	 * @param string the string to write.
+	 */
+	static void writeString(DataOutputStream output, String string) throws IOException
+	{
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Reads a length or count.
+	 * @param input       the stream to read from.
+	 * @param maximum     the largest value accepted.
+	 * @param description the description of the value, used in the error message.
+	 * @return the value.
+	 * @throws IOException if the value cannot be read, or if it is negative or larger than the maximum.
+	 */
+	static int readLength(DataInputStream input, int maximum, String description) throws IOException
+	{
+		int retval = input.readInt();
+		if(retval < 0 || retval > maximum)
+			throw new IOException("invalid " + description + ": " + retval);
+		return retval;
+	}
+
+	/**
+	 * Reads a string.
+	 * @param input the stream to read from.
+	 * @return the string.
+	 */
+	static String readString(DataInputStream input) throws IOException
+	{
+		byte[] bytes = new byte[readLength(input, MAX_STRING_LENGTH, "string length")];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a frame.
+	 * Frames may be written from several threads, so writes are synchronized on the output stream.
+	 * @param output the stream to write to.
+	 * @param type   the frame type.
+	 * @param data   the frame data.
+	 * @param offset the offset of the frame data.
+	 * @param length the length of the frame data.
+	 */
+	static void writeFrame(DataOutputStream output, byte type, byte[] data, int offset, int length) throws IOException
+	{
+		synchronized(output)
+		{
+			output.writeByte(type);
+			output.writeInt(length);
+			output.write(data, offset, length);
+			output.flush();
+		}
+	}
+
+	/**
+	 * Creates an input stream reading directly from a channel.
+	 * Unlike the streams created by {@code java.nio.channels.Channels}, the stream does not lock the channel,
+	 * so reading from it does not block concurrent writes to the same channel.
+	 * @param channel the channel to read from.
+	 * @return a new input stream.
+	 */
+	static InputStream newInputStream(ByteChannel channel)
+	{
+		return new InputStream()
+			{
+				@Override public int read() throws IOException
+				{
+					byte[] b = new byte[1];
+					return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+				}
+
+				@Override public int read(byte[] buffer, int offset, int length) throws IOException
+				{
+					return length == 0 ? 0 : channel.read(ByteBuffer.wrap(buffer, offset, length));
+				}
+			};
+	}
+
+	/**
+	 * Creates an output stream writing directly to a channel.
+	 * @param channel the channel to write to.
+	 * @return a new output stream.
+	 */
+	static OutputStream newOutputStream(ByteChannel channel)
+	{
+		return new OutputStream()
+			{
+				@Override public void write(int b) throws IOException
+				{
+					write(new byte[]{ (byte) b }, 0, 1);
+				}
+
+				@Override public void write(byte[] buffer, int offset, int length) throws IOException
+				{
+					ByteBuffer data = ByteBuffer.wrap(buffer, offset, length);
+					while(data.hasRemaining())
+						channel.write(data);
+				}
+			};
+	}
+
+	/**
+	 * Output stream sending data as frames of a specific type.
+	 */
+	static final class FrameOutputStream extends OutputStream
+	{
+		private final DataOutputStream output;
+		private final byte type;
+
+		FrameOutputStream(DataOutputStream output, byte type)
+		{
+			this.output = output;
+			this.type = type;
+		}
+
+		@Override public void write(int b) throws IOException
+		{
+			write(new byte[]{ (byte) b }, 0, 1);
+		}
+
+		@Override public void write(byte[] buffer, int offset, int length) throws IOException
+		{
+			while(length > 0)
+			{
+				int count = Math.min(length, MAX_FRAME_LENGTH);
+				writeFrame(output, type, buffer, offset, count);
+				offset += count;
+				length -= count;
+			}
+		}
+	}
+
+	/**
+	 * Input stream reading data from {@link #FRAME_STDIN} frames.
+	 */
+	static final class FrameInputStream extends InputStream
+	{
+		private final DataInputStream input;
+		private int remaining = 0;
+		private boolean endOfInput = false;
+
+		FrameInputStream(DataInputStream input)
+		{
+			this.input = input;
+		}
+
+		@Override public int read() throws IOException
+		{
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override public synchronized int read(byte[] buffer, int offset, int length) throws IOException
+		{
+			if(length == 0)
+				return 0;
+
+			while(remaining == 0)
+			{
+				if(endOfInput)
+					return -1;
+
+				try {
+					if(input.readByte() != FRAME_STDIN)
+						throw new IOException("unexpected frame type from client");
+					remaining = readLength(input, MAX_FRAME_LENGTH, "frame length");
+				} catch(EOFException error) {
+					remaining = 0;
+				}
+				if(remaining == 0)
+					endOfInput = true;
+			}
+
+			int count = input.read(buffer, offset, Math.min(length, remaining));
+			if(count < 0)
+			{
+				endOfInput = true;
+				remaining = 0;
+				return -1;
+			}
+
+			remaining -= count;
+			return count;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Token source reading delimiter-separated entries from a channel.
+ * Entries are separated by a single delimiter byte, such as NUL or newline, and decoded as UTF-8. Empty entries
+ * are skipped. The channel is read through a buffer as entries are requested, so lists of any length can be read
+ * using a constant amount of memory.
+ */
+final class DelimitedTokenSource implements TokenSource
+{
+	/** Size of the read buffer. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final ReadableByteChannel channel;
+	private final boolean closeChannel;
+	private final String name;
+	private final byte delimiter;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private byte[] entry = new byte[256];
+	private boolean endOfInput = false;
+
+	/**
+	 * Creates a new delimited token source.
+	 * @param channel      the channel to read from.
+	 * @param closeChannel whether to close the channel when the token source is closed.
+	 * @param name         name of the input, used in error messages.
+	 * @param delimiter    the byte separating the entries.
+	 */
+	DelimitedTokenSource(ReadableByteChannel channel, boolean closeChannel, String name, byte delimiter)
+	{
+		this.channel = channel;
+		this.closeChannel = closeChannel;
+		this.name = name;
+		this.delimiter = delimiter;
+		buffer.flip();
+	}
+
+	/**
+	 * Opens a delimited list of entries.
+	 * @param file      name of the file to read from, or {@code -} to read from standard input.
+	 * @param delimiter the byte separating the entries.
+	 * @return a token source reading from the file.
+	 * @throws ArgumentFileException if the file cannot be opened.
+	 */
+	static DelimitedTokenSource open(String file, byte delimiter) throws ArgumentFileException
+	{
+		if(file.equals("-"))
+		{
+			return new DelimitedTokenSource(Channels.newChannel(CommandLineSession.current().getInput()), false,
+					"standard input", delimiter);
+		}
+
+		try {
+			return new DelimitedTokenSource(FileChannel.open(CommandLineSession.current().resolve(file),
+					StandardOpenOption.READ), true, file, delimiter);
+		} catch(NoSuchFileException error) {
+			throw new ArgumentFileException(file, "no such file");
+		} catch(IOException | RuntimeException error) {
+			throw new ArgumentFileException(file, String.valueOf(error.getMessage()));
+		}
+	}
+
+	@Override public String next() throws CommandLineException
+	{
+		try {
+			int length = 0;
+			for(;;)
+			{
+				if(!buffer.hasRemaining())
+				{
+					if(endOfInput || !fill())
+					{
+						if(length > 0)
+							return decode(length);
+						close();
+						return null;
+					}
+				}
+
+				byte b = buffer.get();
+				if(b == delimiter)
+				{
+					if(delimiter == '\n' && length > 0 && entry[length - 1] == '\r')
+						--length;
+					if(length > 0)
+						return decode(length);
+				} else {
+					if(length == entry.length)
+						entry = Arrays.copyOf(entry, entry.length * 2);
+					entry[length++] = b;
+				}
+			}
+		} catch(IOException error) {
+			close();
+			throw new ArgumentFileException(name, String.valueOf(error.getMessage()));
+		}
+	}
+
+	/**
+	 * Decodes the current entry.
+	 * @param length the length of the entry in bytes.
+	 * @return the decoded entry.
+	 */
+	private String decode(int length)
+	{
+		return new String(entry, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Refills the buffer from the channel.
+	 * @return {@code true} if bytes were read, {@code false} if the end of the input has been reached.
+	 */
+	private boolean fill() throws IOException
+	{
+		int count;
+
+		buffer.clear();
+		do {
+			count = channel.read(buffer);
+		} while(count == 0);
+		buffer.flip();
+
+		endOfInput = count < 0;
+		return count > 0;
+	}
+
+	@Override public void close()
+	{
+		endOfInput = true;
+		buffer.clear().flip();
+
+		if(closeChannel)
+		{
+			try {
+				channel.close();
+			} catch(IOException error) {
+				// Nothing useful can be done if closing fails
+			}
+		}
+	}
+}
@@ -0,0 +1,71 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Class representing a command that receives its input files as files with their attributes.
+ * The input files on the command line are expanded by an {@link InputFileExpander}, which expands patterns,
+ * walks directories in parallel and reads the attributes of every file, and the command receives the files
+ * in batches. Since the command is a {@link StreamingCommandLineCommand}, the first batches can be processed
+ * before the rest of the command line has been expanded.
+ * <p>
+ * Input files that do not exist or patterns that do not match any files are reported as an
+ * {@link InputFileException} from the parse method.
+ */
+public abstract class FileCommandLineCommand extends StreamingCommandLineCommand
+{
+	private final InputFileExpander expander;
+
+	/**
+	 * Constructs a new FileCommandLineCommand object.
+	 * @param command     Command string used on the command line.
+	 * @param description Description of the command used in help texts.
+	 */
+	public FileCommandLineCommand(String command, String description)
+	{
+		this(command, description, new InputFileExpander());
+	}
+
+	/**
+	 * Constructs a new FileCommandLineCommand object using a specific input file expander.
+	 * @param command     Command string used on the command line.
+	 * @param description Description of the command used in help texts.
+	 * @param expander    the expander used to expand the input files.
+	 */
+	public FileCommandLineCommand(String command, String description, InputFileExpander expander)
+	{
+		super(command, description);
+		this.expander = expander;
+	}
+
+	/**
+	 * Gets the input file expander of the command.
+	 * This can be used to configure the expander, for instance from an option handler enabling recursive
+	 * expansion. Options only affect the input files following them on the command line.
+	 * @return the input file expander.
+	 */
+	protected final InputFileExpander getExpander()
+	{
+		return expander;
+	}
+
+	@Override public final void processCommand(Iterator<String> inputFiles)
+	{
+		try {
+			expander.expand(inputFiles, this::processFiles);
+		} catch(InputFileException error) {
+			throw new UncheckedCommandLineException(error);
+		}
+	}
+
+	/**
+	 * Processes a batch of input files.
+	 * This is called for each batch of expanded input files, in order.
+	 * @param files the input files in the batch.
+	 */
+	protected abstract void processFiles(List<InputFile> files);
+}
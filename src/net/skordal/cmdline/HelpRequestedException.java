@@ -0,0 +1,34 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+/**
+ * Exception used to indicate that usage information was requested and has been printed.
+ * This is thrown instead of exiting the application when the parser is configured not to exit on help.
+ * @see CommandLineParser#setExitOnHelp(boolean)
+ */
+public class HelpRequestedException extends CommandLineException
+{
+	private final CommandLineCommand command;
+
+	/**
+	 * Creates a new HelpRequestedException object.
+	 * @param command the command usage information was printed for, or {@code null} if the complete usage
+	 *                summary was printed.
+	 */
+	public HelpRequestedException(CommandLineCommand command)
+	{
+		super("usage information requested");
+		this.command = command;
+	}
+
+	/**
+	 * Gets the command usage information was printed for.
+	 * @return the command, or {@code null} if the complete usage summary was printed.
+	 */
+	public CommandLineCommand getCommand()
+	{
+		return command;
+	}
+}
@@ -0,0 +1,72 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Class representing an input file found by expanding the input files on a command line.
+ * The attributes of the file are read while expanding the command line, so commands do not need to access
+ * the file system again to check whether the file exists or to get its size.
+ * @see InputFileExpander
+ */
+public final class InputFile
+{
+	private final Path path;
+	private final BasicFileAttributes attributes;
+
+	/**
+	 * Creates a new InputFile object.
+	 * @param path       the path of the file.
+	 * @param attributes the attributes of the file.
+	 */
+	InputFile(Path path, BasicFileAttributes attributes)
+	{
+		this.path = path;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * Gets the path of the file.
+	 * The path is relative if the input file or pattern it was expanded from was relative.
+	 * @return the path of the file.
+	 */
+	public Path getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * Gets the attributes of the file, as read when the input files were expanded.
+	 * @return the attributes of the file.
+	 */
+	public BasicFileAttributes getAttributes()
+	{
+		return attributes;
+	}
+
+	/**
+	 * Gets the size of the file.
+	 * @return the size of the file in bytes.
+	 */
+	public long getSize()
+	{
+		return attributes.size();
+	}
+
+	/**
+	 * Checks whether the file is a directory.
+	 * @return {@code true} if the file is a directory.
+	 */
+	public boolean isDirectory()
+	{
+		return attributes.isDirectory();
+	}
+
+	@Override public String toString()
+	{
+		return path.toString();
+	}
+}
@@ -0,0 +1,33 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+/**
+ * Exception used to indicate that an input file does not exist or could not be expanded.
+ * @see InputFileExpander
+ */
+public class InputFileException extends CommandLineException
+{
+	private final String inputFile;
+
+	/**
+	 * Creates a new InputFileException object.
+	 * @param inputFile the input file or pattern as specified on the command line.
+	 * @param reason    description of the error.
+	 */
+	public InputFileException(String inputFile, String reason)
+	{
+		super(inputFile + ": " + reason);
+		this.inputFile = inputFile;
+	}
+
+	/**
+	 * Gets the input file that caused the exception.
+	 * @return the input file or pattern as specified on the command line.
+	 */
+	public String getInputFile()
+	{
+		return inputFile;
+	}
+}
@@ -0,0 +1,405 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Class for expanding the input files on a command line into files with their attributes.
+ * Input files containing the glob characters {@code *}, {@code ?}, {@code [} or {@code {} are treated as
+ * patterns, which are matched using a {@link PathMatcher} against the files below the directory part of the
+ * pattern preceding the first glob character. The pattern {@code **} matches across directories. Other input
+ * files must exist, and directories are either delivered as they are or, if recursive expansion is enabled,
+ * replaced by all files below them. Input files are resolved against the working directory of the current
+ * {@link CommandLineSession}, so the paths delivered are absolute, and relative input files refer to the working
+ * directory of the client when running in a {@link CommandLineDaemon}.
+ * <p>
+ * Directories are listed in parallel using a fork-join pool, reading the attributes of every entry once while
+ * walking. The files are delivered in batches as they are found, in the order the input files were specified;
+ * the files found for a pattern or directory are ordered by path, with the contents of a directory following at
+ * the position of the directory. Only the listings of the directories being walked are kept in memory, so the
+ * batch size bounds the number of files held before they are delivered. Symbolic links are not followed while
+ * walking directories.
+ * @see FileCommandLineCommand
+ */
+public final class InputFileExpander
+{
+	/** Default number of input files delivered in each batch. */
+	public static final int DEFAULT_BATCH_SIZE = 1024;
+	/** Characters marking an input file as a pattern. */
+	private static final String GLOB_CHARACTERS = "*?[{";
+
+	private static final Comparator<InputFile> NAME_ORDER
+			= Comparator.comparing(file -> file.getPath().getFileName().toString());
+
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private boolean recursive = false;
+
+	/**
+	 * Task listing a directory, which delivers the files below the directory after it has been run.
+	 */
+	private static final class DirectoryWalk extends RecursiveTask<List<InputFile>>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final transient Path directory, relative;
+		private final transient PathMatcher matcher;
+		private final int depth, maxDepth;
+		private final boolean recursive;
+
+		/**
+		 * Creates a new directory walk.
+		 * @param directory the directory to walk.
+		 * @param relative  the path of the directory relative to the directory the pattern is matched in.
+		 * @param matcher   the pattern matched against relative paths, or {@code null} to deliver all files.
+		 * @param depth     the depth of the directory below the directory the pattern is matched in.
+		 * @param maxDepth  the maximum depth of files matched by the pattern.
+		 * @param recursive whether matching directories are replaced by the files below them.
+		 */
+		DirectoryWalk(Path directory, Path relative, PathMatcher matcher, int depth, int maxDepth, boolean recursive)
+		{
+			this.directory = directory;
+			this.relative = relative;
+			this.matcher = matcher;
+			this.depth = depth;
+			this.maxDepth = maxDepth;
+			this.recursive = recursive;
+		}
+
+		@Override protected List<InputFile> compute()
+		{
+			final List<InputFile> retval = list(directory);
+			retval.sort(NAME_ORDER);
+			return retval;
+		}
+
+		/**
+		 * Waits for the directory to be listed and delivers the files below it in order.
+		 * The subdirectories of the directory are listed in parallel while the entries before them are delivered,
+		 * so only the listings of the directories being walked and of their subdirectories are kept in memory.
+		 * @param pool    the pool to list subdirectories in.
+		 * @param batches the batches to add the files to.
+		 * @throws IOException thrown if a directory cannot be read.
+		 */
+		void deliver(ForkJoinPool pool, Batches batches) throws IOException
+		{
+			final List<InputFile> entries;
+			try {
+				entries = join();
+			} catch(UncheckedIOException error) {
+				// Exceptions rethrown by fork-join tasks may be copies with the original exception as their cause:
+				Throwable cause = error;
+				while(cause instanceof UncheckedIOException)
+					cause = cause.getCause();
+				throw (IOException) cause;
+			}
+
+			final DirectoryWalk[] walks = new DirectoryWalk[entries.size()];
+			final boolean[] delivered = new boolean[entries.size()];
+			for(int i = 0; i < walks.length; ++i)
+			{
+				final InputFile entry = entries.get(i);
+				final Path name = entry.getPath().getFileName();
+				final boolean isDirectory = entry.getAttributes().isDirectory();
+
+				if(matcher == null)
+				{
+					if(isDirectory)
+						walks[i] = new DirectoryWalk(entry.getPath(), null, null, 0, Integer.MAX_VALUE, true);
+					else
+						delivered[i] = true;
+				} else if(matcher.matches(relative.resolve(name)))
+				{
+					if(isDirectory && recursive)
+						walks[i] = new DirectoryWalk(entry.getPath(), null, null, 0, Integer.MAX_VALUE, true);
+					else
+						delivered[i] = true;
+				} else if(isDirectory && depth + 1 < maxDepth)
+					walks[i] = new DirectoryWalk(entry.getPath(), relative.resolve(name), matcher, depth + 1,
+							maxDepth, recursive);
+
+				if(walks[i] != null)
+					pool.execute(walks[i]);
+			}
+
+			try {
+				for(int i = 0; i < walks.length; ++i)
+				{
+					if(delivered[i])
+						batches.add(entries.get(i));
+					else if(walks[i] != null)
+					{
+						walks[i].deliver(pool, batches);
+						walks[i] = null;
+					}
+				}
+			} finally {
+				for(DirectoryWalk walk : walks)
+					if(walk != null)
+						walk.cancel(false);
+			}
+		}
+
+		/**
+		 * Lists the entries of a directory together with their attributes.
+		 * @param directory the directory to list.
+		 * @return the entries of the directory.
+		 */
+		private static List<InputFile> list(final Path directory)
+		{
+			final ArrayList<InputFile> retval = new ArrayList<>();
+			try {
+				Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>()
+					{
+						@Override public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+						{
+							retval.add(new InputFile(file, attributes));
+							return FileVisitResult.CONTINUE;
+						}
+
+						@Override public FileVisitResult visitFileFailed(Path file, IOException error)
+								throws IOException
+						{
+							throw error;
+						}
+					});
+			} catch(IOException error) {
+				throw new UncheckedIOException(error);
+			}
+
+			return retval;
+		}
+	}
+
+	/**
+	 * Class collecting expanded input files into batches, delivering each batch as soon as it is full.
+	 */
+	private static final class Batches
+	{
+		private final Consumer<List<InputFile>> consumer;
+		private final int batchSize;
+		private ArrayList<InputFile> batch = new ArrayList<>();
+		private long count = 0;
+
+		/**
+		 * Creates a new batch collector.
+		 * @param consumer  the consumer receiving each batch.
+		 * @param batchSize the maximum number of input files in each batch.
+		 */
+		Batches(Consumer<List<InputFile>> consumer, int batchSize)
+		{
+			this.consumer = consumer;
+			this.batchSize = batchSize;
+		}
+
+		/**
+		 * Adds an input file to the current batch, delivering the batch if it is full.
+		 * @param file the input file.
+		 */
+		void add(InputFile file)
+		{
+			batch.add(file);
+			++count;
+			if(batch.size() >= batchSize)
+				flush();
+		}
+
+		/**
+		 * Delivers the current batch if it is not empty.
+		 */
+		void flush()
+		{
+			if(!batch.isEmpty())
+			{
+				consumer.accept(batch);
+				batch = new ArrayList<>();
+			}
+		}
+
+		/**
+		 * Gets the number of input files added so far.
+		 * @return the number of input files added.
+		 */
+		long getCount()
+		{
+			return count;
+		}
+	}
+
+	/**
+	 * Sets the fork-join pool used to walk directories.
+	 * The common pool is used by default.
+	 * @param pool the pool to use.
+	 */
+	public void setPool(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+
+	/**
+	 * Sets the maximum number of input files delivered in each batch.
+	 * @param batchSize the batch size.
+	 * @throws IllegalArgumentException thrown if the batch size is less than 1.
+	 */
+	public void setBatchSize(int batchSize)
+	{
+		if(batchSize < 1)
+			throw new IllegalArgumentException("batch size must be positive");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Sets whether directories are expanded recursively.
+	 * When enabled, directories specified on the command line or matched by a pattern are replaced by all
+	 * files below them. Otherwise, they are delivered as input files themselves.
+	 * @param recursive {@code true} to expand directories.
+	 */
+	public void setRecursive(boolean recursive)
+	{
+		this.recursive = recursive;
+	}
+
+	/**
+	 * Expands input files, delivering the results in batches.
+	 * The iterator may be the iterator passed to a {@link StreamingCommandLineCommand}, in which case the
+	 * command line is parsed as the input files are expanded.
+	 * @param inputFiles the input files and patterns to expand.
+	 * @param consumer   the consumer receiving each batch of expanded input files, in order.
+	 * @throws InputFileException thrown if an input file does not exist, if a pattern does not match any files,
+	 *                            or if a directory cannot be read.
+	 */
+	public void expand(Iterator<String> inputFiles, Consumer<List<InputFile>> consumer) throws InputFileException
+	{
+		final Batches batches = new Batches(consumer, batchSize);
+		while(inputFiles.hasNext())
+			expand(inputFiles.next(), batches);
+		batches.flush();
+	}
+
+	/**
+	 * Expands input files.
+	 * @param inputFiles the input files and patterns to expand.
+	 * @return the expanded input files, in order.
+	 * @throws InputFileException thrown if an input file does not exist, if a pattern does not match any files,
+	 *                            or if a directory cannot be read.
+	 */
+	public List<InputFile> expand(Collection<String> inputFiles) throws InputFileException
+	{
+		ArrayList<InputFile> retval = new ArrayList<>();
+		expand(inputFiles.iterator(), retval::addAll);
+		return retval;
+	}
+
+	/**
+	 * Expands a single input file or pattern.
+	 * @param inputFile the input file or pattern.
+	 * @param batches   the batches to add the expanded input files to.
+	 * @throws InputFileException thrown if the input file cannot be expanded.
+	 */
+	private void expand(String inputFile, Batches batches) throws InputFileException
+	{
+		int glob = -1;
+		for(int i = 0; i < inputFile.length() && glob < 0; ++i)
+			if(GLOB_CHARACTERS.indexOf(inputFile.charAt(i)) >= 0)
+				glob = i;
+
+		final DirectoryWalk walk;
+		try {
+			if(glob < 0)
+			{
+				final Path path = CommandLineSession.current().resolve(inputFile);
+				final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				if(!attributes.isDirectory() || !recursive)
+				{
+					batches.add(new InputFile(path, attributes));
+					return;
+				}
+				walk = new DirectoryWalk(path, null, null, 0, Integer.MAX_VALUE, true);
+			} else {
+				final int separator = Math.max(inputFile.lastIndexOf('/', glob),
+						inputFile.lastIndexOf(File.separatorChar, glob));
+				final Path base = CommandLineSession.current().resolve(inputFile.substring(0, separator + 1));
+				final String pattern = inputFile.substring(separator + 1);
+				final PathMatcher matcher = base.getFileSystem().getPathMatcher("glob:" + pattern);
+
+				int maxDepth = Integer.MAX_VALUE;
+				if(!pattern.contains("**"))
+				{
+					maxDepth = 0;
+					for(String component : pattern.split("/"))
+						if(!component.isEmpty())
+							++maxDepth;
+				}
+
+				if(!Files.isDirectory(base))
+					throw new InputFileException(inputFile, "no files match the pattern");
+				walk = new DirectoryWalk(base, base.getFileSystem().getPath(""), matcher, 0, maxDepth, recursive);
+			}
+		} catch(InvalidPathException error) {
+			throw new InputFileException(inputFile, error.getReason());
+		} catch(IOException error) {
+			throw new InputFileException(inputFile, describe(error, inputFile));
+		}
+
+		final long count = batches.getCount();
+		try {
+			pool.execute(walk);
+			walk.deliver(pool, batches);
+		} catch(IOException error) {
+			throw new InputFileException(inputFile, describe(error, inputFile));
+		}
+		if(glob >= 0 && batches.getCount() == count)
+			throw new InputFileException(inputFile, "no files match the pattern");
+	}
+
+	/**
+	 * Describes an error accessing a file.
+	 * @param error     the error.
+	 * @param inputFile the input file being expanded, which is not repeated in the description.
+	 * @return a description of the error.
+	 */
+	private static String describe(IOException error, String inputFile)
+	{
+		String reason = error.getMessage();
+		if(error instanceof NoSuchFileException)
+			reason = "no such file or directory";
+		else if(error instanceof AccessDeniedException)
+			reason = "permission denied";
+		else if(error instanceof FileSystemException && ((FileSystemException) error).getReason() != null)
+			reason = ((FileSystemException) error).getReason();
+
+		if(error instanceof FileSystemException)
+		{
+			FileSystemException fileError = (FileSystemException) error;
+			if(fileError.getFile() != null && !fileError.getFile().equals(inputFile)
+					&& !fileError.getFile().equals(CommandLineSession.current().resolve(inputFile).toString()))
+				return fileError.getFile() + ": " + reason;
+		}
+
+		return reason;
+	}
+}
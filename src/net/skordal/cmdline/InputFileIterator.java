@@ -0,0 +1,74 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over input files which parses the command line on demand.
+ * Options found while looking for the next input file are passed on to an option listener, which is also told
+ * when the end of the command line has been reached.
+ */
+final class InputFileIterator implements Iterator<String>, ArgumentScanner.Listener
+{
+	private final ArgumentScanner scanner;
+	private final ArgumentScanner.Listener optionListener;
+	private String next = null;
+	private boolean finished = false;
+
+	/**
+	 * Creates a new input file iterator.
+	 * @param scanner        the scanner to read the command line from.
+	 * @param optionListener the listener to pass options to.
+	 */
+	InputFileIterator(ArgumentScanner scanner, ArgumentScanner.Listener optionListener)
+	{
+		this.scanner = scanner;
+		this.optionListener = optionListener;
+	}
+
+	@Override public boolean hasNext()
+	{
+		try {
+			while(next == null && scanner.hasNext())
+				scanner.next(this);
+
+			if(next == null && !finished)
+			{
+				finished = true;
+				optionListener.endOfCommandLine();
+			}
+		} catch(CommandLineException error) {
+			throw new UncheckedCommandLineException(error);
+		}
+
+		return next != null;
+	}
+
+	@Override public String next()
+	{
+		if(!hasNext())
+			throw new NoSuchElementException();
+
+		String retval = next;
+		next = null;
+		return retval;
+	}
+
+	@Override public void commandFound(CommandLineCommand command) throws CommandLineException
+	{
+		optionListener.commandFound(command);
+	}
+
+	@Override public void optionFound(CommandLineOption option, String argument) throws CommandLineException
+	{
+		optionListener.optionFound(option, argument);
+	}
+
+	@Override public void inputFileFound(String inputFile)
+	{
+		next = inputFile;
+	}
+}
@@ -10,6 +10,7 @@ public class InvalidArgumentException extends CommandLineException
 {
 	private final String argument;
 	private final CommandLineOption option;
+	private final String optionName;
 
 	/**
 	 * Creates a new InvalidArgumentException object.
@@ -21,6 +22,22 @@ public class InvalidArgumentException extends CommandLineException
 		super("invalid command line argument provided");
 		this.argument = argument;
 		this.option = option;
+		this.optionName = option == null ? null : option.getLongOption() != null ? "--" + option.getLongOption()
+				: "-" + option.getShortOption();
+	}
+
+	/**
+	 * Creates a new InvalidArgumentException object for an option that is not represented by an option object,
+	 * such as an option of a parser generated from annotations.
+	 * @param argument   the argument text that caused the exception.
+	 * @param optionName the option the argument was provided to, as specified on the command line.
+	 */
+	public InvalidArgumentException(String argument, String optionName)
+	{
+		super("invalid command line argument provided");
+		this.argument = argument;
+		this.option = null;
+		this.optionName = optionName;
 	}
 
 	/**
@@ -34,10 +51,20 @@ public class InvalidArgumentException extends CommandLineException
 
 	/**
 	 * Gets the option the argument was passed to.
-	 * @return the option the argument was passed to.
+	 * @return the option the argument was passed to, or {@code null} if the option is not represented by an
+	 *         option object.
 	 */
 	public CommandLineOption getOption()
 	{
 		return option;
 	}
+
+	/**
+	 * Gets the name of the option the argument was passed to.
+	 * @return the name of the option, including the leading dashes, or {@code null} if it is not known.
+	 */
+	public String getOptionName()
+	{
+		return optionName;
+	}
 }
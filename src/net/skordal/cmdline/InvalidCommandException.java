@@ -3,12 +3,16 @@
 // Report bugs and issues on <https://github.com/skordal/cmdline/issues>
 package net.skordal.cmdline;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Exception used to signal that an invalid command has been passed on the command line.
  */
 public class InvalidCommandException extends CommandLineException
 {
 	private final String command;
+	private final List<String> suggestions;
 
 	/**
 	 * Creates a new InvalidCommandException object.
@@ -16,8 +20,20 @@ public class InvalidCommandException extends CommandLineException
 	 */
 	public InvalidCommandException(String command)
 	{
-		super("invalid command specified: " + command);
+		this(command, Collections.emptyList());
+	}
+
+	/**
+	 * Creates a new InvalidCommandException object with suggestions for the intended command.
+	 * @param command     name of the invalid command.
+	 * @param suggestions names of similar commands, closest first.
+	 */
+	public InvalidCommandException(String command, List<String> suggestions)
+	{
+		super("invalid command specified: " + command
+				+ (suggestions.isEmpty() ? "" : " (did you mean " + String.join(", ", suggestions) + "?)"));
 		this.command = command;
+		this.suggestions = Collections.unmodifiableList(suggestions);
 	}
 
 	/**
@@ -28,4 +44,14 @@ public class InvalidCommandException extends CommandLineException
 	{
 		return command;
 	}
+
+	/**
+	 * Gets suggestions for the command the user may have meant.
+	 * @return an unmodifiable list of the names of similar commands, closest first, or an empty list if no
+	 *         command is similar.
+	 */
+	public List<String> getSuggestions()
+	{
+		return suggestions;
+	}
 }
@@ -0,0 +1,69 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.LinkedList;
+import java.util.function.Supplier;
+
+/**
+ * Placeholder for a command that is created when it is first used.
+ * The placeholder only knows the name and description of the command, which is all that is needed to list the
+ * command in the usage summary and to recognize it on the command line. The actual command, including its class
+ * and its options, is created by the supplier when the command is found on the command line.
+ * @see CommandLineParser#addCommand(String, String, Supplier)
+ */
+class LazyCommandLineCommand extends CommandLineCommand
+{
+	private final Supplier<? extends CommandLineCommand> supplier;
+	private volatile CommandLineCommand command = null;
+
+	/**
+	 * Creates a new placeholder command.
+	 * @param command     Command string used on the command line.
+	 * @param description Description of the command used in help texts.
+	 * @param supplier    Supplier creating the command.
+	 */
+	LazyCommandLineCommand(String command, String description, Supplier<? extends CommandLineCommand> supplier)
+	{
+		super(command, description);
+		if(supplier == null)
+			throw new NullPointerException("supplier is null in lazy command line command object");
+		this.supplier = supplier;
+	}
+
+	/**
+	 * Gets the actual command, creating it if this has not been done before.
+	 * @return the command created by the supplier.
+	 * @throws IllegalStateException if the supplier returns {@code null} or a command with a different name.
+	 */
+	@Override CommandLineCommand resolve()
+	{
+		CommandLineCommand retval = command;
+		if(retval == null)
+		{
+			synchronized(this)
+			{
+				retval = command;
+				if(retval == null)
+				{
+					retval = supplier.get();
+					if(retval == null || !retval.getCommand().equals(getCommand()))
+						throw new IllegalStateException("supplier for command \"" + getCommand()
+								+ "\" did not create a command with that name");
+					retval = retval.resolve();
+					if(getParent() != null)
+						retval.setParent(getParent());
+					command = retval;
+				}
+			}
+		}
+
+		return retval;
+	}
+
+	@Override public void processCommand(LinkedList<String> inputFiles)
+	{
+		resolve().processCommand(inputFiles);
+	}
+}
@@ -0,0 +1,21 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+/**
+ * Interface for handlers of options taking {@code long} arguments.
+ * @see CommandLineOption#createLongOption
+ * @see CommandLineOption#createSizeOption
+ */
+@FunctionalInterface public interface LongOptionHandler
+{
+	/**
+	 * Handles a command line option.
+	 * This function is called when an option has been recognized on the command line and its argument has
+	 * been converted and validated.
+	 * @param option The command line option object for the recognized option.
+	 * @param value  The value of the argument of the option.
+	 */
+	public void handleOption(CommandLineOption option, long value);
+}
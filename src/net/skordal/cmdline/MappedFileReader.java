@@ -0,0 +1,99 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader decoding a UTF-8 file through a memory-mapped window.
+ * The file is mapped a window at a time, so files of any size can be read without reading them into the heap.
+ */
+final class MappedFileReader extends Reader
+{
+	/** Size of the part of the file mapped at a time. */
+	private static final long WINDOW_SIZE = 64L << 20;
+
+	private final FileChannel channel;
+	private final long size;
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+
+	private ByteBuffer window = null;
+	private long windowStart = 0;
+	private boolean flushed = false;
+
+	/**
+	 * Opens a file for reading.
+	 * @param file the file to read.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	MappedFileReader(Path file) throws IOException
+	{
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		size = channel.size();
+	}
+
+	@Override public int read(char[] buffer, int offset, int length) throws IOException
+	{
+		if(length == 0)
+			return 0;
+
+		CharBuffer output = CharBuffer.wrap(buffer, offset, length);
+		while(output.position() == offset && !flushed)
+		{
+			if(window == null || !window.hasRemaining() && windowStart + window.limit() < size)
+				mapWindow(window == null ? 0 : windowStart + window.position());
+
+			boolean endOfInput = windowStart + window.limit() >= size;
+			CoderResult result = decoder.decode(window, output, endOfInput);
+			if(result.isError())
+				result.throwException();
+
+			if(result.isUnderflow())
+			{
+				if(endOfInput)
+				{
+					result = decoder.flush(output);
+					if(result.isError())
+						result.throwException();
+					flushed = result.isUnderflow();
+				} else if(window.hasRemaining())
+				{
+					// A character is split across the window boundary, remap starting at the character:
+					mapWindow(windowStart + window.position());
+				}
+			}
+		}
+
+		int count = output.position() - offset;
+		return count == 0 ? -1 : count;
+	}
+
+	/**
+	 * Maps the window starting at the specified position in the file.
+	 * @param position the position of the window in the file.
+	 * @throws IOException if the file cannot be mapped.
+	 */
+	private void mapWindow(long position) throws IOException
+	{
+		windowStart = position;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+	}
+
+	@Override public void close() throws IOException
+	{
+		window = null;
+		channel.close();
+	}
+}
@@ -0,0 +1,213 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Constraint on the combination of options specified on a command line.
+ * Constraints are added to a command using {@link CommandLineCommand#addConstraint(OptionConstraint)} or to the
+ * parser using {@link CommandLineParser#addGlobalConstraint(OptionConstraint)}, and are checked when the whole
+ * command line has been parsed. A command is subject to the global constraints, the constraints of the groups
+ * containing it and its own constraints. If any constraint is violated, a {@link ConstraintViolationException}
+ * describing every violation is thrown.
+ */
+public final class OptionConstraint
+{
+	private final CommandLineOption trigger;
+	private final List<CommandLineOption> options;
+	private final int minimum, maximum;
+
+	/**
+	 * Creates a new constraint.
+	 * Options specified more than once are only counted once.
+	 * @param trigger the option that must be present for the constraint to apply, or {@code null} if the
+	 *                constraint always applies.
+	 * @param options the options counted by the constraint.
+	 * @param minimum the minimum number of the options that must be present.
+	 * @param maximum the maximum number of the options that may be present.
+	 * @throws IllegalArgumentException if there are no options or the bounds are invalid.
+	 */
+	OptionConstraint(CommandLineOption trigger, CommandLineOption[] options, int minimum, int maximum)
+	{
+		if(options.length == 0)
+			throw new IllegalArgumentException("option constraint has no options");
+		for(CommandLineOption option : options)
+			if(option == null)
+				throw new NullPointerException("option is null in option constraint object");
+		if(minimum < 0 || maximum < minimum)
+			throw new IllegalArgumentException("invalid bounds for option constraint: " + minimum + ".." + maximum);
+
+		this.trigger = trigger;
+		this.options = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(distinct(options))));
+		this.minimum = minimum;
+		this.maximum = maximum;
+	}
+
+	/**
+	 * Creates a constraint requiring an option to be present.
+	 * @param option the required option.
+	 * @return a new constraint.
+	 */
+	public static OptionConstraint required(CommandLineOption option)
+	{
+		return new OptionConstraint(null, new CommandLineOption[]{ option }, 1, 1);
+	}
+
+	/**
+	 * Creates a constraint requiring other options to be present if an option is present.
+	 * @param option   the option requiring the other options.
+	 * @param required the options that must be present if {@code option} is present.
+	 * @return a new constraint.
+	 */
+	public static OptionConstraint requires(CommandLineOption option, CommandLineOption... required)
+	{
+		if(option == null)
+			throw new NullPointerException("option is null in option constraint object");
+		final CommandLineOption[] options = distinct(required);
+		return new OptionConstraint(option, options, options.length, options.length);
+	}
+
+	/**
+	 * Creates a constraint allowing at most one of a set of options to be present.
+	 * @param options the mutually exclusive options.
+	 * @return a new constraint.
+	 */
+	public static OptionConstraint mutuallyExclusive(CommandLineOption... options)
+	{
+		return new OptionConstraint(null, options, 0, 1);
+	}
+
+	/**
+	 * Creates a constraint requiring exactly one of a set of options to be present.
+	 * @param options the options.
+	 * @return a new constraint.
+	 */
+	public static OptionConstraint exactlyOne(CommandLineOption... options)
+	{
+		return new OptionConstraint(null, options, 1, 1);
+	}
+
+	/**
+	 * Creates a constraint requiring at least one of a set of options to be present.
+	 * @param options the options.
+	 * @return a new constraint.
+	 */
+	public static OptionConstraint atLeastOne(CommandLineOption... options)
+	{
+		return new OptionConstraint(null, options, 1, distinct(options).length);
+	}
+
+	/**
+	 * Creates a constraint on the number of options of a set that are present.
+	 * @param minimum the minimum number of the options that must be present.
+	 * @param maximum the maximum number of the options that may be present.
+	 * @param options the options.
+	 * @return a new constraint.
+	 */
+	public static OptionConstraint cardinality(int minimum, int maximum, CommandLineOption... options)
+	{
+		return new OptionConstraint(null, options, minimum, maximum);
+	}
+
+	/**
+	 * Removes duplicate options from an array of options, as the options present are counted only once.
+	 * Options are compared by identity, in the same way as when the constraint is checked.
+	 * @param options the options.
+	 * @return the distinct options, in the order they first occur.
+	 */
+	private static CommandLineOption[] distinct(CommandLineOption[] options)
+	{
+		final IdentityHashMap<CommandLineOption, Boolean> seen = new IdentityHashMap<>();
+		final ArrayList<CommandLineOption> retval = new ArrayList<>(options.length);
+		for(CommandLineOption option : options)
+			if(seen.put(option, Boolean.TRUE) == null)
+				retval.add(option);
+		return retval.toArray(new CommandLineOption[0]);
+	}
+
+	/**
+	 * Gets the option that must be present for the constraint to apply.
+	 * @return the option, or {@code null} if the constraint always applies.
+	 */
+	CommandLineOption getTrigger()
+	{
+		return trigger;
+	}
+
+	/**
+	 * Gets the options counted by the constraint.
+	 * @return an unmodifiable list of the options.
+	 */
+	List<CommandLineOption> getOptions()
+	{
+		return options;
+	}
+
+	/**
+	 * Gets the minimum number of the options that must be present.
+	 * @return the minimum number of options.
+	 */
+	int getMinimum()
+	{
+		return minimum;
+	}
+
+	/**
+	 * Gets the maximum number of the options that may be present.
+	 * @return the maximum number of options.
+	 */
+	int getMaximum()
+	{
+		return maximum;
+	}
+
+	/**
+	 * Describes a violation of the constraint.
+	 * @param present the options counted by the constraint that were present.
+	 * @return a description of the violation.
+	 */
+	String describeViolation(List<CommandLineOption> present)
+	{
+		if(trigger != null)
+		{
+			ArrayList<CommandLineOption> missing = new ArrayList<>(options);
+			missing.removeAll(present);
+			return "option " + ParseInstrumentation.getName(trigger) + " requires " + join(missing, " and ");
+		} else if(options.size() == 1)
+			return "option " + ParseInstrumentation.getName(options.get(0)) + " is required";
+		else if(minimum == 0 && maximum == 1)
+			return "options " + join(present, " and ") + " cannot be used together";
+		else if(minimum == maximum)
+			return (minimum == 1 ? "exactly one" : "exactly " + minimum) + " of " + join(options, ", ")
+					+ " must be specified";
+		else if(maximum == options.size())
+			return (minimum == 1 ? "at least one" : "at least " + minimum) + " of " + join(options, ", ")
+					+ " must be specified";
+		else
+			return "between " + minimum + " and " + maximum + " of " + join(options, ", ") + " must be specified";
+	}
+
+	/**
+	 * Joins the names of a list of options.
+	 * @param options   the options.
+	 * @param separator the separator to put between the names.
+	 * @return the names of the options, separated by the separator.
+	 */
+	private static String join(List<CommandLineOption> options, String separator)
+	{
+		StringBuilder retval = new StringBuilder();
+		for(CommandLineOption option : options)
+		{
+			if(retval.length() > 0)
+				retval.append(separator);
+			retval.append(ParseInstrumentation.getName(option));
+		}
+		return retval.toString();
+	}
+}
@@ -0,0 +1,174 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Compiled form of the option constraints applying to a command.
+ * Every option referred to by a constraint is assigned an index, and the options present on a command line are
+ * recorded in a bitset with one bit per index. Each constraint is compiled into a mask covering the words of the
+ * bitset containing its options, so checking a constraint takes a few bitwise operations per 64 options, and all
+ * constraints are checked in a single pass once the command line has been parsed. Compiled constraints are
+ * immutable; the bitsets are owned by the scanner parsing a command line.
+ */
+final class OptionConstraints
+{
+	private final IdentityHashMap<CommandLineOption, Integer> indices = new IdentityHashMap<>();
+	private final ArrayList<CommandLineOption> options = new ArrayList<>();
+	private final OptionConstraint[] constraints;
+	private final int[] triggers;
+	private final int[] firstWords;
+	private final long[][] masks;
+	private final int words;
+
+	/**
+	 * Compiles a set of constraints.
+	 * @param constraints the constraints, in the order they are reported.
+	 */
+	private OptionConstraints(List<OptionConstraint> constraints)
+	{
+		this.constraints = constraints.toArray(new OptionConstraint[0]);
+		triggers = new int[this.constraints.length];
+		firstWords = new int[this.constraints.length];
+		masks = new long[this.constraints.length][];
+
+		for(int i = 0; i < this.constraints.length; ++i)
+		{
+			OptionConstraint constraint = this.constraints[i];
+			triggers[i] = constraint.getTrigger() == null ? -1 : getIndex(constraint.getTrigger());
+
+			int first = Integer.MAX_VALUE, last = 0;
+			for(CommandLineOption option : constraint.getOptions())
+			{
+				int index = getIndex(option);
+				first = Math.min(first, index >>> 6);
+				last = Math.max(last, index >>> 6);
+			}
+
+			long[] mask = new long[last - first + 1];
+			for(CommandLineOption option : constraint.getOptions())
+			{
+				int index = getIndex(option);
+				mask[(index >>> 6) - first] |= 1L << index;
+			}
+			firstWords[i] = first;
+			masks[i] = mask;
+		}
+
+		words = (options.size() + 63) >>> 6;
+	}
+
+	/**
+	 * Compiles the constraints applying to a set of options.
+	 * Options marked as required are compiled into constraints preceding the other constraints.
+	 * @param options     the options available on the command line.
+	 * @param constraints the constraints applying to the command line.
+	 * @return the compiled constraints, or {@code null} if there are no constraints.
+	 * @see CommandLineOption#setRequired(boolean)
+	 */
+	static OptionConstraints compile(Collection<CommandLineOption> options, List<OptionConstraint> constraints)
+	{
+		ArrayList<OptionConstraint> retval = new ArrayList<>();
+		for(CommandLineOption option : options)
+			if(option.isRequired())
+				retval.add(OptionConstraint.required(option));
+		retval.addAll(constraints);
+
+		return retval.isEmpty() ? null : new OptionConstraints(retval);
+	}
+
+	/**
+	 * Gets the index of an option, assigning a new index if the option has none.
+	 * @param option the option.
+	 * @return the index of the option.
+	 */
+	private int getIndex(CommandLineOption option)
+	{
+		Integer retval = indices.get(option);
+		if(retval == null)
+		{
+			retval = options.size();
+			indices.put(option, retval);
+			options.add(option);
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Records that an option is present on the command line.
+	 * Options not referred to by any constraint are ignored.
+	 * @param seen   the bitset of options present, or {@code null} if no option has been recorded yet.
+	 * @param option the option.
+	 * @return the updated bitset.
+	 */
+	long[] mark(long[] seen, CommandLineOption option)
+	{
+		Integer index = indices.get(option);
+		if(index == null)
+			return seen;
+
+		long[] retval = seen != null ? seen : new long[words];
+		retval[index >>> 6] |= 1L << index;
+		return retval;
+	}
+
+	/**
+	 * Checks all constraints against the options present on a command line.
+	 * @param seen the bitset of options present, or {@code null} if no option was present.
+	 * @throws ConstraintViolationException if any constraint is violated, describing every violation.
+	 */
+	void check(long[] seen) throws ConstraintViolationException
+	{
+		ArrayList<String> violations = null;
+		for(int i = 0; i < constraints.length; ++i)
+		{
+			final int trigger = triggers[i];
+			if(trigger >= 0 && (seen == null || (seen[trigger >>> 6] & (1L << trigger)) == 0))
+				continue;
+
+			int count = 0;
+			if(seen != null)
+			{
+				final long[] mask = masks[i];
+				final int first = firstWords[i];
+				for(int word = 0; word < mask.length; ++word)
+					count += Long.bitCount(seen[first + word] & mask[word]);
+			}
+
+			final OptionConstraint constraint = constraints[i];
+			if(count < constraint.getMinimum() || count > constraint.getMaximum())
+			{
+				if(violations == null)
+					violations = new ArrayList<>();
+				violations.add(constraint.describeViolation(getPresent(constraint, seen)));
+			}
+		}
+
+		if(violations != null)
+			throw new ConstraintViolationException(violations);
+	}
+
+	/**
+	 * Gets the options of a constraint that are present on the command line.
+	 * @param constraint the constraint.
+	 * @param seen       the bitset of options present, or {@code null} if no option was present.
+	 * @return the options of the constraint present on the command line.
+	 */
+	private List<CommandLineOption> getPresent(OptionConstraint constraint, long[] seen)
+	{
+		ArrayList<CommandLineOption> retval = new ArrayList<>();
+		for(CommandLineOption option : constraint.getOptions())
+		{
+			int index = indices.get(option);
+			if(seen != null && (seen[index >>> 6] & (1L << index)) != 0)
+				retval.add(option);
+		}
+		return retval;
+	}
+}
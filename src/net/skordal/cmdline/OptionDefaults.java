@@ -0,0 +1,132 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Default values for the options of a single command line, taken from environment variables and a configuration
+ * file. Options found on the command line are recorded while it is parsed, and when the whole command line has
+ * been parsed, the options of the command that were not found are looked up in the environment and then in the
+ * configuration file. Values found are reported to the scanner listener in the same way as options on the
+ * command line.
+ * @see CommandLineParser#setEnvironmentPrefix(String)
+ * @see CommandLineParser#setConfigFile(java.nio.file.Path)
+ */
+final class OptionDefaults
+{
+	private final String prefix;
+	private final Map<String, String> environment;
+	private final ConfigFile config;
+	private final CommandLineOption helpOption;
+	private final Set<CommandLineOption> found = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * Creates a new set of defaults.
+	 * @param prefix      the prefix of the environment variables, or {@code null} to ignore the environment.
+	 * @param environment the environment variables.
+	 * @param config      the configuration file, or {@code null} if there is no configuration file.
+	 * @param helpOption  the help option, which is never taken from the defaults.
+	 */
+	OptionDefaults(String prefix, Map<String, String> environment, ConfigFile config, CommandLineOption helpOption)
+	{
+		this.prefix = prefix;
+		this.environment = environment;
+		this.config = config;
+		this.helpOption = helpOption;
+	}
+
+	/**
+	 * Gets the name of the environment variable providing the default value for an option.
+	 * The name is the prefix followed by the long option name in upper case, with dashes replaced by underscores.
+	 * @param prefix the prefix of the environment variables.
+	 * @param option the option.
+	 * @return the name of the environment variable, or {@code null} if the option has no long option name.
+	 */
+	static String getVariableName(String prefix, CommandLineOption option)
+	{
+		String longOption = option.getLongOption();
+		return longOption == null ? null : prefix + longOption.toUpperCase(Locale.ROOT).replace('-', '_');
+	}
+
+	/**
+	 * Records that an option was found on the command line.
+	 * @param option the option.
+	 */
+	void found(CommandLineOption option)
+	{
+		found.add(option);
+	}
+
+	/**
+	 * Reports the default values of the options not found on the command line.
+	 * Options that do not take an argument are present if their value is {@code true}, {@code yes}, {@code on}
+	 * or {@code 1}, and absent if it is {@code false}, {@code no}, {@code off}, {@code 0} or empty.
+	 * @param scanner  the scanner that parsed the command line.
+	 * @param listener the listener to report the options to.
+	 * @throws CommandLineException if a default value is invalid or is rejected by the listener.
+	 */
+	void apply(ArgumentScanner scanner, ArgumentScanner.Listener listener) throws CommandLineException
+	{
+		final CommandLineCommand command = scanner.getCommand();
+		final List<CommandLineOption> scope = scanner.getScopeOptions();
+		final HashSet<String> names = new HashSet<>();
+
+		for(CommandLineOption option : scope)
+		{
+			final String longOption = option.getLongOption();
+
+			// Options shadowed by an inherited option with the same name are never looked up:
+			if(longOption == null || !names.add(longOption) || option == helpOption || found.contains(option))
+				continue;
+
+			String source = null, value = null;
+			if(prefix != null)
+			{
+				source = getVariableName(prefix, option);
+				value = environment.get(source);
+			}
+			if(value == null && config != null)
+			{
+				source = config.getPath() + ": " + longOption;
+				value = config.get(command.getPath(), longOption);
+			}
+			if(value == null)
+				continue;
+
+			if(option.argumentRequired())
+			{
+				if(value.isEmpty())
+					throw new ArgumentMissingException(source);
+				scanner.supply(option, value, listener);
+			} else if(option.argumentOptional())
+				scanner.supply(option, value.isEmpty() ? null : value, listener);
+			else {
+				switch(value.toLowerCase(Locale.ROOT))
+				{
+					case "true":
+					case "yes":
+					case "on":
+					case "1":
+						scanner.supply(option, null, listener);
+						break;
+					case "false":
+					case "no":
+					case "off":
+					case "0":
+					case "":
+						break;
+					default:
+						throw new InvalidArgumentException(value, option);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,441 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lookup table for command line options.
+ * Short options in the ASCII range are stored in an array indexed by the option character, other short options
+ * are stored in a sorted array searched using binary search. Long options are stored in an open addressing hash
+ * table, which is looked up directly using a region of the command line token, so that no substring has to be
+ * created for the option name. Tables are immutable once constructed.
+ * <p>
+ * Abbreviated long options are resolved using a trie of the long option names, which is built the first time
+ * an abbreviation is looked up. The children of the root are indexed by character like the short options, the
+ * children of other nodes are stored in sorted arrays. Each node records the range of option names starting with
+ * its prefix in the sorted list of names, so resolving an abbreviation takes time proportional to its length
+ * regardless of the number of options.
+ * <p>
+ * Suggestions for misspelled long options are found using a {@link SuggestionIndex}, which is also built the
+ * first time it is needed.
+ */
+final class OptionTable
+{
+	/** Number of entries in the directly indexed short option array. */
+	private static final int SHORT_TABLE_SIZE = 128;
+
+	private final CommandLineOption[] shortOptions = new CommandLineOption[SHORT_TABLE_SIZE];
+	private final char[] extendedShortKeys;
+	private final CommandLineOption[] extendedShortOptions;
+
+	private final int[] longHashes;
+	private final String[] longNames;
+	private final CommandLineOption[] longOptions;
+	private final int longMask;
+
+	private volatile PrefixTrie prefixes = null;
+	private volatile SuggestionIndex suggestions = null;
+
+	/**
+	 * Trie of long option names, used to resolve abbreviations.
+	 */
+	private static final class PrefixTrie
+	{
+		private static final char[] NO_KEYS = new char[0];
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		private final Node[] roots = new Node[SHORT_TABLE_SIZE];
+		private final Node extendedRoot = new Node();
+		private final String[] names;
+		private final CommandLineOption[] options;
+
+		/**
+		 * Node in the trie, corresponding to a prefix of one or more option names.
+		 */
+		private static final class Node
+		{
+			char[] keys = NO_KEYS;
+			Node[] children = NO_CHILDREN;
+			int count = 0;
+			int first = -1, last = -1;
+
+			/**
+			 * Gets the child of the node corresponding to a character.
+			 * @param c the character.
+			 * @return the child node, or {@code null} if no option name continues with the character.
+			 */
+			Node getChild(char c)
+			{
+				int index = Arrays.binarySearch(keys, 0, count, c);
+				return index < 0 ? null : children[index];
+			}
+
+			/**
+			 * Gets the last child of the node, adding a new child if it does not correspond to a character.
+			 * Names are inserted in sorted order, so new children are always added after the existing ones.
+			 * @param c the character.
+			 * @return the child node.
+			 */
+			Node getOrAddChild(char c)
+			{
+				if(count > 0 && keys[count - 1] == c)
+					return children[count - 1];
+
+				if(count == keys.length)
+				{
+					keys = Arrays.copyOf(keys, Math.max(count * 2, 2));
+					children = Arrays.copyOf(children, keys.length);
+				}
+				keys[count] = c;
+				return children[count++] = new Node();
+			}
+		}
+
+		/**
+		 * Builds a trie from the options in a long option hash table.
+		 * @param slots the options in each slot of the hash table, or {@code null} for empty slots.
+		 */
+		PrefixTrie(CommandLineOption[] slots)
+		{
+			ArrayList<CommandLineOption> named = new ArrayList<>();
+			for(CommandLineOption option : slots)
+				if(option != null)
+					named.add(option);
+			named.sort((a, b) -> a.getLongOption().compareTo(b.getLongOption()));
+
+			options = named.toArray(new CommandLineOption[0]);
+			names = new String[options.length];
+			for(int i = 0; i < options.length; ++i)
+			{
+				String name = options[i].getLongOption();
+				names[i] = name;
+				if(name.isEmpty())
+					continue;
+
+				char c = name.charAt(0);
+				Node node;
+				if(c < SHORT_TABLE_SIZE)
+				{
+					if(roots[c] == null)
+						roots[c] = new Node();
+					node = roots[c];
+				} else
+					node = extendedRoot.getOrAddChild(c);
+				insert(node, name, i);
+			}
+		}
+
+		/**
+		 * Inserts the remainder of an option name below the node for its first character.
+		 * @param node  the node corresponding to the first character of the name.
+		 * @param name  the option name.
+		 * @param index the index of the name in the sorted list of names.
+		 */
+		private static void insert(Node node, String name, int index)
+		{
+			for(int i = 1; ; ++i)
+			{
+				if(node.first < 0)
+					node.first = index;
+				node.last = index;
+
+				if(i == name.length())
+					break;
+				node = node.getOrAddChild(name.charAt(i));
+			}
+		}
+
+		/**
+		 * Finds the node corresponding to a prefix.
+		 * @param token the string containing the prefix.
+		 * @param start the start of the prefix in the string, inclusive.
+		 * @return the node for the prefix, or {@code null} if no option name starts with the prefix.
+		 */
+		Node find(String token, int start)
+		{
+			char c = token.charAt(start);
+			Node node = c < SHORT_TABLE_SIZE ? roots[c] : extendedRoot.getChild(c);
+			for(int i = start + 1; node != null && i < token.length(); ++i)
+				node = node.getChild(token.charAt(i));
+			return node;
+		}
+	}
+
+	/**
+	 * Creates a new option table.
+	 * If several options share a short or long option, the option appearing first takes precedence.
+	 * @param optionSets the sets of options to add to the table, in order of precedence.
+	 */
+	@SafeVarargs OptionTable(Iterable<CommandLineOption>... optionSets)
+	{
+		ArrayList<CommandLineOption> extended = new ArrayList<>();
+		ArrayList<CommandLineOption> named = new ArrayList<>();
+
+		for(Iterable<CommandLineOption> options : optionSets)
+		{
+			for(CommandLineOption option : options)
+			{
+				addShortOption(option, extended);
+				if(option.getLongOption() != null)
+					named.add(option);
+			}
+		}
+
+		extendedShortOptions = compileExtendedShortOptions(extended);
+		extendedShortKeys = getShortOptionKeys(extendedShortOptions);
+
+		// Long options, using a load factor of at most 0.5:
+		int capacity = Integer.highestOneBit(Math.max(named.size(), 1) * 2 - 1) << 1;
+		longHashes = new int[capacity];
+		longNames = new String[capacity];
+		longOptions = new CommandLineOption[capacity];
+		longMask = capacity - 1;
+
+		for(CommandLineOption option : named)
+		{
+			String name = option.getLongOption();
+			int hash = hash(name, 0, name.length());
+			if(findLongOption(name, 0, name.length(), hash) < 0)
+			{
+				int slot = hash & longMask;
+				while(longNames[slot] != null)
+					slot = (slot + 1) & longMask;
+
+				longHashes[slot] = hash;
+				longNames[slot] = name;
+				longOptions[slot] = option;
+			}
+		}
+	}
+
+	/**
+	 * Restores an option table from a precomputed long option hash table.
+	 * This is used when loading a parser specification, which contains the layout of the hash table so that the
+	 * option names do not have to be hashed and inserted again.
+	 * @param options     the options in the table, in order of precedence.
+	 * @param longOptions the option in each slot of the long option hash table, or {@code null} for empty slots.
+	 *                    The length of the array must be a power of two.
+	 * @param longHashes  the hash of the long option in each slot.
+	 */
+	OptionTable(Iterable<CommandLineOption> options, CommandLineOption[] longOptions, int[] longHashes)
+	{
+		ArrayList<CommandLineOption> extended = new ArrayList<>();
+		for(CommandLineOption option : options)
+			addShortOption(option, extended);
+		extendedShortOptions = compileExtendedShortOptions(extended);
+		extendedShortKeys = getShortOptionKeys(extendedShortOptions);
+
+		this.longOptions = longOptions;
+		this.longHashes = longHashes;
+		longMask = longOptions.length - 1;
+		longNames = new String[longOptions.length];
+		for(int slot = 0; slot < longOptions.length; ++slot)
+			if(longOptions[slot] != null)
+				longNames[slot] = longOptions[slot].getLongOption();
+	}
+
+	/**
+	 * Adds an option to the directly indexed short option array, or to a list of extended short options.
+	 * Options without a short option are ignored.
+	 * @param option   the option to add.
+	 * @param extended the list of extended short options.
+	 */
+	private void addShortOption(CommandLineOption option, ArrayList<CommandLineOption> extended)
+	{
+		if(option.hasShortOption())
+		{
+			char c = option.getShortOptionChar();
+			if(c < SHORT_TABLE_SIZE)
+			{
+				if(shortOptions[c] == null)
+					shortOptions[c] = option;
+			} else
+				extended.add(option);
+		}
+	}
+
+	/**
+	 * Sorts extended short options by character, keeping the first option for each character.
+	 * @param extended the extended short options, in order of precedence.
+	 * @return the sorted options.
+	 */
+	private static CommandLineOption[] compileExtendedShortOptions(ArrayList<CommandLineOption> extended)
+	{
+		extended.sort((a, b) -> Character.compare(a.getShortOptionChar(), b.getShortOptionChar()));
+		CommandLineOption[] values = new CommandLineOption[extended.size()];
+		int count = 0;
+		for(CommandLineOption option : extended)
+		{
+			if(count == 0 || values[count - 1].getShortOptionChar() != option.getShortOptionChar())
+				values[count++] = option;
+		}
+
+		return Arrays.copyOf(values, count);
+	}
+
+	/**
+	 * Gets the short option characters of a list of options.
+	 * @param options the options.
+	 * @return the short option character of each option.
+	 */
+	private static char[] getShortOptionKeys(CommandLineOption[] options)
+	{
+		char[] retval = new char[options.length];
+		for(int i = 0; i < options.length; ++i)
+			retval[i] = options[i].getShortOptionChar();
+		return retval;
+	}
+
+	/**
+	 * Gets the number of slots in the long option hash table.
+	 * @return the number of slots, which is a power of two.
+	 */
+	int getLongCapacity()
+	{
+		return longOptions.length;
+	}
+
+	/**
+	 * Gets the option stored in a slot of the long option hash table.
+	 * @param slot the slot.
+	 * @return the option in the slot, or {@code null} if the slot is empty.
+	 */
+	CommandLineOption getLongSlot(int slot)
+	{
+		return longOptions[slot];
+	}
+
+	/**
+	 * Gets the hash of the option stored in a slot of the long option hash table.
+	 * @param slot the slot.
+	 * @return the hash of the option name in the slot.
+	 */
+	int getLongSlotHash(int slot)
+	{
+		return longHashes[slot];
+	}
+
+	/**
+	 * Calculates the hash of a region of a string.
+	 * @param string the string.
+	 * @param start  the start of the region, inclusive.
+	 * @param end    the end of the region, exclusive.
+	 * @return the hash of the region.
+	 */
+	private static int hash(String string, int start, int end)
+	{
+		int hash = 0;
+		for(int i = start; i < end; ++i)
+			hash = 31 * hash + string.charAt(i);
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Finds the slot containing a long option.
+	 * @param token the string containing the option name.
+	 * @param start the start of the option name in the string, inclusive.
+	 * @param end   the end of the option name in the string, exclusive.
+	 * @param hash  the hash of the option name.
+	 * @return the slot containing the option, or -1 if the option is not in the table.
+	 */
+	private int findLongOption(String token, int start, int end, int hash)
+	{
+		final int length = end - start;
+		for(int slot = hash & longMask; longNames[slot] != null; slot = (slot + 1) & longMask)
+		{
+			if(longHashes[slot] == hash && longNames[slot].length() == length
+					&& token.regionMatches(start, longNames[slot], 0, length))
+				return slot;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Looks up a short option.
+	 * @param option the option character.
+	 * @return the option corresponding to the character or {@code null} if no such option exists.
+	 */
+	CommandLineOption getShortOption(char option)
+	{
+		if(option < SHORT_TABLE_SIZE)
+			return shortOptions[option];
+
+		int index = Arrays.binarySearch(extendedShortKeys, option);
+		return index < 0 ? null : extendedShortOptions[index];
+	}
+
+	/**
+	 * Looks up a long option.
+	 * @param option the name of the option, without the leading dashes.
+	 * @return the option corresponding to the name or {@code null} if no such option exists.
+	 */
+	CommandLineOption getLongOption(String option)
+	{
+		return getLongOption(option, 0);
+	}
+
+	/**
+	 * Looks up a long option using the end of a command line token as the option name.
+	 * @param token the command line token.
+	 * @param start the index of the first character of the option name in the token.
+	 * @return the option corresponding to the name or {@code null} if no such option exists.
+	 */
+	CommandLineOption getLongOption(String token, int start)
+	{
+		int slot = findLongOption(token, start, token.length(), hash(token, start, token.length()));
+		return slot < 0 ? null : longOptions[slot];
+	}
+
+	/**
+	 * Resolves an abbreviated long option using the end of a command line token as the abbreviation.
+	 * An abbreviation resolves to an option if it is a prefix of the name of that option only. Exact option names
+	 * are resolved by {@link #getLongOption(String, int)}, which should be tried first.
+	 * @param token the command line token.
+	 * @param start the index of the first character of the abbreviation in the token.
+	 * @return the option whose name starts with the abbreviation or {@code null} if no such option exists.
+	 * @throws AmbiguousOptionException if the abbreviation is a prefix of the names of several options.
+	 */
+	CommandLineOption getLongOptionPrefix(String token, int start) throws AmbiguousOptionException
+	{
+		if(start >= token.length())
+			return null;
+
+		PrefixTrie trie = prefixes;
+		if(trie == null)
+			prefixes = trie = new PrefixTrie(longOptions);
+
+		PrefixTrie.Node node = trie.find(token, start);
+		if(node == null)
+			return null;
+		if(node.first == node.last)
+			return trie.options[node.first];
+
+		List<String> candidates = Arrays.asList(Arrays.copyOfRange(trie.names, node.first, node.last + 1));
+		throw new AmbiguousOptionException(token.substring(start), candidates);
+	}
+
+	/**
+	 * Finds the long options with names similar to a misspelled option name.
+	 * @param option the misspelled option name, without the leading dashes.
+	 * @return the names of the closest options, without the leading dashes, closest first.
+	 */
+	List<String> suggestLongOptions(String option)
+	{
+		SuggestionIndex index = suggestions;
+		if(index == null)
+		{
+			ArrayList<String> names = new ArrayList<>();
+			for(String name : longNames)
+				if(name != null)
+					names.add(name);
+			suggestions = index = new SuggestionIndex(names);
+		}
+
+		return index.suggest(option);
+	}
+}
@@ -0,0 +1,224 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+/**
+ * Measurements of a single parse.
+ * An instance is only created when a metrics listener is set or one of the parser events is enabled in a
+ * Flight Recorder recording, so parsing without instrumentation costs a single check per command line. The object is
+ * confined to the thread doing the parse.
+ */
+final class ParseInstrumentation
+{
+	/** Events used to check whether the parser events are enabled, without allocating for every parse. */
+	private static final CommandLineEvents.Parse PARSE_EVENT = new CommandLineEvents.Parse();
+	private static final CommandLineEvents.OptionValidation VALIDATION_EVENT = new CommandLineEvents.OptionValidation();
+	private static final CommandLineEvents.OptionHandler HANDLER_EVENT = new CommandLineEvents.OptionHandler();
+	private static final CommandLineEvents.ProcessCommand COMMAND_EVENT = new CommandLineEvents.ProcessCommand();
+
+	private final CommandLineMetricsListener listener;
+	private final CommandLineEvents.Parse event;
+	private final long start;
+
+	private long tokenizeTime, lookupTime, validationTime, handlerTime, commandTime;
+	private int options;
+
+	private CommandLineEvents.ProcessCommand commandEvent;
+	private long commandStart;
+
+	/**
+	 * Creates a new ParseInstrumentation object.
+	 * @param listener the metrics listener, or {@code null} if none.
+	 * @param event    the parse event.
+	 */
+	private ParseInstrumentation(CommandLineMetricsListener listener, CommandLineEvents.Parse event)
+	{
+		this.listener = listener;
+		this.event = event;
+		this.start = System.nanoTime();
+		event.begin();
+	}
+
+	/**
+	 * Starts instrumenting a parse, if instrumentation is enabled.
+	 * @param listener the metrics listener of the parser, or {@code null} if none is set.
+	 * @return the instrumentation for the parse, or {@code null} if instrumentation is disabled.
+	 */
+	static ParseInstrumentation start(CommandLineMetricsListener listener)
+	{
+		if(listener == null && !PARSE_EVENT.isEnabled() && !VALIDATION_EVENT.isEnabled()
+				&& !HANDLER_EVENT.isEnabled() && !COMMAND_EVENT.isEnabled())
+			return null;
+		return new ParseInstrumentation(listener, new CommandLineEvents.Parse());
+	}
+
+	/**
+	 * Gets a name identifying an option in events.
+	 * @param option the option.
+	 * @return the long option, or the short option if the option has no long option.
+	 */
+	static String getName(CommandLineOption option)
+	{
+		return option.getLongOption() != null ? "--" + option.getLongOption() : "-" + option.getShortOption();
+	}
+
+	/**
+	 * Records time spent reading tokens.
+	 * @param start the value of {@link System#nanoTime()} when reading started.
+	 */
+	void tokenized(long start)
+	{
+		tokenizeTime += System.nanoTime() - start;
+	}
+
+	/**
+	 * Records time spent looking up a command or an option.
+	 * @param start the value of {@link System#nanoTime()} when the lookup started.
+	 */
+	void lookedUp(long start)
+	{
+		lookupTime += System.nanoTime() - start;
+	}
+
+	/**
+	 * Validates the argument of an option.
+	 * @param option   the option.
+	 * @param argument the argument of the option.
+	 * @throws InvalidArgumentException thrown if the argument is invalid.
+	 * @see CommandLineOption#validate(String)
+	 */
+	void validate(CommandLineOption option, String argument) throws InvalidArgumentException
+	{
+		CommandLineEvents.OptionValidation optionEvent = new CommandLineEvents.OptionValidation();
+		optionEvent.begin();
+		long start = System.nanoTime();
+		boolean valid = false;
+		try {
+			option.validate(argument);
+			valid = true;
+		} finally {
+			validated(option, valid, System.nanoTime() - start);
+
+			optionEvent.end();
+			if(optionEvent.shouldCommit())
+			{
+				optionEvent.option = getName(option);
+				optionEvent.valid = valid;
+				optionEvent.commit();
+			}
+		}
+	}
+
+	/**
+	 * Records the validation of an option argument.
+	 * @param option   the option.
+	 * @param valid    whether the argument was valid.
+	 * @param duration the time spent validating the argument.
+	 */
+	void validated(CommandLineOption option, boolean valid, long duration)
+	{
+		validationTime += duration;
+		++options;
+		if(listener != null)
+			listener.optionValidated(option, valid, duration);
+	}
+
+	/**
+	 * Calls the handler of an option.
+	 * @param option   the option.
+	 * @param argument the validated argument of the option.
+	 * @see CommandLineOption#handleValidated(String)
+	 */
+	void handleValidated(CommandLineOption option, String argument)
+	{
+		CommandLineEvents.OptionHandler optionEvent = new CommandLineEvents.OptionHandler();
+		optionEvent.begin();
+		long start = System.nanoTime();
+		try {
+			option.handleValidated(argument);
+		} finally {
+			long duration = System.nanoTime() - start;
+			handlerTime += duration;
+			if(listener != null)
+				listener.optionHandled(option, duration);
+
+			optionEvent.end();
+			if(optionEvent.shouldCommit())
+			{
+				optionEvent.option = getName(option);
+				optionEvent.commit();
+			}
+		}
+	}
+
+	/**
+	 * Validates the argument of an option and calls its handler.
+	 * For typed options, the argument is converted once by the validation and once by the handler, so that
+	 * the time spent in each can be measured.
+	 * @param option   the option.
+	 * @param argument the argument of the option.
+	 * @throws InvalidArgumentException thrown if the argument is invalid.
+	 * @see CommandLineOption#handle(String)
+	 */
+	void handle(CommandLineOption option, String argument) throws InvalidArgumentException
+	{
+		validate(option, argument);
+		handleValidated(option, argument);
+	}
+
+	/**
+	 * Records the start of command processing.
+	 */
+	void beginCommand()
+	{
+		commandEvent = new CommandLineEvents.ProcessCommand();
+		commandEvent.begin();
+		commandStart = System.nanoTime();
+	}
+
+	/**
+	 * Records the end of command processing.
+	 * @param command the command that was processed.
+	 */
+	void endCommand(CommandLineCommand command)
+	{
+		commandTime = System.nanoTime() - commandStart;
+		if(listener != null)
+			listener.commandProcessed(command, commandTime);
+
+		commandEvent.end();
+		if(commandEvent.shouldCommit())
+		{
+			commandEvent.command = command.getCommand();
+			commandEvent.commit();
+		}
+	}
+
+	/**
+	 * Records the end of the parse.
+	 * @param application the name of the application.
+	 * @param command     the command found on the command line, or {@code null} if no command was found.
+	 * @param successful  whether the command line was parsed without errors.
+	 */
+	void finish(String application, CommandLineCommand command, boolean successful)
+	{
+		if(listener != null)
+			listener.commandLineParsed(command, successful, System.nanoTime() - start);
+
+		event.end();
+		if(event.shouldCommit())
+		{
+			event.application = application;
+			event.command = command != null ? command.getCommand() : null;
+			event.successful = successful;
+			event.options = options;
+			event.tokenizeTime = tokenizeTime;
+			event.lookupTime = lookupTime;
+			event.validationTime = validationTime;
+			event.handlerTime = handlerTime;
+			event.commandTime = commandTime;
+			event.commit();
+		}
+	}
+}
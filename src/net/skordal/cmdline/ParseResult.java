@@ -0,0 +1,156 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Immutable result of parsing a command line.
+ * A parse result contains the command, the options with their arguments in the order they were specified,
+ * and the input files found on the command line. Option arguments have been checked by the argument
+ * validators of their options, but no option handlers have been called.
+ * @see CommandLineParser#parseArguments(String[])
+ */
+public final class ParseResult
+{
+	private final CommandLineParser parser;
+	private final CommandLineCommand command;
+	private final List<OptionValue> options;
+	private final List<String> inputFiles;
+
+	/**
+	 * Class representing an option and its argument as specified on the command line.
+	 */
+	public static final class OptionValue
+	{
+		private final CommandLineOption option;
+		private final String argument;
+
+		OptionValue(CommandLineOption option, String argument)
+		{
+			this.option = option;
+			this.argument = argument;
+		}
+
+		/**
+		 * Gets the option.
+		 * @return the option.
+		 */
+		public CommandLineOption getOption()
+		{
+			return option;
+		}
+
+		/**
+		 * Gets the argument of the option.
+		 * @return the argument of the option or {@code null} if no argument was specified.
+		 */
+		public String getArgument()
+		{
+			return argument;
+		}
+	}
+
+	/**
+	 * Creates a new ParseResult object.
+	 * @param parser     the parser that produced the result.
+	 * @param command    the command found on the command line.
+	 * @param options    the options found on the command line.
+	 * @param inputFiles the input files found on the command line.
+	 */
+	ParseResult(CommandLineParser parser, CommandLineCommand command, ArrayList<OptionValue> options,
+			ArrayList<String> inputFiles)
+	{
+		this.parser = parser;
+		this.command = command;
+		this.options = Collections.unmodifiableList(options);
+		this.inputFiles = Collections.unmodifiableList(inputFiles);
+	}
+
+	/**
+	 * Gets the command specified on the command line.
+	 * @return the command specified on the command line, or {@code null} if help was requested without
+	 *         specifying a command.
+	 */
+	public CommandLineCommand getCommand()
+	{
+		return command;
+	}
+
+	/**
+	 * Gets the options specified on the command line.
+	 * @return an unmodifiable list of the options and their arguments, in the order they were specified.
+	 */
+	public List<OptionValue> getOptions()
+	{
+		return options;
+	}
+
+	/**
+	 * Gets the input files specified on the command line.
+	 * @return an unmodifiable list of the input files, in the order they were specified.
+	 */
+	public List<String> getInputFiles()
+	{
+		return inputFiles;
+	}
+
+	/**
+	 * Checks whether an option was specified on the command line.
+	 * @param option the option to check for.
+	 * @return {@code true} if the option was specified at least once.
+	 */
+	public boolean hasOption(CommandLineOption option)
+	{
+		for(OptionValue value : options)
+			if(value.option == option)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Gets the argument of an option.
+	 * If the option was specified several times, the argument of the last occurrence is returned.
+	 * @param option the option to get the argument of.
+	 * @return the argument of the option, or {@code null} if the option was not specified or had no argument.
+	 */
+	public String getArgument(CommandLineOption option)
+	{
+		for(int i = options.size() - 1; i >= 0; --i)
+			if(options.get(i).option == option)
+				return options.get(i).argument;
+		return null;
+	}
+
+	/**
+	 * Checks whether the help option was specified on the command line.
+	 * @return {@code true} if usage information was requested.
+	 */
+	public boolean isHelpRequested()
+	{
+		return hasOption(parser.getHelpOption());
+	}
+
+	/**
+	 * Dispatches the result.
+	 * This calls the handlers of the options in the order they were specified and then processes the command,
+	 * in the same way as {@link CommandLineParser#parse(String[])} does. If help was requested, usage
+	 * information is printed for the command, or for the application if no command was specified, and the
+	 * application exits instead.
+	 * @throws HelpRequestedException thrown if help was requested and the parser is configured not to exit.
+	 * @see CommandLineParser#setExitOnHelp(boolean)
+	 */
+	public void dispatch() throws HelpRequestedException
+	{
+		if(isHelpRequested())
+			parser.printHelp(command);
+
+		for(OptionValue value : options)
+			value.option.handleValidated(value.argument);
+		command.processCommand(new LinkedList<>(inputFiles));
+	}
+}
@@ -0,0 +1,137 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Support for creating startup snapshots of applications.
+ * When the {@code cmdline.train} system property names a file, the first call to
+ * {@link CommandLineParser#parse(String[])} performs a training run instead of parsing its arguments: each line of
+ * the file is a representative command line, which is parsed using {@link CommandLineParser#train(String[]...)},
+ * and the application then exits. Running the training with {@code -XX:ArchiveClassesAtExit} produces an AppCDS
+ * archive containing the classes used by the parser and the commands.
+ * <p>
+ * If the {@code cmdline.checkpoint} system property is {@code true}, a CRaC checkpoint is taken after the training
+ * run instead of exiting, using {@code jdk.crac.Core} or {@code org.crac.Core} if either is available. When the
+ * checkpoint is restored, the parser continues by parsing the command line given in the {@code cmdline.args}
+ * system property, which can be specified when restoring. Arguments in the property are separated by whitespace
+ * and may be quoted like in argument files.
+ */
+final class StartupSnapshot
+{
+	/** System property naming the file with the command lines to train on. */
+	static final String TRAINING_PROPERTY = "cmdline.train";
+	/** System property requesting a CRaC checkpoint after training. */
+	static final String CHECKPOINT_PROPERTY = "cmdline.checkpoint";
+	/** System property containing the command line to parse after restoring a checkpoint. */
+	static final String ARGUMENTS_PROPERTY = "cmdline.args";
+
+	private static final String[] CRAC_CLASSES = { "jdk.crac.Core", "org.crac.Core" };
+	private static final AtomicBoolean done = new AtomicBoolean(false);
+
+	private StartupSnapshot()
+	{
+	}
+
+	/**
+	 * Performs a training run if one has been requested.
+	 * This is called by the parser before parsing a command line, and only has an effect the first time it is
+	 * called in a process.
+	 * @param parser the parser.
+	 * @param args   the command line passed to the parser.
+	 * @return the command line to parse, which is different from {@code args} after restoring a checkpoint.
+	 */
+	static String[] prepare(CommandLineParser parser, String[] args)
+	{
+		if(!done.compareAndSet(false, true))
+			return args;
+
+		String training = System.getProperty(TRAINING_PROPERTY);
+		if(training == null)
+			return args;
+
+		try {
+			List<String> lines = Files.readAllLines(Paths.get(training), StandardCharsets.UTF_8);
+			ArrayList<String[]> commandLines = new ArrayList<>(lines.size());
+			for(String line : lines)
+			{
+				String[] commandLine = tokenize(line, training);
+				if(commandLine.length > 0)
+					commandLines.add(commandLine);
+			}
+
+			parser.train(commandLines.toArray(new String[0][]));
+		} catch(IOException | CommandLineException error) {
+			System.err.println("cannot read training command lines from " + training + ": " + error.getMessage());
+			System.exit(1);
+		}
+
+		if(!Boolean.getBoolean(CHECKPOINT_PROPERTY))
+			System.exit(0);
+
+		checkpoint();
+		String restored = System.getProperty(ARGUMENTS_PROPERTY);
+		try {
+			return restored != null ? tokenize(restored, ARGUMENTS_PROPERTY) : args;
+		} catch(CommandLineException error) {
+			System.err.println("invalid " + ARGUMENTS_PROPERTY + " property: " + error.getMessage());
+			System.exit(1);
+			return args;
+		}
+	}
+
+	/**
+	 * Takes a CRaC checkpoint and waits for it to be restored.
+	 * The application exits if checkpoints are not supported by the JVM.
+	 */
+	private static void checkpoint()
+	{
+		for(String name : CRAC_CLASSES)
+		{
+			try {
+				Class.forName(name).getMethod("checkpointRestore").invoke(null);
+				return;
+			} catch(ClassNotFoundException error) {
+				continue;
+			} catch(InvocationTargetException error) {
+				System.err.println("checkpoint failed: " + error.getCause());
+				System.exit(1);
+			} catch(ReflectiveOperationException error) {
+				continue;
+			}
+		}
+
+		System.err.println("checkpoints are not supported by this JVM");
+		System.exit(1);
+	}
+
+	/**
+	 * Splits a command line into arguments.
+	 * @param line the command line.
+	 * @param name name of the source of the command line, used in error messages.
+	 * @return the arguments.
+	 * @throws CommandLineException if the command line contains an unterminated quote.
+	 */
+	private static String[] tokenize(String line, String name) throws CommandLineException
+	{
+		ArrayList<String> retval = new ArrayList<>();
+		try(ArgumentTokenizer tokenizer = new ArgumentTokenizer(new StringReader(line), name))
+		{
+			String token;
+			while((token = tokenizer.next()) != null)
+				retval.add(token);
+		}
+
+		return retval.toArray(new String[0]);
+	}
+}
@@ -0,0 +1,74 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Class representing a command that receives its input files while the command line is being parsed.
+ * When {@link CommandLineParser#parse(String[])} recognizes a streaming command, it calls
+ * {@link #processCommand(Iterator)} right away. The rest of the command line is parsed as the command advances
+ * the iterator, so the command can start processing the first input files before the rest of the command line
+ * has been scanned, and the input files are never collected into a list.
+ * <p>
+ * Options following the command are handled when the iterator reaches them, that is, after the input files
+ * preceding them have been delivered. Parse errors are reported from the iterator by throwing an
+ * {@link UncheckedCommandLineException}, which is unwrapped and rethrown by the parser. If the command stops
+ * iterating before the end of the command line, the remaining elements are not parsed.
+ * <p>
+ * Default values of options not given on the command line are handled, and option constraints are checked, when
+ * the iterator reaches the end of the command line, so a violation is reported from the iterator after the last
+ * input file has been delivered. If the command stops iterating early, the defaults are not applied and the
+ * constraints are not checked.
+ */
+public abstract class StreamingCommandLineCommand extends CommandLineCommand
+{
+	/**
+	 * Constructs a new StreamingCommandLineCommand object.
+	 * @param command     Command string used on the command line.
+	 * @param description Description of the command used in help texts.
+	 */
+	public StreamingCommandLineCommand(String command, String description)
+	{
+		super(command, description);
+	}
+
+	/**
+	 * Processes this command.
+	 * This function is called as soon as the command has been recognized by the command line parser.
+	 * @param inputFiles an iterator over the input files provided on the command line, which parses the
+	 *                   command line as it is advanced.
+	 */
+	public abstract void processCommand(Iterator<String> inputFiles);
+
+	/**
+	 * Processes this command with a list of input files.
+	 * This is used when the input files have already been collected, for instance when dispatching a
+	 * {@link ParseResult}, and passes an iterator over the list to {@link #processCommand(Iterator)}.
+	 * @param inputFiles a list of all input files provided on the command line.
+	 */
+	@Override public final void processCommand(LinkedList<String> inputFiles)
+	{
+		processCommand(inputFiles.iterator());
+	}
+
+	/**
+	 * Converts an iterator over input files to a sequential stream of paths.
+	 * The stream is lazy, so the command line is parsed as the stream is consumed.
+	 * @param inputFiles the iterator passed to {@link #processCommand(Iterator)}.
+	 * @return a stream of the input files as paths.
+	 */
+	protected static Stream<Path> toPaths(Iterator<String> inputFiles)
+	{
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(inputFiles, Spliterator.ORDERED | Spliterator.NONNULL),
+				false).map(Paths::get);
+	}
+}
@@ -0,0 +1,274 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of command or option names used to suggest corrections for misspelled names.
+ * The names are stored in a BK-tree using the Levenshtein distance, where each child of a node is stored at the
+ * index corresponding to its distance from the node. Because the distance is a metric, a search for names within
+ * a distance {@code d} of a word only has to visit the children whose distance from a node differs from the
+ * distance between the node and the word by at most {@code d}, which for small distances is a small fraction of
+ * the tree. Since no children are visited if the distance to a node exceeds the largest distance of its children by
+ * more than {@code d}, the distance to each node is only calculated up to that limit, which lets the calculation
+ * stop early for the leaves making up most of the tree.
+ * <p>
+ * Distances are calculated using the bit-parallel algorithm of Myers, which processes one column of the distance
+ * matrix per machine word for words of up to 64 characters, so comparing a word with a name takes time
+ * proportional to the length of the name. Indexes are immutable once constructed.
+ */
+final class SuggestionIndex
+{
+	/** Maximum number of suggestions returned. */
+	private static final int MAX_SUGGESTIONS = 5;
+
+	/** Maximum length of words compared using the bit-parallel algorithm. */
+	private static final int MAX_PATTERN_LENGTH = Long.SIZE;
+
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private final Node root;
+
+	/**
+	 * Node in the BK-tree.
+	 */
+	private static final class Node
+	{
+		final String name;
+		Node[] children = NO_CHILDREN;
+
+		Node(String name)
+		{
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Word that other strings are compared with.
+	 * This contains the positions of each character in the word as bit vectors, which are used by the
+	 * bit-parallel distance calculation.
+	 */
+	private static final class Pattern
+	{
+		private final String word;
+		private final long[] positions = new long[128];
+		private int[] row, previous;
+
+		/**
+		 * Creates a new pattern.
+		 * @param word the word.
+		 */
+		Pattern(String word)
+		{
+			this.word = word;
+			if(word.length() <= MAX_PATTERN_LENGTH)
+			{
+				for(int i = 0; i < word.length(); ++i)
+					if(word.charAt(i) < positions.length)
+						positions[word.charAt(i)] |= 1L << i;
+			} else {
+				row = new int[word.length() + 1];
+				previous = new int[word.length() + 1];
+			}
+		}
+
+		/**
+		 * Gets the positions of a character in the word.
+		 * @param c the character.
+		 * @return a bit vector with the bits corresponding to the positions of the character set.
+		 */
+		private long getPositions(char c)
+		{
+			if(c < positions.length)
+				return positions[c];
+
+			long retval = 0;
+			for(int i = 0; i < word.length(); ++i)
+				if(word.charAt(i) == c)
+					retval |= 1L << i;
+			return retval;
+		}
+
+		/**
+		 * Calculates the Levenshtein distance between the word and a string, up to a limit.
+		 * @param text  the string to compare the word with.
+		 * @param limit the largest distance of interest.
+		 * @return the minimum number of insertions, deletions and substitutions turning the string into the word,
+		 *         or {@code limit + 1} if it is larger than the limit.
+		 */
+		int distance(String text, int limit)
+		{
+			final int length = word.length(), remaining = text.length();
+			if(Math.abs(length - remaining) > limit)
+				return limit + 1;
+			if(length == 0)
+				return remaining;
+			if(row != null)
+				return dynamicDistance(text, limit);
+
+			// Vertical and horizontal differences between adjacent cells in the distance matrix are encoded as
+			// bit vectors of positive and negative differences, and the last row is tracked in the score:
+			final long last = 1L << (length - 1);
+			long positive = -1L, negative = 0;
+			int score = length;
+			for(int j = 0; j < remaining; ++j)
+			{
+				long equal = getPositions(text.charAt(j));
+				long vertical = equal | negative;
+				long horizontal = (((equal & positive) + positive) ^ positive) | equal;
+				long positiveHorizontal = negative | ~(horizontal | positive);
+				long negativeHorizontal = positive & horizontal;
+
+				if((positiveHorizontal & last) != 0)
+					++score;
+				else if((negativeHorizontal & last) != 0)
+					--score;
+
+				// The score can decrease by at most one for each remaining character:
+				if(score - (remaining - j - 1) > limit)
+					return limit + 1;
+
+				positiveHorizontal = (positiveHorizontal << 1) | 1;
+				negativeHorizontal <<= 1;
+				positive = negativeHorizontal | ~(vertical | positiveHorizontal);
+				negative = positiveHorizontal & vertical;
+			}
+
+			return Math.min(score, limit + 1);
+		}
+
+		/**
+		 * Calculates the Levenshtein distance between the word and a string using dynamic programming.
+		 * This is used for words too long for the bit-parallel algorithm.
+		 * @param text  the string to compare the word with.
+		 * @param limit the largest distance of interest.
+		 * @return the distance, or {@code limit + 1} if it is larger than the limit.
+		 */
+		private int dynamicDistance(String text, int limit)
+		{
+			for(int j = 0; j <= word.length(); ++j)
+				previous[j] = j;
+
+			for(int i = 1; i <= text.length(); ++i)
+			{
+				row[0] = i;
+				int minimum = i;
+				char c = text.charAt(i - 1);
+				for(int j = 1; j <= word.length(); ++j)
+				{
+					int substitution = previous[j - 1] + (c == word.charAt(j - 1) ? 0 : 1);
+					row[j] = Math.min(substitution, Math.min(previous[j], row[j - 1]) + 1);
+					minimum = Math.min(minimum, row[j]);
+				}
+
+				// Distances never decrease from one row to the next, so the limit cannot be reached any more:
+				if(minimum > limit)
+					return limit + 1;
+
+				int[] swap = previous;
+				previous = row;
+				row = swap;
+			}
+
+			return Math.min(previous[word.length()], limit + 1);
+		}
+	}
+
+	/**
+	 * Creates a new suggestion index.
+	 * Duplicate and empty names are ignored.
+	 * @param names the names to index.
+	 */
+	SuggestionIndex(Iterable<String> names)
+	{
+		Node tree = null;
+		for(String name : names)
+		{
+			if(name == null || name.isEmpty())
+				continue;
+			if(tree == null)
+			{
+				tree = new Node(name);
+				continue;
+			}
+
+			Pattern pattern = new Pattern(name);
+			Node node = tree;
+			while(true)
+			{
+				int distance = pattern.distance(node.name, Integer.MAX_VALUE - 1);
+				if(distance == 0)
+					break;
+				if(distance >= node.children.length)
+					node.children = Arrays.copyOf(node.children, distance + 1);
+				if(node.children[distance] == null)
+				{
+					node.children[distance] = new Node(name);
+					break;
+				}
+				node = node.children[distance];
+			}
+		}
+
+		root = tree;
+	}
+
+	/**
+	 * Gets the maximum distance at which names are suggested for a word.
+	 * Short words allow fewer edits, so that suggestions still resemble the word.
+	 * @param word the misspelled word.
+	 * @return the maximum number of edits.
+	 */
+	private static int getMaxDistance(String word)
+	{
+		return word.length() <= 3 ? 1 : 2;
+	}
+
+	/**
+	 * Finds the names closest to a misspelled word.
+	 * @param word the misspelled word.
+	 * @return the names within the maximum distance of the word, closest first and at most
+	 *         {@value #MAX_SUGGESTIONS} of them, or an empty list if no name is close enough.
+	 */
+	List<String> suggest(String word)
+	{
+		if(root == null || word.isEmpty())
+			return Collections.emptyList();
+
+		final int maxDistance = getMaxDistance(word);
+		final Pattern pattern = new Pattern(word);
+		final ArrayList<ArrayList<String>> matches = new ArrayList<>();
+		for(int i = 0; i <= maxDistance; ++i)
+			matches.add(new ArrayList<>());
+
+		ArrayDeque<Node> pending = new ArrayDeque<>();
+		pending.push(root);
+		while(!pending.isEmpty())
+		{
+			Node node = pending.pop();
+			int distance = pattern.distance(node.name, Math.max(node.children.length - 1, 0) + maxDistance);
+			if(distance <= maxDistance)
+				matches.get(distance).add(node.name);
+
+			int last = Math.min(distance + maxDistance, node.children.length - 1);
+			for(int i = Math.max(distance - maxDistance, 1); i <= last; ++i)
+				if(node.children[i] != null)
+					pending.push(node.children[i]);
+		}
+
+		ArrayList<String> retval = new ArrayList<>();
+		for(ArrayList<String> names : matches)
+		{
+			Collections.sort(names);
+			for(int i = 0; i < names.size() && retval.size() < MAX_SUGGESTIONS; ++i)
+				retval.add(names.get(i));
+		}
+		return retval;
+	}
+}
@@ -0,0 +1,42 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+/**
+ * Source of command line tokens.
+ */
+interface TokenSource extends AutoCloseable
+{
+	/**
+	 * Reads the next token.
+	 * @return the next token, or {@code null} if there are no more tokens.
+	 * @throws CommandLineException if the token cannot be read.
+	 */
+	String next() throws CommandLineException;
+
+	/**
+	 * Releases any resources held by the token source.
+	 */
+	@Override default void close()
+	{
+	}
+
+	/**
+	 * Creates a token source reading tokens from an array.
+	 * @param tokens the array of tokens.
+	 * @return a token source returning the elements of the array.
+	 */
+	static TokenSource of(String[] tokens)
+	{
+		return new TokenSource()
+			{
+				private int index = 0;
+
+				@Override public String next()
+				{
+					return index < tokens.length ? tokens[index++] : null;
+				}
+			};
+	}
+}
@@ -0,0 +1,439 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Base class for command line options converting their arguments to typed values.
+ * The argument is converted once when the option is handled, and the conversion doubles as validation of the
+ * argument, so typed options do not need a separate argument validator. An argument validator set using
+ * {@link #setArgumentValidator(CommandLineArgumentValidator)} is still called before the conversion, and a
+ * handler set using {@link #setHandler(CommandLineOptionHandler)} is called after the typed handler.
+ * @see CommandLineOption#createIntOption
+ */
+abstract class TypedCommandLineOption extends CommandLineOption
+{
+	/**
+	 * Creates a new typed command line option object.
+	 * @param shortOption      Short option character, or {@code null} if there is no short option.
+	 * @param longOption       Long option string, or {@code null} if there is no long option.
+	 * @param argumentRequired Whether this option takes an argument or an optional argument.
+	 * @param description      Description of the option, which is used when printing the option summary.
+	 */
+	TypedCommandLineOption(Character shortOption, String longOption, int argumentRequired, String description)
+	{
+		super(shortOption, longOption, argumentRequired, description, null);
+	}
+
+	/**
+	 * Converts and handles an argument.
+	 * @param argument the argument of the option.
+	 * @return {@code true} if the argument was valid and has been handled, {@code false} if it is invalid.
+	 */
+	abstract boolean handleValue(String argument);
+
+	/**
+	 * Checks whether an argument can be converted by this option.
+	 * @param argument the argument of the option.
+	 * @return {@code true} if the argument is valid.
+	 */
+	abstract boolean isValid(String argument);
+
+	@Override void handle(String argument) throws InvalidArgumentException
+	{
+		CommandLineArgumentValidator validator = getValidatorFor(argument);
+		if(validator != null && !validator.validateArgument(argument))
+			throw new InvalidArgumentException(argument, this);
+		if(!handleValue(argument))
+			throw new InvalidArgumentException(argument, this);
+		super.handleValidated(argument);
+	}
+
+	@Override void validateType(String argument) throws InvalidArgumentException
+	{
+		if(!isValid(argument))
+			throw new InvalidArgumentException(argument, this);
+	}
+
+	@Override void handleValidated(String argument)
+	{
+		handleValue(argument);
+		super.handleValidated(argument);
+	}
+
+	/**
+	 * Option taking an {@code int} argument.
+	 */
+	static final class IntOption extends TypedCommandLineOption
+	{
+		private final int minimum, maximum;
+		private final IntOptionHandler handler;
+
+		IntOption(Character shortOption, String longOption, String description, int minimum, int maximum,
+				IntOptionHandler handler)
+		{
+			super(shortOption, longOption, ARGUMENT_REQUIRED, description);
+			this.minimum = minimum;
+			this.maximum = maximum;
+			this.handler = handler;
+		}
+
+		@Override boolean isValid(String argument)
+		{
+			try {
+				int value = Integer.parseInt(argument);
+				return value >= minimum && value <= maximum;
+			} catch(NumberFormatException error) {
+				return false;
+			}
+		}
+
+		@Override boolean handleValue(String argument)
+		{
+			int value;
+			try {
+				value = Integer.parseInt(argument);
+			} catch(NumberFormatException error) {
+				return false;
+			}
+
+			if(value < minimum || value > maximum)
+				return false;
+			if(handler != null)
+				handler.handleOption(this, value);
+			return true;
+		}
+	}
+
+	/**
+	 * Option taking a {@code long} argument, optionally with a size suffix.
+	 */
+	static final class LongOption extends TypedCommandLineOption
+	{
+		private final long minimum, maximum;
+		private final boolean size;
+		private final LongOptionHandler handler;
+
+		LongOption(Character shortOption, String longOption, String description, long minimum, long maximum,
+				boolean size, LongOptionHandler handler)
+		{
+			super(shortOption, longOption, ARGUMENT_REQUIRED, description);
+			this.minimum = minimum;
+			this.maximum = maximum;
+			this.size = size;
+			this.handler = handler;
+		}
+
+		/**
+		 * Converts an argument.
+		 * @param argument the argument.
+		 * @return the value of the argument.
+		 * @throws NumberFormatException if the argument is not a valid number.
+		 */
+		private long convert(String argument)
+		{
+			long value = size ? parseSize(argument) : Long.parseLong(argument);
+			if(value < minimum || value > maximum)
+				throw new NumberFormatException();
+			return value;
+		}
+
+		@Override boolean isValid(String argument)
+		{
+			try {
+				convert(argument);
+				return true;
+			} catch(NumberFormatException error) {
+				return false;
+			}
+		}
+
+		@Override boolean handleValue(String argument)
+		{
+			long value;
+			try {
+				value = convert(argument);
+			} catch(NumberFormatException error) {
+				return false;
+			}
+
+			if(handler != null)
+				handler.handleOption(this, value);
+			return true;
+		}
+	}
+
+	/**
+	 * Option taking a {@code double} argument.
+	 */
+	static final class DoubleOption extends TypedCommandLineOption
+	{
+		private final DoubleOptionHandler handler;
+
+		DoubleOption(Character shortOption, String longOption, String description, DoubleOptionHandler handler)
+		{
+			super(shortOption, longOption, ARGUMENT_REQUIRED, description);
+			this.handler = handler;
+		}
+
+		@Override boolean isValid(String argument)
+		{
+			try {
+				Double.parseDouble(argument);
+				return true;
+			} catch(NumberFormatException error) {
+				return false;
+			}
+		}
+
+		@Override boolean handleValue(String argument)
+		{
+			double value;
+			try {
+				value = Double.parseDouble(argument);
+			} catch(NumberFormatException error) {
+				return false;
+			}
+
+			if(handler != null)
+				handler.handleOption(this, value);
+			return true;
+		}
+	}
+
+	/**
+	 * Option representing a {@code boolean} value.
+	 * On the command line the option does not take an argument, and specifying it sets the value to true. Values
+	 * provided from other sources are converted from {@code true}/{@code false}, {@code yes}/{@code no},
+	 * {@code on}/{@code off} or {@code 1}/{@code 0}.
+	 */
+	static final class BooleanOption extends TypedCommandLineOption
+	{
+		private final BooleanOptionHandler handler;
+
+		BooleanOption(Character shortOption, String longOption, String description, BooleanOptionHandler handler)
+		{
+			super(shortOption, longOption, NO_ARGUMENT, description);
+			this.handler = handler;
+		}
+
+		/**
+		 * Converts an argument.
+		 * @param argument the argument, or {@code null} if no argument was specified.
+		 * @return 1 for true, 0 for false and -1 if the argument is invalid.
+		 */
+		private static int convert(String argument)
+		{
+			if(argument == null || argument.equalsIgnoreCase("true") || argument.equalsIgnoreCase("yes")
+					|| argument.equalsIgnoreCase("on") || argument.equals("1"))
+				return 1;
+			else if(argument.equalsIgnoreCase("false") || argument.equalsIgnoreCase("no")
+					|| argument.equalsIgnoreCase("off") || argument.equals("0"))
+				return 0;
+			else
+				return -1;
+		}
+
+		@Override boolean isValid(String argument)
+		{
+			return convert(argument) >= 0;
+		}
+
+		@Override boolean handleValue(String argument)
+		{
+			int value = convert(argument);
+			if(value < 0)
+				return false;
+			if(handler != null)
+				handler.handleOption(this, value == 1);
+			return true;
+		}
+	}
+
+	/**
+	 * Option taking an argument converted to an object.
+	 * @param <T> the type of the argument value.
+	 */
+	static final class ValueOption<T> extends TypedCommandLineOption
+	{
+		/**
+		 * Converter for argument values.
+		 * @param <T> the type of the argument value.
+		 */
+		@FunctionalInterface interface Converter<T>
+		{
+			/**
+			 * Converts an argument.
+			 * @param argument the argument.
+			 * @return the value of the argument, or {@code null} if the argument is invalid.
+			 */
+			T convert(String argument);
+		}
+
+		private final Converter<T> converter;
+		private final ValueOptionHandler<T> handler;
+
+		ValueOption(Character shortOption, String longOption, String description, Converter<T> converter,
+				ValueOptionHandler<T> handler)
+		{
+			super(shortOption, longOption, ARGUMENT_REQUIRED, description);
+			this.converter = converter;
+			this.handler = handler;
+		}
+
+		@Override boolean isValid(String argument)
+		{
+			return converter.convert(argument) != null;
+		}
+
+		@Override boolean handleValue(String argument)
+		{
+			T value = converter.convert(argument);
+			if(value == null)
+				return false;
+			if(handler != null)
+				handler.handleOption(this, value);
+			return true;
+		}
+	}
+
+	/**
+	 * Parses a size, which is a non-negative integer followed by an optional binary unit suffix.
+	 * The suffixes {@code k}, {@code M}, {@code G}, {@code T} and {@code P} multiply the value by powers of 1024,
+	 * and may be followed by {@code B} or {@code iB}. Suffixes are not case sensitive.
+	 * @param argument the size to parse.
+	 * @return the size in bytes.
+	 * @throws NumberFormatException if the argument is not a valid size.
+	 */
+	static long parseSize(String argument)
+	{
+		final int length = argument.length();
+		int digits = 0;
+		while(digits < length && argument.charAt(digits) >= '0' && argument.charAt(digits) <= '9')
+			++digits;
+		if(digits == 0)
+			throw new NumberFormatException();
+
+		int shift = 0, suffix = digits;
+		if(suffix < length)
+		{
+			switch(Character.toLowerCase(argument.charAt(suffix)))
+			{
+				case 'k':
+					shift = 10;
+					break;
+				case 'm':
+					shift = 20;
+					break;
+				case 'g':
+					shift = 30;
+					break;
+				case 't':
+					shift = 40;
+					break;
+				case 'p':
+					shift = 50;
+					break;
+			}
+			if(shift != 0)
+			{
+				++suffix;
+				if(suffix < length && Character.toLowerCase(argument.charAt(suffix)) == 'i')
+					++suffix;
+			}
+			if(suffix < length && Character.toLowerCase(argument.charAt(suffix)) == 'b')
+				++suffix;
+			if(suffix != length)
+				throw new NumberFormatException();
+		}
+
+		long value = Long.parseLong(argument, 0, digits, 10);
+		if(value > Long.MAX_VALUE >> shift)
+			throw new NumberFormatException();
+		return value << shift;
+	}
+
+	/**
+	 * Parses a duration.
+	 * Durations are either ISO-8601 durations such as {@code PT1M30S}, or a number followed by one of the units
+	 * {@code ns}, {@code us}, {@code ms}, {@code s}, {@code m}, {@code h} or {@code d}. A number without a unit is
+	 * interpreted as seconds.
+	 * @param argument the duration to parse.
+	 * @return the duration, or {@code null} if the argument is not a valid duration.
+	 */
+	static Duration parseDuration(String argument)
+	{
+		if(argument.isEmpty())
+			return null;
+
+		try {
+			if(argument.charAt(0) == 'P' || argument.charAt(0) == 'p')
+				return Duration.parse(argument);
+
+			int end = argument.length();
+			while(end > 0 && Character.isLetter(argument.charAt(end - 1)))
+				--end;
+			if(end == 0)
+				return null;
+
+			long value = Long.parseLong(argument, 0, end, 10);
+			switch(argument.substring(end))
+			{
+				case "ns":
+					return Duration.ofNanos(value);
+				case "us":
+					return Duration.ofNanos(Math.multiplyExact(value, 1000L));
+				case "ms":
+					return Duration.ofMillis(value);
+				case "":
+				case "s":
+					return Duration.ofSeconds(value);
+				case "m":
+					return Duration.ofMinutes(value);
+				case "h":
+					return Duration.ofHours(value);
+				case "d":
+					return Duration.ofDays(value);
+				default:
+					return null;
+			}
+		} catch(DateTimeParseException | ArithmeticException | NumberFormatException error) {
+			return null;
+		}
+	}
+
+	/**
+	 * Converts an argument to a path.
+	 * @param argument the argument to convert.
+	 * @return the path, or {@code null} if the argument is not a valid path.
+	 */
+	static Path parsePath(String argument)
+	{
+		try {
+			return Paths.get(argument);
+		} catch(InvalidPathException error) {
+			return null;
+		}
+	}
+
+	/**
+	 * Converts an argument to an enum constant.
+	 * The comparison is not case sensitive.
+	 * @param constants the enum constants.
+	 * @param argument  the argument to convert.
+	 * @return the enum constant, or {@code null} if the argument does not name a constant.
+	 */
+	static <E extends Enum<E>> E parseEnum(E[] constants, String argument)
+	{
+		for(E constant : constants)
+			if(constant.name().equalsIgnoreCase(argument))
+				return constant;
+		return null;
+	}
+}
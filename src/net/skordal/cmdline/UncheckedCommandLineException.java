@@ -0,0 +1,30 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline;
+
+/**
+ * Unchecked exception wrapping a {@link CommandLineException}.
+ * This is used to report command line errors from places where checked exceptions cannot be thrown, such as
+ * from the iterator passed to {@link StreamingCommandLineCommand#processCommand(java.util.Iterator)}.
+ */
+public class UncheckedCommandLineException extends RuntimeException
+{
+	/**
+	 * Creates a new UncheckedCommandLineException object.
+	 * @param cause the command line exception to wrap.
+	 */
+	public UncheckedCommandLineException(CommandLineException cause)
+	{
+		super(cause.getMessage(), cause);
+	}
+
+	/**
+	 * Gets the wrapped command line exception.
+	 * @return the wrapped command line exception.
+	 */
+	@Override public CommandLineException getCause()
+	{
+		return (CommandLineException) super.getCause();
+	}
+}
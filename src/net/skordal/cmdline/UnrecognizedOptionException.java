@@ -3,6 +3,9 @@
 // Report bugs and issues on <https://github.com/skordal/papaya/issues>
 package net.skordal.cmdline;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  *
  * @author kristian
@@ -10,15 +13,50 @@ package net.skordal.cmdline;
 public class UnrecognizedOptionException extends CommandLineException
 {
 	private final String option;
+	private final List<String> suggestions;
 
 	public UnrecognizedOptionException(String option)
 	{
-		super("unrecognized command line option: " + option);
+		this(option, Collections.emptyList());
+	}
+
+	/**
+	 * Creates a new UnrecognizedOptionException object with suggestions for the intended option.
+	 * @param option      the option as specified on the command line.
+	 * @param suggestions the names of similar long options, without the leading dashes, closest first.
+	 */
+	public UnrecognizedOptionException(String option, List<String> suggestions)
+	{
+		super("unrecognized command line option: " + option
+				+ (suggestions.isEmpty() ? "" : " (did you mean --" + String.join(", --", suggestions) + "?)"));
 		this.option = option;
+		this.suggestions = Collections.unmodifiableList(suggestions);
+	}
+
+	/**
+	 * Creates a new UnrecognizedOptionException object with a specific message.
+	 * @param option  the option as specified on the command line.
+	 * @param message exception message.
+	 */
+	protected UnrecognizedOptionException(String option, String message)
+	{
+		super(message);
+		this.option = option;
+		this.suggestions = Collections.emptyList();
 	}
 
 	public String getOption()
 	{
 		return option;
 	}
+
+	/**
+	 * Gets suggestions for the option the user may have meant.
+	 * @return an unmodifiable list of the names of similar long options, without the leading dashes, closest
+	 *         first, or an empty list if no option is similar.
+	 */
+	public List<String> getSuggestions()
+	{
+		return suggestions;
+	}
 }
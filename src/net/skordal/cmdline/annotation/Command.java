@@ -0,0 +1,35 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation marking a class as a command of a {@link CommandLineApplication}.
+ * The class must have a constructor without parameters that is accessible from the package of the application.
+ * Its options are declared using {@link Option}, and its input files are assigned to the field annotated with
+ * {@link Arguments}, if there is one. If the class implements {@link Runnable}, it is run once the command line
+ * has been parsed.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Command
+{
+	/**
+	 * Name of the command, used on the command line.
+	 * @return the name of the command.
+	 */
+	String name();
+
+	/**
+	 * Description of the command, used in usage information.
+	 * @return the description of the command.
+	 */
+	String description();
+}
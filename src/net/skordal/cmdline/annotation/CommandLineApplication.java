@@ -0,0 +1,53 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation marking a class as a command line application.
+ * For an application class {@code App}, the annotation processor generates a class named {@code AppCommandLine}
+ * in the same package, with a method {@code public static Object parse(App application, String[] args)}. The
+ * method parses the command line, assigns the global options declared in the application class and the options
+ * of the command that was found, runs the command if it implements {@link Runnable}, and returns the command
+ * object. Errors are reported using the same exceptions as {@link net.skordal.cmdline.CommandLineParser}.
+ * <p>
+ * The generated parser dispatches options and commands using {@code switch} statements and assigns fields
+ * directly, so no option objects or collections are created and no reflection is used at runtime.
+ * @see Command
+ * @see Option
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface CommandLineApplication
+{
+	/**
+	 * Name of the application, used in usage information.
+	 * @return the name of the application.
+	 */
+	String name();
+
+	/**
+	 * Description of the application, used in usage information.
+	 * @return the description of the application.
+	 */
+	String description();
+
+	/**
+	 * Footer for the usage information printouts.
+	 * @return the footer for usage information.
+	 */
+	String footer() default "";
+
+	/**
+	 * Commands of the application. Each class must be annotated with {@link Command}.
+	 * @return the command classes.
+	 */
+	Class<?>[] commands();
+}
@@ -0,0 +1,48 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation declaring a command line option.
+ * Options declared in a {@link CommandLineApplication} class are global options, and options declared in a
+ * {@link Command} class apply to that command only.
+ * <p>
+ * When placed on a field, the argument of the option is converted to the type of the field and assigned to it.
+ * Supported types are {@code String}, {@code int}, {@code long}, {@code double}, {@link java.nio.file.Path} and
+ * enum types, which take an argument, and {@code boolean}, which does not take an argument and is set to
+ * {@code true} when the option is specified. When placed on a method, the method is called each time the option
+ * is specified; a method without parameters makes an option without an argument, and a method with a single
+ * parameter of one of the supported types makes an option taking an argument.
+ * <p>
+ * Annotated fields and methods must not be private, and must be accessible from the package of the application.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface Option
+{
+	/**
+	 * Short option character. The character {@code h} is reserved for the help option.
+	 * @return the short option character, or {@code '\0'} if the option has no short form.
+	 */
+	char shortName() default '\0';
+
+	/**
+	 * Long option name, without the leading dashes. The name {@code help} is reserved for the help option.
+	 * @return the long option name, or an empty string if the option has no long form.
+	 */
+	String longName() default "";
+
+	/**
+	 * Description of the option, used in usage information.
+	 * @return the description of the option.
+	 */
+	String description();
+}
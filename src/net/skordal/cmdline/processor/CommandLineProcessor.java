@@ -0,0 +1,912 @@
+// CmdLine - A library for parsing command line arguments
+// (c) Kristian Klomsten Skordal 2017 <kristian.skordal@wafflemail.net>
+// Report bugs and issues on <https://github.com/skordal/cmdline/issues>
+package net.skordal.cmdline.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import net.skordal.cmdline.annotation.Arguments;
+import net.skordal.cmdline.annotation.Command;
+import net.skordal.cmdline.annotation.CommandLineApplication;
+import net.skordal.cmdline.annotation.Option;
+
+/**
+ * Annotation processor generating command line parsers for classes annotated with {@link CommandLineApplication}.
+ * The processor is registered as a service in the library JAR file, so it runs automatically when the library is
+ * on the class path of the compiler.
+ * <p>
+ * The generated parser follows the same rules as {@link net.skordal.cmdline.CommandLineParser}: options are
+ * recognized both before and after the command, global options take precedence over command options, short
+ * options can be clustered and arguments attached to them, long options can be abbreviated to a unique prefix,
+ * and the help option prints usage information in the same format. Instead of exiting the application, the help
+ * option throws a {@link net.skordal.cmdline.HelpRequestedException}.
+ */
+@SupportedAnnotationTypes({ "net.skordal.cmdline.annotation.CommandLineApplication",
+		"net.skordal.cmdline.annotation.Command", "net.skordal.cmdline.annotation.Option",
+		"net.skordal.cmdline.annotation.Arguments" })
+public final class CommandLineProcessor extends AbstractProcessor
+{
+	/** Number of spaces separating options and commands from their descriptions in usage information. */
+	private static final int USAGE_COLUMN_INDENT = 4;
+
+	/**
+	 * Option declared using the {@link Option} annotation.
+	 */
+	private static final class OptionModel
+	{
+		Element element;
+		char shortName;
+		String longName, description;
+		/** Type of the argument, or {@code null} if the option does not take an argument. */
+		TypeMirror argumentType;
+	}
+
+	/**
+	 * Command declared using the {@link Command} annotation.
+	 */
+	private static final class CommandModel
+	{
+		TypeElement type;
+		String name, description;
+		List<OptionModel> options;
+		VariableElement arguments;
+		boolean runnable;
+	}
+
+	@Override public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+
+	@Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment)
+	{
+		for(Element element : environment.getElementsAnnotatedWith(CommandLineApplication.class))
+		{
+			if(element.getKind() != ElementKind.CLASS)
+			{
+				error(element, "@CommandLineApplication can only be used on classes");
+				continue;
+			}
+
+			try {
+				processApplication((TypeElement) element);
+			} catch(IOException exception) {
+				error(element, "cannot write generated parser: " + exception.getMessage());
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reports an error.
+	 * @param element the element the error applies to.
+	 * @param message the error message.
+	 */
+	private void error(Element element, String message)
+	{
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	/**
+	 * Generates the parser for an application.
+	 * @param application the application class.
+	 * @throws IOException if the generated source file cannot be written.
+	 */
+	private void processApplication(TypeElement application) throws IOException
+	{
+		CommandLineApplication annotation = application.getAnnotation(CommandLineApplication.class);
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(application);
+
+		boolean valid = true;
+		List<OptionModel> globalOptions = collectOptions(application, pkg);
+		valid &= checkOptions(globalOptions, new HashSet<>(), new HashSet<>());
+
+		ArrayList<CommandModel> commands = new ArrayList<>();
+		HashSet<String> commandNames = new HashSet<>();
+		for(TypeElement type : getCommandTypes(application))
+		{
+			CommandModel command = collectCommand(type, pkg);
+			if(command == null)
+			{
+				valid = false;
+				continue;
+			}
+			if(!commandNames.add(command.name))
+			{
+				error(type, "duplicate command name: " + command.name);
+				valid = false;
+			}
+
+			HashSet<Character> shortNames = new HashSet<>();
+			HashSet<String> longNames = new HashSet<>();
+			for(OptionModel option : globalOptions)
+			{
+				shortNames.add(option.shortName);
+				longNames.add(option.longName);
+			}
+			valid &= checkOptions(command.options, shortNames, longNames);
+			commands.add(command);
+		}
+
+		if(!valid)
+			return;
+
+		String name = application.getSimpleName() + "CommandLine";
+		String qualifiedName = pkg.isUnnamed() ? name : pkg.getQualifiedName() + "." + name;
+		try(Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, application).openWriter())
+		{
+			writer.write(generate(pkg, name, application, annotation, globalOptions, commands));
+		}
+	}
+
+	/**
+	 * Gets the command classes listed in the application annotation.
+	 * @param application the application class.
+	 * @return the command classes.
+	 */
+	private List<TypeElement> getCommandTypes(TypeElement application)
+	{
+		ArrayList<TypeElement> retval = new ArrayList<>();
+		for(AnnotationMirror mirror : application.getAnnotationMirrors())
+		{
+			if(!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName()
+					.contentEquals(CommandLineApplication.class.getName()))
+				continue;
+
+			for(ExecutableElement key : mirror.getElementValues().keySet())
+			{
+				if(!key.getSimpleName().contentEquals("commands"))
+					continue;
+
+				@SuppressWarnings("unchecked")
+				List<? extends AnnotationValue> values = (List<? extends AnnotationValue>) mirror.getElementValues().get(key).getValue();
+				for(AnnotationValue value : values)
+					retval.add((TypeElement) ((DeclaredType) value.getValue()).asElement());
+			}
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Collects and checks the command declared by a class.
+	 * @param type the command class.
+	 * @param pkg  the package of the generated parser.
+	 * @return the command, or {@code null} if the command is invalid.
+	 */
+	private CommandModel collectCommand(TypeElement type, PackageElement pkg)
+	{
+		Command annotation = type.getAnnotation(Command.class);
+		if(annotation == null)
+		{
+			error(type, "command classes must be annotated with @Command");
+			return null;
+		}
+		if(type.getModifiers().contains(Modifier.ABSTRACT) || type.getKind() != ElementKind.CLASS
+				|| (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)))
+		{
+			error(type, "command classes must be concrete top-level or static nested classes");
+			return null;
+		}
+
+		boolean constructor = false;
+		for(Element member : type.getEnclosedElements())
+		{
+			if(member.getKind() == ElementKind.CONSTRUCTOR && ((ExecutableElement) member).getParameters().isEmpty()
+					&& isAccessible(member, pkg))
+				constructor = true;
+		}
+		if(!constructor)
+		{
+			error(type, "command classes must have an accessible constructor without parameters");
+			return null;
+		}
+
+		CommandModel command = new CommandModel();
+		command.type = type;
+		command.name = annotation.name();
+		command.description = annotation.description();
+		command.options = collectOptions(type, pkg);
+		command.runnable = processingEnv.getTypeUtils().isAssignable(type.asType(),
+				processingEnv.getElementUtils().getTypeElement(Runnable.class.getName()).asType());
+
+		for(Element member : type.getEnclosedElements())
+		{
+			if(member.getAnnotation(Arguments.class) == null)
+				continue;
+
+			if(command.arguments != null)
+				error(member, "only one field can be annotated with @Arguments");
+			else if(!member.asType().toString().equals("java.util.List<java.lang.String>"))
+				error(member, "@Arguments fields must have the type List<String>");
+			else if(!isAccessible(member, pkg) || member.getModifiers().contains(Modifier.FINAL))
+				error(member, "@Arguments fields must be accessible and not final");
+			else
+				command.arguments = (VariableElement) member;
+		}
+
+		return command;
+	}
+
+	/**
+	 * Collects the options declared by a class.
+	 * Invalid options are reported and left out.
+	 * @param type the class.
+	 * @param pkg  the package of the generated parser.
+	 * @return the options, in the order they were declared.
+	 */
+	private List<OptionModel> collectOptions(TypeElement type, PackageElement pkg)
+	{
+		ArrayList<OptionModel> retval = new ArrayList<>();
+		for(Element member : type.getEnclosedElements())
+		{
+			Option annotation = member.getAnnotation(Option.class);
+			if(annotation == null)
+				continue;
+
+			OptionModel option = new OptionModel();
+			option.element = member;
+			option.shortName = annotation.shortName();
+			option.longName = annotation.longName();
+			option.description = annotation.description();
+
+			if(!isAccessible(member, pkg) || member.getModifiers().contains(Modifier.STATIC))
+			{
+				error(member, "options must be accessible instance members");
+				continue;
+			} else if(option.shortName == '\0' && option.longName.isEmpty())
+			{
+				error(member, "options must have a short or a long name");
+				continue;
+			} else if(option.shortName == '-' || option.longName.startsWith("-"))
+			{
+				error(member, "option names must not start with a dash");
+				continue;
+			}
+
+			TypeMirror valueType;
+			if(member.getKind() == ElementKind.FIELD)
+			{
+				if(member.getModifiers().contains(Modifier.FINAL))
+				{
+					error(member, "option fields must not be final");
+					continue;
+				}
+				valueType = member.asType();
+			} else {
+				List<? extends VariableElement> parameters = ((ExecutableElement) member).getParameters();
+				if(parameters.size() > 1)
+				{
+					error(member, "option methods must have at most one parameter");
+					continue;
+				}
+				valueType = parameters.isEmpty() ? null : parameters.get(0).asType();
+			}
+
+			if(valueType != null && valueType.getKind() == TypeKind.BOOLEAN && member.getKind() == ElementKind.FIELD)
+				option.argumentType = null;
+			else if(valueType != null && conversion(valueType, "argument") == null)
+			{
+				error(member, "unsupported option type: " + valueType);
+				continue;
+			} else
+				option.argumentType = valueType;
+
+			retval.add(option);
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Checks that the names of a set of options are unique and do not conflict with the help option.
+	 * @param options    the options to check.
+	 * @param shortNames the short names already in use, which are updated with the names of the options.
+	 * @param longNames  the long names already in use, which are updated with the names of the options.
+	 * @return {@code true} if the options are valid.
+	 */
+	private boolean checkOptions(List<OptionModel> options, Set<Character> shortNames, Set<String> longNames)
+	{
+		boolean retval = true;
+		shortNames.add('h');
+		longNames.add("help");
+
+		for(OptionModel option : options)
+		{
+			if(option.shortName != '\0' && !shortNames.add(option.shortName))
+			{
+				error(option.element, "short option -" + option.shortName + " is already in use");
+				retval = false;
+			}
+			if(!option.longName.isEmpty() && !longNames.add(option.longName))
+			{
+				error(option.element, "long option --" + option.longName + " is already in use");
+				retval = false;
+			}
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Checks whether a member can be accessed from the generated parser.
+	 * @param member the member.
+	 * @param pkg    the package of the generated parser.
+	 * @return {@code true} if the member is accessible.
+	 */
+	private boolean isAccessible(Element member, PackageElement pkg)
+	{
+		Set<Modifier> modifiers = member.getModifiers();
+		if(modifiers.contains(Modifier.PRIVATE))
+			return false;
+		if(modifiers.contains(Modifier.PUBLIC))
+			return true;
+		return processingEnv.getElementUtils().getPackageOf(member).equals(pkg);
+	}
+
+	/**
+	 * Gets the expression converting an argument to a type.
+	 * @param type     the type to convert to.
+	 * @param argument the expression producing the argument.
+	 * @return the conversion expression, or {@code null} if the type is not supported.
+	 */
+	private String conversion(TypeMirror type, String argument)
+	{
+		switch(type.getKind())
+		{
+			case INT:
+				return "toInt(" + argument + ", token)";
+			case LONG:
+				return "toLong(" + argument + ", token)";
+			case DOUBLE:
+				return "toDouble(" + argument + ", token)";
+			case DECLARED:
+				TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+				String name = element.getQualifiedName().toString();
+				if(name.equals("java.lang.String"))
+					return argument;
+				else if(name.equals("java.nio.file.Path"))
+					return "toPath(" + argument + ", token)";
+				else if(element.getKind() == ElementKind.ENUM)
+					return "toEnum(" + name + ".values(), " + argument + ", token)";
+				return null;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Generates an array initializer containing the long names of a list of options.
+	 * @param options the options.
+	 * @param help    whether to include the name of the help option.
+	 * @return the array initializer.
+	 */
+	private String longNames(List<OptionModel> options, boolean help)
+	{
+		StringBuilder retval = new StringBuilder("{ ");
+		if(help)
+			retval.append("\"help\"");
+		for(OptionModel option : options)
+		{
+			if(option.longName.isEmpty())
+				continue;
+			if(retval.length() > 2)
+				retval.append(", ");
+			retval.append(literal(option.longName));
+		}
+		return retval.append(" }").toString();
+	}
+
+	/**
+	 * Generates the statements handling an option.
+	 * @param source   the buffer to append the statements to.
+	 * @param indent   the indentation of the statements.
+	 * @param option   the option.
+	 * @param argument the expression producing the argument of the option.
+	 * @param cluster  whether the token may be a cluster of short options, in which case an option without an
+	 *                 argument returns {@code CLUSTER} if it is followed by more options in the token.
+	 */
+	private void generateHandler(StringBuilder source, String indent, OptionModel option, String argument,
+			boolean cluster)
+	{
+		String member = "target." + option.element.getSimpleName();
+		source.append(indent);
+		if(option.argumentType == null && option.element.getKind() == ElementKind.FIELD)
+			source.append(member).append(" = true;\n");
+		else if(option.argumentType == null)
+			source.append(member).append("();\n");
+		else if(option.element.getKind() == ElementKind.FIELD)
+			source.append(member).append(" = ").append(conversion(option.argumentType, argument)).append(";\n");
+		else
+			source.append(member).append("(").append(conversion(option.argumentType, argument)).append(");\n");
+		if(cluster && option.argumentType == null)
+			source.append(indent).append("return token.length() > 2 ? CLUSTER : i;\n");
+		else
+			source.append(indent).append("return i;\n");
+	}
+
+	/**
+	 * Generates a method handling the options declared by a class.
+	 * The generated method takes the object declaring the options, the command line, the index of the current
+	 * token and the token itself, and returns the index of the last token used by the option, {@code CLUSTER} if
+	 * the token is a cluster of short options continuing after an option without an argument, or -1 if the token
+	 * is not one of the options. The method for the global options also handles the help option.
+	 * @param source  the buffer to append the method to.
+	 * @param name    the name of the method.
+	 * @param type    the class declaring the options.
+	 * @param options the options.
+	 * @param global  whether the options are global options.
+	 */
+	private void generateOptionMethod(StringBuilder source, String name, TypeElement type, List<OptionModel> options,
+			boolean global)
+	{
+		source.append("\tprivate static int ").append(name).append("(").append(type.getQualifiedName())
+				.append(" target, String[] args, int i, String token");
+		if(global)
+			source.append(", int command");
+		source.append(")\n");
+		source.append("\t\t\tthrows net.skordal.cmdline.CommandLineException\n");
+		source.append("\t{\n");
+		source.append("\t\tif(token.startsWith(\"--\"))\n");
+		source.append("\t\t{\n");
+		source.append("\t\t\tswitch(token)\n");
+		source.append("\t\t\t{\n");
+		if(global)
+		{
+			source.append("\t\t\t\tcase \"--help\":\n");
+			source.append("\t\t\t\t\tthrow help(command);\n");
+		}
+		for(OptionModel option : options)
+		{
+			if(option.longName.isEmpty())
+				continue;
+			source.append("\t\t\t\tcase ").append(literal("--" + option.longName)).append(":\n");
+			generateHandler(source, "\t\t\t\t\t", option, "next(args, i++, token)", false);
+		}
+		source.append("\t\t\t}\n");
+		source.append("\t\t} else {\n");
+		source.append("\t\t\tswitch(token.charAt(1))\n");
+		source.append("\t\t\t{\n");
+		if(global)
+		{
+			source.append("\t\t\t\tcase 'h':\n");
+			source.append("\t\t\t\t\tthrow help(command);\n");
+		}
+		for(OptionModel option : options)
+		{
+			if(option.shortName == '\0')
+				continue;
+			source.append("\t\t\t\tcase ").append(literal(option.shortName)).append(":\n");
+			generateHandler(source, "\t\t\t\t\t", option,
+					"token.length() > 2 ? token.substring(2) : next(args, i++, token)", true);
+		}
+		source.append("\t\t\t}\n");
+		source.append("\t\t}\n");
+		source.append("\t\treturn -1;\n");
+		source.append("\t}\n\n");
+	}
+
+	/**
+	 * Generates a method returning usage information.
+	 * Usage information is only assembled when it is printed, so that it does not add to the startup time.
+	 * @param source the buffer to append the method to.
+	 * @param name   the name of the method.
+	 * @param body   the concatenation expression producing the lines between the header and the footer.
+	 */
+	private void generateUsageMethod(StringBuilder source, String name, CharSequence body)
+	{
+		source.append("\tprivate static String ").append(name).append("()\n");
+		source.append("\t{\n");
+		source.append("\t\treturn USAGE_HEADER");
+		source.append(body);
+		source.append("\n\t\t\t\t+ USAGE_FOOTER;\n");
+		source.append("\t}\n\n");
+	}
+
+	/**
+	 * Generates the source code of the parser for an application.
+	 * Code that depends on the number of commands or options is split into one method per command, so that the
+	 * generated methods stay within the size limits of the class file format for applications of any size.
+	 * @param pkg           the package of the application.
+	 * @param name          the name of the generated class.
+	 * @param application   the application class.
+	 * @param annotation    the application annotation.
+	 * @param globalOptions the global options.
+	 * @param commands      the commands.
+	 * @return the source code of the generated class.
+	 */
+	private String generate(PackageElement pkg, String name, TypeElement application, CommandLineApplication annotation,
+			List<OptionModel> globalOptions, List<CommandModel> commands)
+	{
+		final String applicationType = application.getQualifiedName().toString();
+		StringBuilder source = new StringBuilder(8192);
+
+		if(!pkg.isUnnamed())
+			source.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+
+		source.append("/**\n");
+		source.append(" * Command line parser for {@link ").append(applicationType).append("}.\n");
+		source.append(" * This class was generated by ").append(getClass().getName()).append(".\n");
+		source.append(" */\n");
+		source.append("public final class ").append(name).append("\n");
+		source.append("{\n");
+
+		source.append("\tprivate static final String NL = System.lineSeparator();\n");
+		source.append("\tprivate static final int CLUSTER = -2;\n");
+		source.append("\tprivate static final String[] GLOBAL_OPTIONS = ").append(longNames(globalOptions, true))
+				.append(";\n");
+		source.append("\tprivate static final String[][] COMMAND_OPTIONS = {");
+		for(int i = 0; i < commands.size(); ++i)
+			source.append(i == 0 ? "\n\t\t\t" : ",\n\t\t\t").append(longNames(commands.get(i).options, false));
+		source.append("\n\t\t};\n");
+		source.append("\tprivate static final String USAGE_HEADER = ")
+				.append(literal(String.format("Usage: %s <COMMAND> [OPTIONS...] [INPUT FILE]", annotation.name())))
+				.append(" + NL + ").append(literal(annotation.description())).append(" + NL + NL;\n");
+		source.append("\tprivate static final String USAGE_FOOTER = NL + ")
+				.append(literal("For options related to a specific command, use --help or -h as an option for the desired command."))
+				.append(" + NL + NL + ").append(literal(annotation.footer())).append(" + NL;\n\n");
+
+		source.append("\tprivate ").append(name).append("()\n");
+		source.append("\t{\n");
+		source.append("\t}\n\n");
+
+		// Parse method:
+		source.append("\t/**\n");
+		source.append("\t * Parses a command line and runs the command found on it.\n");
+		source.append("\t * @param application the application object receiving the global options.\n");
+		source.append("\t * @param args        command line arguments.\n");
+		source.append("\t * @return the command object, with its options and input files assigned.\n");
+		source.append("\t * @throws net.skordal.cmdline.CommandLineException thrown if an error occurs while parsing the command line,\n");
+		source.append("\t *         or after printing usage information if the help option was specified.\n");
+		source.append("\t */\n");
+		source.append("\tpublic static Object parse(").append(applicationType)
+				.append(" application, String[] args) throws net.skordal.cmdline.CommandLineException\n");
+		source.append("\t{\n");
+		source.append("\t\tif(args.length == 0)\n");
+		source.append("\t\t{\n");
+		source.append("\t\t\tprintUsage(-1);\n");
+		source.append("\t\t\tthrow new net.skordal.cmdline.NoCommandSpecifiedException();\n");
+		source.append("\t\t}\n\n");
+		source.append("\t\tint command = -1;\n");
+		source.append("\t\tObject target = null;\n");
+		source.append("\t\tjava.util.ArrayList<String> inputFiles = null;\n\n");
+		source.append("\t\tfor(int i = 0; i < args.length; ++i)\n");
+		source.append("\t\t{\n");
+		source.append("\t\t\tfinal String token = args[i];\n");
+		source.append("\t\t\tif(token.startsWith(\"--\"))\n");
+		source.append("\t\t\t{\n");
+		source.append("\t\t\t\tint next = option(application, command, target, args, i, token);\n");
+		source.append("\t\t\t\tif(next == -1)\n");
+		source.append("\t\t\t\t\tnext = option(application, command, target, args, i, expand(token, command));\n");
+		source.append("\t\t\t\tif(next == -1)\n");
+		source.append("\t\t\t\t\tthrow new net.skordal.cmdline.UnrecognizedOptionException(token.substring(2));\n");
+		source.append("\t\t\t\ti = next;\n");
+		source.append("\t\t\t} else if(token.startsWith(\"-\") && token.length() > 1)\n");
+		source.append("\t\t\t{\n");
+		source.append("\t\t\t\tString cluster = token;\n");
+		source.append("\t\t\t\tint next = option(application, command, target, args, i, cluster);\n");
+		source.append("\t\t\t\twhile(next == CLUSTER)\n");
+		source.append("\t\t\t\t{\n");
+		source.append("\t\t\t\t\tcluster = \"-\" + cluster.substring(2);\n");
+		source.append("\t\t\t\t\tnext = option(application, command, target, args, i, cluster);\n");
+		source.append("\t\t\t\t}\n");
+		source.append("\t\t\t\tif(next == -1)\n");
+		source.append("\t\t\t\t\tthrow new net.skordal.cmdline.UnrecognizedOptionException(cluster == token ? token\n");
+		source.append("\t\t\t\t\t\t\t: cluster.substring(0, 2));\n");
+		source.append("\t\t\t\ti = next;\n");
+		source.append("\t\t\t} else if(command < 0)\n");
+		source.append("\t\t\t{\n");
+		source.append("\t\t\t\tswitch(token)\n");
+		source.append("\t\t\t\t{\n");
+		for(int i = 0; i < commands.size(); ++i)
+		{
+			source.append("\t\t\t\t\tcase ").append(literal(commands.get(i).name)).append(":\n");
+			source.append("\t\t\t\t\t\ttarget = new ").append(commands.get(i).type.getQualifiedName()).append("();\n");
+			source.append("\t\t\t\t\t\tcommand = ").append(i).append(";\n");
+			source.append("\t\t\t\t\t\tbreak;\n");
+		}
+		source.append("\t\t\t\t\tdefault:\n");
+		source.append("\t\t\t\t\t\tthrow new net.skordal.cmdline.InvalidCommandException(token);\n");
+		source.append("\t\t\t\t}\n");
+		source.append("\t\t\t} else {\n");
+		source.append("\t\t\t\tif(inputFiles == null)\n");
+		source.append("\t\t\t\t\tinputFiles = new java.util.ArrayList<>();\n");
+		source.append("\t\t\t\tinputFiles.add(token);\n");
+		source.append("\t\t\t}\n");
+		source.append("\t\t}\n\n");
+		source.append("\t\tif(command < 0)\n");
+		source.append("\t\t\tthrow new net.skordal.cmdline.NoCommandSpecifiedException();\n");
+		source.append("\t\trunCommand(command, target, inputFiles != null ? inputFiles : new java.util.ArrayList<>());\n");
+		source.append("\t\treturn target;\n");
+		source.append("\t}\n\n");
+
+		// Usage printing:
+		source.append("\t/**\n");
+		source.append("\t * Prints usage information.\n");
+		source.append("\t * @param command the index of the command to print usage information for, in the order the commands\n");
+		source.append("\t *                are listed in the application annotation, or -1 to print the usage summary.\n");
+		source.append("\t */\n");
+		source.append("\tpublic static void printUsage(int command)\n");
+		source.append("\t{\n");
+		source.append("\t\tString usage;\n");
+		source.append("\t\tswitch(command)\n");
+		source.append("\t\t{\n");
+		for(int i = 0; i < commands.size(); ++i)
+		{
+			source.append("\t\t\tcase ").append(i).append(":\n");
+			source.append("\t\t\t\tusage = usage").append(i).append("();\n");
+			source.append("\t\t\t\tbreak;\n");
+		}
+		source.append("\t\t\tdefault:\n");
+		source.append("\t\t\t\tusage = usage();\n");
+		source.append("\t\t\t\tbreak;\n");
+		source.append("\t\t}\n");
+		source.append("\t\tSystem.out.print(usage);\n");
+		source.append("\t\tSystem.out.flush();\n");
+		source.append("\t}\n\n");
+
+		// Dispatch to the global options and the options of the command that was found:
+		source.append("\tprivate static int option(").append(applicationType)
+				.append(" application, int command, Object target, String[] args, int i, String token)\n");
+		source.append("\t\t\tthrows net.skordal.cmdline.CommandLineException\n");
+		source.append("\t{\n");
+		source.append("\t\tint retval = globalOptions(application, args, i, token, command);\n");
+		source.append("\t\treturn retval != -1 ? retval : commandOptions(command, target, args, i, token);\n");
+		source.append("\t}\n\n");
+
+		source.append("\tprivate static int commandOptions(int command, Object target, String[] args, int i, String token)\n");
+		source.append("\t\t\tthrows net.skordal.cmdline.CommandLineException\n");
+		source.append("\t{\n");
+		source.append("\t\tswitch(command)\n");
+		source.append("\t\t{\n");
+		for(int i = 0; i < commands.size(); ++i)
+		{
+			CommandModel command = commands.get(i);
+			if(command.options.isEmpty())
+				continue;
+			source.append("\t\t\tcase ").append(i).append(":\n");
+			source.append("\t\t\t\treturn options").append(i).append("((").append(command.type.getQualifiedName())
+					.append(") target, args, i, token);\n");
+		}
+		source.append("\t\t\tdefault:\n");
+		source.append("\t\t\t\treturn -1;\n");
+		source.append("\t\t}\n");
+		source.append("\t}\n\n");
+
+		source.append("\tprivate static void runCommand(int command, Object target, java.util.ArrayList<String> inputFiles)\n");
+		source.append("\t{\n");
+		source.append("\t\tswitch(command)\n");
+		source.append("\t\t{\n");
+		for(int i = 0; i < commands.size(); ++i)
+		{
+			CommandModel command = commands.get(i);
+			if(command.arguments == null && !command.runnable)
+				continue;
+			String cast = "((" + command.type.getQualifiedName() + ") target)";
+			source.append("\t\t\tcase ").append(i).append(":\n");
+			if(command.arguments != null)
+				source.append("\t\t\t\t").append(cast).append(".").append(command.arguments.getSimpleName())
+						.append(" = inputFiles;\n");
+			if(command.runnable)
+				source.append("\t\t\t\t").append(cast).append(".run();\n");
+			source.append("\t\t\t\tbreak;\n");
+		}
+		source.append("\t\t}\n");
+		source.append("\t}\n\n");
+
+		// Option handling:
+		generateOptionMethod(source, "globalOptions", application, globalOptions, true);
+		for(int i = 0; i < commands.size(); ++i)
+		{
+			if(!commands.get(i).options.isEmpty())
+				generateOptionMethod(source, "options" + i, commands.get(i).type, commands.get(i).options, false);
+		}
+
+		// Usage information:
+		int longestCommand = 0;
+		for(CommandModel command : commands)
+			longestCommand = Math.max(longestCommand, command.name.length());
+		StringBuilder summary = new StringBuilder();
+		summary.append("\n\t\t\t\t+ \"Commands:\" + NL");
+		for(CommandModel command : commands)
+		{
+			summary.append("\n\t\t\t\t+ ").append(literal("  " + command.name
+					+ padding(longestCommand - command.name.length() + USAGE_COLUMN_INDENT) + command.description))
+					.append(" + NL");
+		}
+		summary.append("\n\t\t\t\t+ NL + \"Global options:\" + NL");
+		OptionModel help = new OptionModel();
+		help.shortName = 'h';
+		help.longName = "help";
+		help.description = "Prints usage information";
+		ArrayList<OptionModel> listedOptions = new ArrayList<>();
+		listedOptions.add(help);
+		listedOptions.addAll(globalOptions);
+		appendOptionUsage(summary, listedOptions);
+		generateUsageMethod(source, "usage", summary);
+
+		for(int i = 0; i < commands.size(); ++i)
+		{
+			CommandModel command = commands.get(i);
+			StringBuilder body = new StringBuilder();
+			body.append("\n\t\t\t\t+ ").append(literal("Options for \"" + command.name + "\" command:")).append(" + NL");
+			if(command.options.isEmpty())
+				body.append("\n\t\t\t\t+ \"  No options supported.\" + NL");
+			else
+				appendOptionUsage(body, command.options);
+			generateUsageMethod(source, "usage" + i, body);
+		}
+
+		source.append(SUPPORT_METHODS);
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/** Helper methods included in every generated parser. */
+	private static final String SUPPORT_METHODS =
+		"\tprivate static String expand(String token, int command)\n" +
+		"\t\t\tthrows net.skordal.cmdline.AmbiguousOptionException\n" +
+		"\t{\n" +
+		"\t\tfinal String name = token.substring(2);\n" +
+		"\t\tjava.util.ArrayList<String> candidates = new java.util.ArrayList<>();\n" +
+		"\t\tfor(int scope = 0; scope < (command < 0 ? 1 : 2) && !name.isEmpty(); ++scope)\n" +
+		"\t\t\tfor(String option : scope == 0 ? GLOBAL_OPTIONS : COMMAND_OPTIONS[command])\n" +
+		"\t\t\t\tif(option.startsWith(name) && !candidates.contains(option))\n" +
+		"\t\t\t\t\tcandidates.add(option);\n" +
+		"\t\tif(candidates.size() > 1)\n" +
+		"\t\t\tthrow new net.skordal.cmdline.AmbiguousOptionException(name, candidates);\n" +
+		"\t\treturn candidates.isEmpty() ? token : \"--\" + candidates.get(0);\n" +
+		"\t}\n\n" +
+		"\tprivate static net.skordal.cmdline.HelpRequestedException help(int command)\n" +
+		"\t{\n" +
+		"\t\tprintUsage(command);\n" +
+		"\t\treturn new net.skordal.cmdline.HelpRequestedException(null);\n" +
+		"\t}\n\n" +
+		"\tprivate static String next(String[] args, int i, String token) throws net.skordal.cmdline.ArgumentMissingException\n" +
+		"\t{\n" +
+		"\t\tif(i + 1 < args.length)\n" +
+		"\t\t\treturn args[i + 1];\n" +
+		"\t\tthrow new net.skordal.cmdline.ArgumentMissingException(token);\n" +
+		"\t}\n\n" +
+		"\tprivate static int toInt(String argument, String token) throws net.skordal.cmdline.InvalidArgumentException\n" +
+		"\t{\n" +
+		"\t\ttry {\n" +
+		"\t\t\treturn Integer.parseInt(argument);\n" +
+		"\t\t} catch(NumberFormatException error) {\n" +
+		"\t\t\tthrow new net.skordal.cmdline.InvalidArgumentException(argument, token);\n" +
+		"\t\t}\n" +
+		"\t}\n\n" +
+		"\tprivate static long toLong(String argument, String token) throws net.skordal.cmdline.InvalidArgumentException\n" +
+		"\t{\n" +
+		"\t\ttry {\n" +
+		"\t\t\treturn Long.parseLong(argument);\n" +
+		"\t\t} catch(NumberFormatException error) {\n" +
+		"\t\t\tthrow new net.skordal.cmdline.InvalidArgumentException(argument, token);\n" +
+		"\t\t}\n" +
+		"\t}\n\n" +
+		"\tprivate static double toDouble(String argument, String token) throws net.skordal.cmdline.InvalidArgumentException\n" +
+		"\t{\n" +
+		"\t\ttry {\n" +
+		"\t\t\treturn Double.parseDouble(argument);\n" +
+		"\t\t} catch(NumberFormatException error) {\n" +
+		"\t\t\tthrow new net.skordal.cmdline.InvalidArgumentException(argument, token);\n" +
+		"\t\t}\n" +
+		"\t}\n\n" +
+		"\tprivate static java.nio.file.Path toPath(String argument, String token) throws net.skordal.cmdline.InvalidArgumentException\n" +
+		"\t{\n" +
+		"\t\ttry {\n" +
+		"\t\t\treturn java.nio.file.Paths.get(argument);\n" +
+		"\t\t} catch(java.nio.file.InvalidPathException error) {\n" +
+		"\t\t\tthrow new net.skordal.cmdline.InvalidArgumentException(argument, token);\n" +
+		"\t\t}\n" +
+		"\t}\n\n" +
+		"\tprivate static <E extends Enum<E>> E toEnum(E[] constants, String argument, String token)\n" +
+		"\t\t\tthrows net.skordal.cmdline.InvalidArgumentException\n" +
+		"\t{\n" +
+		"\t\tfor(E constant : constants)\n" +
+		"\t\t\tif(constant.name().equalsIgnoreCase(argument))\n" +
+		"\t\t\t\treturn constant;\n" +
+		"\t\tthrow new net.skordal.cmdline.InvalidArgumentException(argument, token);\n" +
+		"\t}\n";
+
+	/**
+	 * Appends the usage lines for a list of options to a string concatenation expression.
+	 * @param source  the buffer to append the expression to.
+	 * @param options the options.
+	 */
+	private static void appendOptionUsage(StringBuilder source, List<OptionModel> options)
+	{
+		int longestOption = 0;
+		for(OptionModel option : options)
+			longestOption = Math.max(longestOption, option.longName.length());
+
+		for(OptionModel option : options)
+		{
+			StringBuilder line = new StringBuilder("  ");
+			if(option.shortName != '\0')
+				line.append('-').append(option.shortName).append(", ");
+			else
+				line.append("    ");
+			if(!option.longName.isEmpty())
+				line.append("--").append(option.longName);
+			line.append(padding(longestOption - option.longName.length() + USAGE_COLUMN_INDENT));
+			line.append(option.description);
+			source.append("\n\t\t\t\t+ ").append(literal(line.toString())).append(" + NL");
+		}
+	}
+
+	/**
+	 * Creates a string of spaces.
+	 * @param count the number of spaces.
+	 * @return a string of {@code count} spaces.
+	 */
+	private static String padding(int count)
+	{
+		return " ".repeat(Math.max(count, 0));
+	}
+
+	/**
+	 * Creates a Java string literal.
+	 * @param value the value of the literal.
+	 * @return the string literal, including quotes.
+	 */
+	private static String literal(String value)
+	{
+		StringBuilder retval = new StringBuilder(value.length() + 2).append('"');
+		for(int i = 0; i < value.length(); ++i)
+			appendEscaped(retval, value.charAt(i), '"');
+		return retval.append('"').toString();
+	}
+
+	/**
+	 * Creates a Java character literal.
+	 * @param value the value of the literal.
+	 * @return the character literal, including quotes.
+	 */
+	private static String literal(char value)
+	{
+		StringBuilder retval = new StringBuilder(8).append('\'');
+		appendEscaped(retval, value, '\'');
+		return retval.append('\'').toString();
+	}
+
+	/**
+	 * Appends a character to a Java literal, escaping it if needed.
+	 * @param literal the literal to append to.
+	 * @param c       the character to append.
+	 * @param quote   the quote character used for the literal.
+	 */
+	private static void appendEscaped(StringBuilder literal, char c, char quote)
+	{
+		if(c == quote || c == '\\')
+			literal.append('\\').append(c);
+		else if(c == '\n')
+			literal.append("\\n");
+		else if(c < 0x20 || c > 0x7e)
+			literal.append(String.format("\\u%04x", (int) c));
+		else
+			literal.append(c);
+	}
+}